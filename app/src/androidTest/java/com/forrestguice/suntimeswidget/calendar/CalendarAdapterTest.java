@@ -18,7 +18,12 @@
 
 package com.forrestguice.suntimeswidget.calendar;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.database.Cursor;
 import android.graphics.Color;
+import android.provider.CalendarContract;
 import android.support.test.filters.LargeTest;
 import android.support.test.rule.ActivityTestRule;
 import android.support.test.runner.AndroidJUnit4;
@@ -28,6 +33,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 
 import static junit.framework.Assert.assertNotNull;
@@ -92,4 +98,37 @@ public class CalendarAdapterTest
         assertTrue(CALENDAR_TEST0 + " shouldn't exist", !adapter.hasCalendar(CALENDAR_TEST0));
     }
 
+    @Test
+    public void test_applyBatch()
+    {
+        assertNotNull(adapter);
+        adapter.removeCalendar(CALENDAR_TEST0);
+
+        int n = 7;
+        Calendar dtStart = Calendar.getInstance();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(adapter.newCalendarOperation(CALENDAR_TEST0, "test0", Color.RED).build());
+        for (int i=0; i<n; i++)
+        {
+            dtStart.add(Calendar.DATE, 1);
+            operations.add(adapter.newEventOperation(adapter.createEventContentValues(-1, "event " + i, "desc", null, dtStart))
+                    .withValueBackReference(CalendarContract.Events.CALENDAR_ID, 0).build());
+        }
+
+        ContentProviderResult[] results = adapter.applyBatch(operations);
+        assertNotNull("applyBatch should succeed", results);
+        assertTrue("there should be a result for each operation", results.length == n + 1);
+
+        long calendarID = adapter.queryCalendarID(CALENDAR_TEST0);
+        assertTrue(CALENDAR_TEST0 + " should exist", (calendarID == ContentUris.parseId(results[0].uri)));
+
+        Cursor cursor = adapter.queryCalendarEvents(calendarID, new String[] { CalendarContract.Events._ID });
+        assertNotNull(cursor);
+        assertTrue(n + " events should exist", cursor.getCount() == n);
+        cursor.close();
+
+        assertTrue((n - 1) + " events should have been removed", adapter.removeCalendarEventsBefore(calendarID, dtStart.getTimeInMillis()) == (n - 1));
+        assertTrue(CALENDAR_TEST0 + " should be removed", adapter.removeCalendar(CALENDAR_TEST0));
+    }
+
 }
@@ -0,0 +1,117 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.support.annotation.NonNull;
+
+import com.forrestguice.suntimeswidget.calendar.task.ProviderLatency;
+
+import java.util.ArrayList;
+
+/**
+ * InstrumentedCalendarAdapter
+ * A SuntimesCalendarAdapter that records the latency of every calendar provider call (see ProviderLatency).
+ */
+public class InstrumentedCalendarAdapter extends SuntimesCalendarAdapter
+{
+    protected final ProviderLatency latency;
+
+    public InstrumentedCalendarAdapter(ContentResolver contentResolver, String[] calendars, @NonNull ProviderLatency latency)
+    {
+        super(contentResolver, calendars);
+        this.latency = latency;
+    }
+
+    public ProviderLatency getLatency() {
+        return latency;
+    }
+
+    @Override
+    protected Uri insert(Uri uri, ContentValues values)
+    {
+        long bench_start = System.nanoTime();
+        try {
+            return super.insert(uri, values);
+        } finally {
+            latency.record(ProviderLatency.CALENDAR_INSERT, System.nanoTime() - bench_start);
+        }
+    }
+
+    @Override
+    protected int bulkInsert(Uri uri, ContentValues[] values)
+    {
+        long bench_start = System.nanoTime();
+        try {
+            return super.bulkInsert(uri, values);
+        } finally {
+            latency.record(ProviderLatency.CALENDAR_BULKINSERT, System.nanoTime() - bench_start);
+        }
+    }
+
+    @Override
+    protected int update(Uri uri, ContentValues values, String select, String[] args)
+    {
+        long bench_start = System.nanoTime();
+        try {
+            return super.update(uri, values, select, args);
+        } finally {
+            latency.record(ProviderLatency.CALENDAR_UPDATE, System.nanoTime() - bench_start);
+        }
+    }
+
+    @Override
+    protected int delete(Uri uri, String select, String[] args)
+    {
+        long bench_start = System.nanoTime();
+        try {
+            return super.delete(uri, select, args);
+        } finally {
+            latency.record(ProviderLatency.CALENDAR_DELETE, System.nanoTime() - bench_start);
+        }
+    }
+
+    @Override
+    protected Cursor query(Uri uri, String[] projection, String select, String[] args, String sortOrder)
+    {
+        long bench_start = System.nanoTime();
+        try {
+            return super.query(uri, projection, select, args, sortOrder);
+        } finally {
+            latency.record(ProviderLatency.CALENDAR_QUERY, System.nanoTime() - bench_start);
+        }
+    }
+
+    @Override
+    protected ContentProviderResult[] applyBatch(String authority, ArrayList<ContentProviderOperation> operations) throws RemoteException, OperationApplicationException
+    {
+        long bench_start = System.nanoTime();
+        try {
+            return super.applyBatch(authority, operations);
+        } finally {
+            latency.record(ProviderLatency.CALENDAR_APPLYBATCH, System.nanoTime() - bench_start);
+        }
+    }
+}
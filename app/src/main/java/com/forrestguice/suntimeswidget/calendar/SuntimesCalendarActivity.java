@@ -79,6 +79,7 @@ import android.widget.TextView;
 
 import com.forrestguice.suntimescalendars.R;
 import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+import com.forrestguice.suntimeswidget.calendar.task.AddonHealth;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskBase;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskItem;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskListener;
@@ -871,6 +872,9 @@ public class SuntimesCalendarActivity extends AppCompatActivity
                 int calendarColor = settings.loadPrefCalendarColor(context, calendar);
                 calendarPref.setNoteFormat(R.string.summarylist_format);
                 calendarPref.setNote(settings.loadCalendarNote(context, calendar, SuntimesCalendarSettings.NOTE_LOCATION_NAME));
+                if (isAddonCalendar(descriptor)) {
+                    calendarPref.setHealth(AddonHealth.load(context, calendar).toDisplayString(context));
+                }
                 calendarPref.setIconColor(createColorStateList(calendarColor));
                 calendarPref.setIcon(R.drawable.ic_action_calendar);
                 calendarPref.setOnIconClickListener(new View.OnClickListener()
@@ -1020,6 +1024,10 @@ public class SuntimesCalendarActivity extends AppCompatActivity
                 return;
 
             calendarsEnabledPref.setOnPreferenceChangeListener(onPreferenceChanged0(activity));
+            Preference syncPref = findPreference(SuntimesCalendarSettings.PREF_KEY_CALENDARS_SYNC);
+            if (syncPref != null) {
+                syncPref.setOnPreferenceChangeListener(onSyncPrefChanged(activity));
+            }
             for (String calendar : calendarPrefs.keySet())
             {
                 CheckBoxPreference calendarPref = calendarPrefs.get(calendar);
@@ -1032,6 +1040,10 @@ public class SuntimesCalendarActivity extends AppCompatActivity
         private void clearPrefListeners()
         {
             calendarsEnabledPref.setOnPreferenceChangeListener(null);
+            Preference syncPref = findPreference(SuntimesCalendarSettings.PREF_KEY_CALENDARS_SYNC);
+            if (syncPref != null) {
+                syncPref.setOnPreferenceChangeListener(null);
+            }
             for (String calendar : calendarPrefs.keySet())
             {
                 CheckBoxPreference calendarPref = calendarPrefs.get(calendar);
@@ -1119,6 +1131,9 @@ public class SuntimesCalendarActivity extends AppCompatActivity
                         }
                     }
                     calendarPref.setNote(settings.loadCalendarNote(activity, calendar, SuntimesCalendarSettings.NOTE_LOCATION_NAME));
+                    if (isAddonCalendar(SuntimesCalendarDescriptor.getDescriptor(activity, calendar))) {
+                        calendarPref.setHealth(AddonHealth.load(activity, calendar).toDisplayString(activity));
+                    }
                 }
             }
         }
@@ -1139,6 +1154,25 @@ public class SuntimesCalendarActivity extends AppCompatActivity
             return calendarTaskService.runCalendarTask(activity, taskIntent, false, true, calendarTaskListener);
         }
 
+        /**
+         * Syncs the enabled calendars when "Sync Existing Calendars" is turned on (later updates sync as well).
+         */
+        private Preference.OnPreferenceChangeListener onSyncPrefChanged(final Activity activity)
+        {
+            return new Preference.OnPreferenceChangeListener()
+            {
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object newValue)
+                {
+                    boolean sync = (Boolean) newValue;
+                    if (sync && calendarsEnabledPref.isChecked() && hasCalendarPermissions(activity) && calendarTaskService != null) {
+                        runCalendarTask0(activity, true, SuntimesCalendarTaskService.ACTION_SYNC_CALENDARS);
+                    }
+                    return true;
+                }
+            };
+        }
+
         private Preference.OnPreferenceChangeListener onPreferenceChanged0(final Activity activity)
         {
             return new Preference.OnPreferenceChangeListener()
@@ -1298,6 +1332,13 @@ public class SuntimesCalendarActivity extends AppCompatActivity
             return (locationDisplay != null) ? context.getString(R.string.confirm_display_format, calendarDisplay, locationDisplay) : calendarDisplay;
         }
 
+        /**
+         * @return true the calendar is provided by an add-on (see ContentProviderCalendar)
+         */
+        public static boolean isAddonCalendar(@Nullable SuntimesCalendarDescriptor descriptor) {
+            return (descriptor != null && descriptor.calendarRef() != null && descriptor.calendarRef().startsWith("content:"));
+        }
+
         private String getLocationString(Context context)
         {
             String location = null;
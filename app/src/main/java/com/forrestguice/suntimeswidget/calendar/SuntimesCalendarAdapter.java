@@ -19,19 +19,24 @@
 package com.forrestguice.suntimeswidget.calendar;
 
 import android.annotation.TargetApi;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.net.Uri;
 import android.os.Build;
+import android.os.RemoteException;
 import android.provider.CalendarContract;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 
 @TargetApi(14)
@@ -57,6 +62,28 @@ public class SuntimesCalendarAdapter
         this.calendars = calendars;
     }
 
+    /**
+     * Calls to the calendar provider; every call made by the adapter goes through one of these (see InstrumentedCalendarAdapter).
+     */
+    protected Uri insert(Uri uri, ContentValues values) {
+        return contentResolver.insert(uri, values);
+    }
+    protected int bulkInsert(Uri uri, ContentValues[] values) {
+        return contentResolver.bulkInsert(uri, values);
+    }
+    protected int update(Uri uri, ContentValues values, String select, String[] args) {
+        return contentResolver.update(uri, values, select, args);
+    }
+    protected int delete(Uri uri, String select, String[] args) {
+        return contentResolver.delete(uri, select, args);
+    }
+    protected Cursor query(Uri uri, String[] projection, String select, String[] args, String sortOrder) {
+        return contentResolver.query(uri, projection, select, args, sortOrder);
+    }
+    protected ContentProviderResult[] applyBatch(String authority, ArrayList<ContentProviderOperation> operations) throws RemoteException, OperationApplicationException {
+        return contentResolver.applyBatch(authority, operations);
+    }
+
     /**
      * Creates a new calender managed by the "Suntimes" local account.
      * @param calendarName the calendar's name
@@ -67,7 +94,7 @@ public class SuntimesCalendarAdapter
     {
         Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(CalendarContract.Calendars.CONTENT_URI);
         ContentValues contentValues = createCalendarContentValues(calendarName, calendarDisplayName, calendarColor);
-        contentResolver.insert(uri, contentValues);
+        insert(uri, contentValues);
     }
 
     public boolean updateCalendarColor(String calendarName, int calendarColor)
@@ -88,7 +115,7 @@ public class SuntimesCalendarAdapter
                     + CalendarContract.Calendars.ACCOUNT_TYPE + " = ?) AND ("
                     + CalendarContract.Calendars.NAME + " = ?) AND ("
                     + CalendarContract.Calendars.OWNER_ACCOUNT + " = ?))";
-            return (contentResolver.update(uri, values, select, args) > 0);
+            return (update(uri, values, select, args) > 0);
         }
         return false;
     }
@@ -105,7 +132,7 @@ public class SuntimesCalendarAdapter
             {
                 long calendarID = cursor.getLong(PROJECTION_ID_INDEX);
                 Uri deleteUri = ContentUris.withAppendedId(CalendarContract.Calendars.CONTENT_URI, calendarID);
-                contentResolver.delete(deleteUri, null, null);
+                delete(deleteUri, null, null);
                 Log.d(TAG, "removeCalendars: removed calendar " + calendarID);
             }
             cursor.close();
@@ -124,7 +151,7 @@ public class SuntimesCalendarAdapter
         if (calendarID != -1)
         {
             Uri deleteUri = ContentUris.withAppendedId(CalendarContract.Calendars.CONTENT_URI, calendarID);
-            contentResolver.delete(deleteUri, null, null);
+            delete(deleteUri, null, null);
             Log.d(TAG, "removeCalendar: removed calendar " + calendarID);
             return true;
         } else return false;
@@ -139,14 +166,63 @@ public class SuntimesCalendarAdapter
     public void createCalendarEvent(long calendarID, String title, String description, @Nullable String location, Calendar... time) throws SecurityException
     {
         ContentValues contentValues = createEventContentValues(calendarID, title, description, location, time);
-        contentResolver.insert(CalendarContract.Events.CONTENT_URI, contentValues);
+        insert(CalendarContract.Events.CONTENT_URI, contentValues);
     }
     public void createCalendarEvent(long calendarID, String title, String description, Calendar... time) throws SecurityException {
         createCalendarEvent(calendarID, title, description, null, time);
     }
     public void createCalendarEvents(@NonNull ContentValues[] values) throws SecurityException
     {
-        contentResolver.bulkInsert(CalendarContract.Events.CONTENT_URI, values);
+        bulkInsert(CalendarContract.Events.CONTENT_URI, values);
+    }
+
+    /**
+     * Applies a batch of operations (in a single provider transaction).
+     * @param operations operations (e.g. created by newCalendarOperation, newEventOperation, or newUpdateEventOperation)
+     * @return results (one for each operation), or null if the batch failed
+     */
+    @Nullable
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations) throws SecurityException
+    {
+        try {
+            return applyBatch(CalendarContract.AUTHORITY, operations);
+
+        } catch (RemoteException e) {
+            Log.e(TAG, "applyBatch: failed to apply " + operations.size() + " operations; " + e);
+            return null;
+        } catch (OperationApplicationException e) {
+            Log.e(TAG, "applyBatch: failed to apply " + operations.size() + " operations; " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return an operation that creates a new calendar (see createCalendar)
+     */
+    public ContentProviderOperation.Builder newCalendarOperation(String calendarName, String calendarDisplayName, int calendarColor)
+    {
+        Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(CalendarContract.Calendars.CONTENT_URI);
+        return ContentProviderOperation.newInsert(uri).withValues(createCalendarContentValues(calendarName, calendarDisplayName, calendarColor));
+    }
+
+    /**
+     * @param values event values (see createEventContentValues)
+     * @return an operation that inserts the event
+     */
+    public ContentProviderOperation.Builder newEventOperation(@NonNull ContentValues values)
+    {
+        return ContentProviderOperation.newInsert(CalendarContract.Events.CONTENT_URI).withValues(values);
+    }
+
+    /**
+     * @param eventID event ID
+     * @param values updated event values
+     * @return an operation that updates the event (see updateCalendarEvent)
+     */
+    public ContentProviderOperation.Builder newUpdateEventOperation(long eventID, @NonNull ContentValues values)
+    {
+        Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, eventID));
+        return ContentProviderOperation.newUpdate(uri).withValues(values);
     }
 
     /**
@@ -160,7 +236,7 @@ public class SuntimesCalendarAdapter
         Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(CalendarContract.Events.CONTENT_URI);
         String[] args = new String[] { Long.toString(calendarID), Long.toString(timestamp) };
         String select = "((" + CalendarContract.Events.CALENDAR_ID + " = ?) AND (" + CalendarContract.Events.DTSTART + " < ?))";
-        return contentResolver.delete(uri, select, args);
+        return delete(uri, select, args);
     }
 
     /**
@@ -174,7 +250,7 @@ public class SuntimesCalendarAdapter
         Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(CalendarContract.Events.CONTENT_URI);
         String[] args = new String[] { Long.toString(calendarID), Long.toString(timestamp) };
         String select = "((" + CalendarContract.Events.CALENDAR_ID + " = ?) AND (" + CalendarContract.Events.DTSTART + " = ?))";
-        return contentResolver.delete(uri, select, args);
+        return delete(uri, select, args);
     }
 
     /**
@@ -188,7 +264,7 @@ public class SuntimesCalendarAdapter
         Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(CalendarContract.Events.CONTENT_URI);
         String[] args = new String[] { Long.toString(calendarID), Long.toString(timestamp) };
         String select = "((" + CalendarContract.Events.CALENDAR_ID + " = ?) AND (" + CalendarContract.Events.DTSTART + " > ?))";
-        return contentResolver.delete(uri, select, args);
+        return delete(uri, select, args);
     }
 
     /**
@@ -202,13 +278,66 @@ public class SuntimesCalendarAdapter
         Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(CalendarContract.Events.CONTENT_URI);
         String[] args = new String[] { Long.toString(calendarID), Long.toString(timestamp) };
         String select = "((" + CalendarContract.Events.CALENDAR_ID + " = ?) AND (" + CalendarContract.Events.DTSTART + " = ?))";
-        return contentResolver.query(uri, EVENT_PROJECTION, select, args, null);
+        return query(uri, EVENT_PROJECTION, select, args, null);
     }
 
     public boolean hasCalendarEvents( long calendarID, long timestamp ) {
         return (queryCalendarEventsAt(calendarID, timestamp).getCount() > 0);
     }
 
+    /**
+     * queryCalendarEvents
+     * @param calendarID calendar ID
+     * @param projection event columns to return
+     * @return cursor to all events belonging to the calendar
+     */
+    public Cursor queryCalendarEvents( long calendarID, String[] projection )
+    {
+        Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(CalendarContract.Events.CONTENT_URI);
+        String[] args = new String[] { Long.toString(calendarID) };
+        String select = "(" + CalendarContract.Events.CALENDAR_ID + " = ?)";
+        return query(uri, projection, select, args, null);
+    }
+
+    /**
+     * updateCalendarEvent
+     * @param eventID event ID
+     * @param values updated event values
+     * @return true if the event was updated, false otherwise
+     */
+    public boolean updateCalendarEvent( long eventID, @NonNull ContentValues values ) throws SecurityException
+    {
+        Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, eventID));
+        return (update(uri, values, null, null) > 0);
+    }
+
+    /**
+     * removeCalendarEvents
+     * @param calendarID calendar ID
+     * @param eventIDs IDs of the events to remove
+     * @return the number of events removed
+     */
+    public int removeCalendarEvents( long calendarID, @NonNull long[] eventIDs ) throws SecurityException
+    {
+        if (eventIDs.length == 0) {
+            return 0;
+        }
+
+        StringBuilder ids = new StringBuilder();
+        for (int i=0; i<eventIDs.length; i++)
+        {
+            if (i > 0) {
+                ids.append(",");
+            }
+            ids.append(eventIDs[i]);
+        }
+
+        Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(CalendarContract.Events.CONTENT_URI);
+        String[] args = new String[] { Long.toString(calendarID) };
+        String select = "((" + CalendarContract.Events.CALENDAR_ID + " = ?) AND (" + CalendarContract.Events._ID + " IN (" + ids + ")))";
+        return delete(uri, select, args);
+    }
+
     /**
      * @return a Cursor to all calendars managed by the "Suntimes" local account
      */
@@ -217,7 +346,7 @@ public class SuntimesCalendarAdapter
         Uri uri = SuntimesCalendarSyncAdapter.asSyncAdapter(CalendarContract.Calendars.CONTENT_URI);
         String[] args = new String[] { SuntimesCalendarSyncAdapter.ACCOUNT_NAME, CalendarContract.ACCOUNT_TYPE_LOCAL, SuntimesCalendarSyncAdapter.ACCOUNT_NAME };
         String select = "((" + CalendarContract.Calendars.ACCOUNT_NAME + " = ?) AND (" + CalendarContract.Calendars.ACCOUNT_TYPE + " = ?) AND (" + CalendarContract.Calendars.OWNER_ACCOUNT + " = ?))";
-        return contentResolver.query(uri, EVENT_PROJECTION, select, args, null);
+        return query(uri, EVENT_PROJECTION, select, args, null);
     }
 
     /**
@@ -232,7 +361,7 @@ public class SuntimesCalendarAdapter
                 + CalendarContract.Calendars.ACCOUNT_TYPE + " = ?) AND ("
                 + CalendarContract.Calendars.NAME + " = ?) AND ("
                 + CalendarContract.Calendars.OWNER_ACCOUNT + " = ?))";
-        return contentResolver.query(uri, EVENT_PROJECTION, select, args, null);
+        return query(uri, EVENT_PROJECTION, select, args, null);
     }
 
     /**
@@ -364,35 +493,60 @@ public class SuntimesCalendarAdapter
      */
     public ContentValues createEventContentValues(long calendarID, String title, String description, @Nullable String location, Calendar... time)
     {
-        ContentValues v = new ContentValues();
-        v.put(CalendarContract.Events.CALENDAR_ID, calendarID);
-        v.put(CalendarContract.Events.TITLE, title);
-        v.put(CalendarContract.Events.DESCRIPTION, description);
-
         if (time.length > 0)
         {
-            v.put(CalendarContract.Events.EVENT_TIMEZONE, time[0].getTimeZone().getID());
-            if (time.length >= 2)
-            {
-                v.put(CalendarContract.Events.DTSTART, time[0].getTimeInMillis());
-                v.put(CalendarContract.Events.DTEND, time[1].getTimeInMillis());
-            } else {
-                v.put(CalendarContract.Events.DTSTART, time[0].getTimeInMillis());
-                v.put(CalendarContract.Events.DTEND, time[0].getTimeInMillis());
-            }
+            long start = time[0].getTimeInMillis();
+            long end = (time.length >= 2 ? time[1].getTimeInMillis() : start);
+            return createEventContentValues(calendarID, title, description, location, time[0].getTimeZone().getID(), start, end);
+
         } else {
             Log.w(TAG, "createEventContentValues: missing time arg (empty array); creating event without start or end time.");
+            ContentValues v = new ContentValues();
+            v.put(CalendarContract.Events.CALENDAR_ID, calendarID);
+            v.put(CalendarContract.Events.TITLE, title);
+            v.put(CalendarContract.Events.DESCRIPTION, description);
+            if (location != null) {
+                v.put(CalendarContract.Events.EVENT_LOCATION, location);
+            }
+            putEventDefaults(v);
+            return v;
         }
+    }
+
+    /**
+     * @param calendarID calendar ID
+     * @param title event title
+     * @param description event description
+     * @param location event location (or null)
+     * @param timezone timezone ID (e.g. TimeZone.getDefault().getID())
+     * @param start event start (ms)
+     * @param end event end (ms); same as start for events without a duration
+     * @return event values
+     */
+    public ContentValues createEventContentValues(long calendarID, String title, String description, @Nullable String location, String timezone, long start, long end)
+    {
+        ContentValues v = new ContentValues();
+        v.put(CalendarContract.Events.CALENDAR_ID, calendarID);
+        v.put(CalendarContract.Events.TITLE, title);
+        v.put(CalendarContract.Events.DESCRIPTION, description);
+        v.put(CalendarContract.Events.EVENT_TIMEZONE, timezone);
+        v.put(CalendarContract.Events.DTSTART, start);
+        v.put(CalendarContract.Events.DTEND, end);
 
         if (location != null) {
             v.put(CalendarContract.Events.EVENT_LOCATION, location);
         }
 
+        putEventDefaults(v);
+        return v;
+    }
+
+    private static void putEventDefaults(ContentValues v)
+    {
         v.put(CalendarContract.Events.AVAILABILITY, CalendarContract.Events.AVAILABILITY_FREE);
         v.put(CalendarContract.Events.GUESTS_CAN_INVITE_OTHERS, "0");
         v.put(CalendarContract.Events.GUESTS_CAN_SEE_GUESTS, "0");
         v.put(CalendarContract.Events.GUESTS_CAN_MODIFY, "0");
-        return v;
     }
 
     /**
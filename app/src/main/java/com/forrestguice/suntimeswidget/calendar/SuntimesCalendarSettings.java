@@ -37,12 +37,34 @@ public class SuntimesCalendarSettings
     public static final String PREF_KEY_CALENDAR_WINDOW1 = "app_calendars_window1";
     public static final String PREF_DEF_CALENDAR_WINDOW1 = "63072000000";  // 2 years
 
+    public static final String PREF_KEY_CALENDARS_PARALLEL = "app_calendars_parallel";
+    public static final boolean PREF_DEF_CALENDARS_PARALLEL = false;
+
+    public static final String PREF_KEY_CALENDARS_MAXTHREADS = "app_calendars_maxthreads";
+    public static final String PREF_DEF_CALENDARS_MAXTHREADS = "3";
+
+    public static final String PREF_KEY_CALENDARS_SYNC = "app_calendars_sync";
+    public static final boolean PREF_DEF_CALENDARS_SYNC = false;
+
+    public static final String PREF_KEY_CALENDARS_CACHE = "app_calendars_cache";
+    public static final boolean PREF_DEF_CALENDARS_CACHE = true;
+
+    public static final String PREF_KEY_CALENDARS_PIPELINED = "app_calendars_pipelined";
+    public static final boolean PREF_DEF_CALENDARS_PIPELINED = true;
+
+    public static final String PREF_KEY_CALENDARS_BATCHWRITES = "app_calendars_batchwrites";
+    public static final boolean PREF_DEF_CALENDARS_BATCHWRITES = false;
+
+    public static final String PREF_KEY_CALENDARS_LOCALCALCULATOR = "app_calendars_localcalculator";
+    public static final boolean PREF_DEF_CALENDARS_LOCALCALCULATOR = false;
+
     public static final String PREF_KEY_CALENDARS_CALENDAR = "app_calendars_calendar_";
     public static final String PREF_KEY_CALENDARS_COLOR = "app_calendars_color_";
 
     public static final String PREF_KEY_CALENDARS_NOTES = "app_calendars_notes_";
     public static final String NOTE_LOCATION_NAME = "location_name";
-    public static final String[] ALL_NOTES = new String[] { NOTE_LOCATION_NAME };
+    public static final String NOTE_DATA_VERSION = "data_version";
+    public static final String[] ALL_NOTES = new String[] { NOTE_LOCATION_NAME, NOTE_DATA_VERSION };
 
     public static final String PREF_KEY_CALENDAR_LASTSYNC = "lastCalendarSync";
 
@@ -130,6 +152,80 @@ public class SuntimesCalendarSettings
         return Long.parseLong(prefs.getString(PREF_KEY_CALENDAR_WINDOW1, PREF_DEF_CALENDAR_WINDOW1));
     }
 
+    /**
+     * @param context context used to access preferences
+     * @return true calendars should be added concurrently, false one after another
+     */
+    public static boolean loadPrefCalendarsParallel(Context context)
+    {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getBoolean(PREF_KEY_CALENDARS_PARALLEL, PREF_DEF_CALENDARS_PARALLEL);
+    }
+
+    /**
+     * @param context context used to access preferences
+     * @return the number of calendars that may be added at the same time (see loadPrefCalendarsParallel)
+     */
+    public static int loadPrefCalendarsMaxThreads(Context context)
+    {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        try {
+            return Math.max(1, Integer.parseInt(prefs.getString(PREF_KEY_CALENDARS_MAXTHREADS, PREF_DEF_CALENDARS_MAXTHREADS)));
+        } catch (NumberFormatException e) {
+            return Integer.parseInt(PREF_DEF_CALENDARS_MAXTHREADS);
+        }
+    }
+
+    /**
+     * @param context context used to access preferences
+     * @return true existing calendars should be synced (only changed events are written), false left as they are
+     */
+    public static boolean loadPrefCalendarsSync(Context context)
+    {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getBoolean(PREF_KEY_CALENDARS_SYNC, PREF_DEF_CALENDARS_SYNC);
+    }
+
+    /**
+     * @param context context used to access preferences
+     * @return true calculator provider results should be cached (see ProviderResultCache), false always queried
+     */
+    public static boolean loadPrefCalendarsCache(Context context)
+    {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getBoolean(PREF_KEY_CALENDARS_CACHE, PREF_DEF_CALENDARS_CACHE);
+    }
+
+    /**
+     * @param context context used to access preferences
+     * @return true events should be written by a separate writer thread (overlapping event generation), false by the calendar's thread
+     */
+    public static boolean loadPrefCalendarsPipelined(Context context)
+    {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getBoolean(PREF_KEY_CALENDARS_PIPELINED, PREF_DEF_CALENDARS_PIPELINED);
+    }
+
+    /**
+     * @param context context used to access preferences
+     * @return true events should be written in transactions (applyBatch; new calendars are created with their first events), false with bulkInsert
+     */
+    public static boolean loadPrefCalendarsBatchWrites(Context context)
+    {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getBoolean(PREF_KEY_CALENDARS_BATCHWRITES, PREF_DEF_CALENDARS_BATCHWRITES);
+    }
+
+    /**
+     * @param context context used to access preferences
+     * @return true events should be calculated in-process (LocalCalculator), false queried from the Suntimes calculator provider
+     */
+    public static boolean loadPrefCalendarsLocalCalculator(Context context)
+    {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getBoolean(PREF_KEY_CALENDARS_LOCALCALCULATOR, PREF_DEF_CALENDARS_LOCALCALCULATOR);
+    }
+
     /**
      * @param context context used to access preferences
      * @return true calendar is enabled, false otherwise
@@ -0,0 +1,160 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.forrestguice.suntimescalendars.R;
+
+import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.util.Date;
+
+/**
+ * AddonHealth
+ * Tracks the health of an add-on calendar (see ContentProviderCalendar) across task runs; the mean query latency
+ * of the last successful run, and runs that failed (queries that timed out or failed after retrying).
+ *
+ * Acts as a circuit breaker; after FAILURE_THRESHOLD consecutive failed runs the add-on is degraded, and later runs
+ * are skipped until a cooldown has passed (doubled after each further failure, up to MAX_COOLDOWN_MILLIS). The next
+ * run after the cooldown is a trial; the add-on recovers when it succeeds.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class AddonHealth
+{
+    public static final String PREF_KEY_CALENDARS_HEALTH = "app_calendars_health_";
+    public static final int FAILURE_THRESHOLD = 3;
+    public static final long COOLDOWN_MILLIS = 60 * 60 * 1000;
+    public static final long MAX_COOLDOWN_MILLIS = 24 * COOLDOWN_MILLIS;
+
+    protected final String calendar;
+    protected int failures = 0;           // consecutive failed runs
+    protected int totalFailures = 0;
+    protected float latencyMillis = -1;   // mean query latency (last successful run); -1 unknown
+    protected long retryAt = 0;           // degraded add-ons are skipped until (ms)
+
+    public AddonHealth(@NonNull String calendar) {
+        this.calendar = calendar;
+    }
+
+    public String calendarName() {
+        return calendar;
+    }
+
+    public boolean isDegraded() {
+        return failures >= FAILURE_THRESHOLD;
+    }
+
+    /**
+     * @param now current time (ms)
+     * @return true the add-on should be queried, false it is degraded (and still cooling down)
+     */
+    public boolean allowRun(long now) {
+        return !isDegraded() || now >= retryAt;
+    }
+
+    public long retryAt() {
+        return retryAt;
+    }
+
+    public int failures() {
+        return failures;
+    }
+
+    public int totalFailures() {
+        return totalFailures;
+    }
+
+    public float latencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * @param latencyMillis mean query latency of the run (ms)
+     */
+    public void onSuccess(double latencyMillis)
+    {
+        this.failures = 0;
+        this.retryAt = 0;
+        this.latencyMillis = (float) latencyMillis;
+    }
+
+    /**
+     * @param now current time (ms)
+     */
+    public void onFailure(long now)
+    {
+        failures++;
+        totalFailures++;
+        if (isDegraded())
+        {
+            int n = Math.min(failures - FAILURE_THRESHOLD, 16);
+            retryAt = now + Math.min(MAX_COOLDOWN_MILLIS, COOLDOWN_MILLIS << n);
+        }
+    }
+
+    public static AddonHealth load(Context context, @NonNull String calendar)
+    {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String prefix = PREF_KEY_CALENDARS_HEALTH + calendar + "_";
+        AddonHealth health = new AddonHealth(calendar);
+        health.failures = prefs.getInt(prefix + "failures", 0);
+        health.totalFailures = prefs.getInt(prefix + "totalFailures", 0);
+        health.latencyMillis = prefs.getFloat(prefix + "latency", -1);
+        health.retryAt = prefs.getLong(prefix + "retryAt", 0);
+        return health;
+    }
+
+    public void save(Context context)
+    {
+        SharedPreferences.Editor prefs = PreferenceManager.getDefaultSharedPreferences(context).edit();
+        String prefix = PREF_KEY_CALENDARS_HEALTH + calendar + "_";
+        prefs.putInt(prefix + "failures", failures);
+        prefs.putInt(prefix + "totalFailures", totalFailures);
+        prefs.putFloat(prefix + "latency", latencyMillis);
+        prefs.putLong(prefix + "retryAt", retryAt);
+        prefs.apply();
+    }
+
+    /**
+     * @return a one-line display string (or null if the add-on hasn't been queried yet)
+     */
+    @Nullable
+    public String toDisplayString(Context context)
+    {
+        if (isDegraded()) {
+            String retryTime = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT).format(new Date(retryAt));
+            return context.getString(R.string.addon_health_degraded, failures, retryTime);
+
+        } else if (latencyMillis >= 0 || totalFailures > 0) {
+            String latency = (latencyMillis >= 0 ? new DecimalFormat("0.#").format(latencyMillis) : "?");
+            return context.getString(R.string.addon_health, latency, totalFailures);
+
+        } else return null;
+    }
+
+    @Override
+    public String toString() {
+        return calendar + ": failures " + failures + " (" + totalFailures + " total), latency " + latencyMillis + " ms" + (isDegraded() ? ", degraded until " + retryAt : "");
+    }
+}
@@ -0,0 +1,238 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.task;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calendar.core.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * ProviderLatency
+ * Latency histograms (see LatencyHistogram) for each kind of provider call; calculator queries, add-on
+ * queries, and calendar provider queries, inserts, bulkInserts, applyBatch, updates, and deletes.
+ *
+ * A task records its own calls (see SuntimesCalendarTask.getLatency), then adds them to the histograms
+ * kept under the app's files dir (see `accumulate`), so percentiles are reported across runs.
+ */
+public class ProviderLatency
+{
+    public static final String TAG = "ProviderLatency";
+
+    public static final int CALCULATOR_QUERY = 0;
+    public static final int ADDON_QUERY = 1;
+    public static final int CALENDAR_QUERY = 2;
+    public static final int CALENDAR_INSERT = 3;
+    public static final int CALENDAR_BULKINSERT = 4;
+    public static final int CALENDAR_APPLYBATCH = 5;
+    public static final int CALENDAR_UPDATE = 6;
+    public static final int CALENDAR_DELETE = 7;
+    public static final String[] OPERATIONS = new String[] { "calculator.query", "addon.query", "calendar.query", "calendar.insert", "calendar.bulkInsert", "calendar.applyBatch", "calendar.update", "calendar.delete" };
+
+    public static final String FILE_NAME = "provider_latency.bin";
+    public static final int MAGIC = 0x53434c48;    // "SCLH"
+    public static final int FORMAT = 1;
+
+    protected final LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+
+    public ProviderLatency()
+    {
+        for (int i=0; i<histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @param operation CALCULATOR_QUERY, ADDON_QUERY, CALENDAR_QUERY, CALENDAR_INSERT, CALENDAR_BULKINSERT, CALENDAR_APPLYBATCH, CALENDAR_UPDATE, CALENDAR_DELETE
+     * @param nanos time spent (ns)
+     */
+    public void record(int operation, long nanos) {
+        histograms[operation].record(nanos);
+    }
+
+    public LatencyHistogram histogram(int operation) {
+        return histograms[operation];
+    }
+
+    public void add(@NonNull ProviderLatency other)
+    {
+        for (int i=0; i<histograms.length; i++) {
+            histograms[i].add(other.histograms[i]);
+        }
+    }
+
+    /**
+     * @return count, p50, p90, p99, and max (ms) of each operation (that was recorded) as a JSON object
+     */
+    public String toJson()
+    {
+        StringBuilder json = new StringBuilder("{");
+        for (int i=0; i<histograms.length; i++)
+        {
+            if (histograms[i].count() > 0) {
+                json.append(json.length() > 1 ? "," : "").append("\"").append(OPERATIONS[i]).append("\":").append(histograms[i].toJson());
+            }
+        }
+        return json.append("}").toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder s = new StringBuilder(TAG).append(":");
+        for (int i=0; i<histograms.length; i++)
+        {
+            if (histograms[i].count() > 0) {
+                s.append("\n").append(OPERATIONS[i]).append(": ").append(histograms[i]);
+            }
+        }
+        return s.toString();
+    }
+
+    /**
+     * Writes the histograms to a stream (see `readFrom`).
+     * Format: MAGIC, FORMAT, numOperations, then for each operation: name, histogram (see LatencyHistogram.writeTo)
+     */
+    public void writeTo(@NonNull DataOutputStream out) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeInt(histograms.length);
+        for (int i=0; i<histograms.length; i++)
+        {
+            out.writeUTF(OPERATIONS[i]);
+            histograms[i].writeTo(out);
+        }
+    }
+
+    /**
+     * Reads histograms from a stream (see `writeTo`); operations are matched by name (unrecognized operations are skipped).
+     * @throws IOException if the stream is truncated or malformed
+     */
+    public static ProviderLatency readFrom(@NonNull DataInputStream in) throws IOException
+    {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+            throw new IOException("Unrecognized format");
+        }
+        int n = in.readInt();
+        if (n < 0 || n > 1024) {
+            throw new IOException("Invalid operation count: " + n);
+        }
+
+        ProviderLatency latency = new ProviderLatency();
+        for (int i=0; i<n; i++)
+        {
+            String name = in.readUTF();
+            LatencyHistogram histogram = LatencyHistogram.readFrom(in);
+            for (int j=0; j<OPERATIONS.length; j++)
+            {
+                if (OPERATIONS[j].equals(name)) {
+                    latency.histograms[j] = histogram;
+                    break;
+                }
+            }
+        }
+        return latency;
+    }
+
+    protected static File file(@NonNull Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * @return histograms accumulated over previous runs (empty if none)
+     */
+    public static synchronized ProviderLatency load(@NonNull Context context)
+    {
+        File file = file(context);
+        if (!file.exists()) {
+            return new ProviderLatency();
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return readFrom(in);
+
+        } catch (IOException e) {
+            Log.w(TAG, "load: failed to read " + file + ": " + e);
+            return new ProviderLatency();
+
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Adds a run's histograms to those kept under the app's files dir.
+     * @param run histograms recorded by a single run
+     * @return the accumulated histograms
+     */
+    public static synchronized ProviderLatency accumulate(@NonNull Context context, @NonNull ProviderLatency run)
+    {
+        ProviderLatency total = load(context);
+        total.add(run);
+
+        File file = file(context);
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            total.writeTo(out);
+            out.close();
+            out = null;
+
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tmpFile);
+            }
+
+        } catch (IOException e) {
+            Log.w(TAG, "accumulate: failed to write " + file + ": " + e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+
+        } finally {
+            close(out);
+        }
+        return total;
+    }
+
+    private static void close(@Nullable Closeable closeable)
+    {
+        if (closeable != null)
+        {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.w(TAG, "close: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.task;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RunMetricsLog
+ * Keeps the RunMetrics of the most recent task runs under the app's files dir; one run (JSON object)
+ * per line, oldest first. The log is shown by the About dialog, and can be exported as a JSON array.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class RunMetricsLog
+{
+    public static final String TAG = "RunMetricsLog";
+    public static final String FILE_NAME = "run_metrics.jsonl";
+    public static final int DEFAULT_MAX_RUNS = 10;
+
+    protected final File file;
+    protected final int maxRuns;
+
+    public RunMetricsLog(@NonNull File file, int maxRuns)
+    {
+        this.file = file;
+        this.maxRuns = Math.max(1, maxRuns);
+    }
+
+    public static RunMetricsLog create(@NonNull Context context) {
+        return new RunMetricsLog(new File(context.getFilesDir(), FILE_NAME), DEFAULT_MAX_RUNS);
+    }
+
+    /**
+     * Appends a run to the log (dropping the oldest runs beyond maxRuns).
+     */
+    public synchronized void add(@NonNull RunMetrics metrics)
+    {
+        List<String> runs = runs();
+        runs.add(metrics.toJson());
+        while (runs.size() > maxRuns) {
+            runs.remove(0);
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+            for (String run : runs) {
+                out.write(run);
+                out.write('\n');
+            }
+            out.close();
+            out = null;
+
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tmpFile);
+            }
+
+        } catch (IOException e) {
+            Log.w(TAG, "add: failed to write " + file + ": " + e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * @return logged runs (JSON objects), oldest first
+     */
+    public synchronized List<String> runs()
+    {
+        ArrayList<String> runs = new ArrayList<>();
+        if (!file.exists()) {
+            return runs;
+        }
+
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                if (!line.trim().isEmpty()) {
+                    runs.add(line);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "runs: failed to read " + file + ": " + e);
+
+        } finally {
+            close(in);
+        }
+        return runs;
+    }
+
+    /**
+     * @return the most recent run (JSON object), or null if nothing has been logged
+     */
+    @Nullable
+    public String lastRun()
+    {
+        List<String> runs = runs();
+        return (runs.isEmpty() ? null : runs.get(runs.size() - 1));
+    }
+
+    /**
+     * @return logged runs as a JSON array (oldest first)
+     */
+    public String toJson()
+    {
+        StringBuilder json = new StringBuilder("[");
+        List<String> runs = runs();
+        for (int i=0; i<runs.size(); i++) {
+            json.append(i > 0 ? ",\n" : "\n").append(runs.get(i));
+        }
+        return json.append("\n]").toString();
+    }
+
+    public synchronized void clear()
+    {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private static void close(@Nullable Closeable closeable)
+    {
+        if (closeable != null)
+        {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.w(TAG, "close: " + e);
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import android.support.annotation.NonNull;
 
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventCursorReader;
 
 /**
  * @version 0.1.0
@@ -40,8 +41,29 @@ public interface SuntimesCalendar
             COLUMN_CALENDAR_NAME, COLUMN_CALENDAR_TITLE, COLUMN_CALENDAR_SUMMARY, COLUMN_CALENDAR_COLOR
     };
 
+    // optional capability columns (contract v2); add-ons that omit these are queried in 7 day chunks (all columns)
+    String COLUMN_CALENDAR_CHUNK_SPAN = "calendar_chunk_span";        // long (ms) (preferred span of each content query)
+    String COLUMN_CALENDAR_MAX_ROWS = "calendar_max_rows";            // int (max rows returned by a content query; 0 no limit) (ignored for packed content)
+    String COLUMN_CALENDAR_PROJECTIONS = "calendar_projections";      // int (boolean) (content queries honor the projection)
+    String COLUMN_CALENDAR_DATA_VERSION = "calendar_data_version";    // String (token; changes whenever content changes)
+    String COLUMN_CALENDAR_PACKED = "calendar_packed";                // int (packed content format version (see PackedEvents); 0 none)
+    String COLUMN_CALENDAR_PARALLELISM = "calendar_parallelism";      // int (max concurrent content queries; 0 default)
+    String COLUMN_CALENDAR_TIMEOUT = "calendar_timeout";              // long (ms) (deadline for each content query; 0 default)
+
+    String[] QUERY_CALENDAR_INFO_PROJECTION_V2 = new String[] {
+            COLUMN_CALENDAR_NAME, COLUMN_CALENDAR_TITLE, COLUMN_CALENDAR_SUMMARY, COLUMN_CALENDAR_COLOR,
+            COLUMN_CALENDAR_CHUNK_SPAN, COLUMN_CALENDAR_MAX_ROWS, COLUMN_CALENDAR_PROJECTIONS, COLUMN_CALENDAR_DATA_VERSION,
+            COLUMN_CALENDAR_PACKED, COLUMN_CALENDAR_PARALLELISM, COLUMN_CALENDAR_TIMEOUT
+    };
+
 
     String QUERY_CALENDAR_CONTENT = "calendarContent";
+    String[] QUERY_CALENDAR_CONTENT_PROJECTION = EventCursorReader.COLUMNS;    // (CalendarContract.Events columns) requested from add-ons that support projections; the columns that are copied
+
+    String COLUMN_EVENTS_PACKED = "events_packed";    // blob (packed events; see PackedEvents)
+    String[] QUERY_CALENDAR_CONTENT_PACKED_PROJECTION = new String[] {    // requested from add-ons that declare COLUMN_CALENDAR_PACKED
+            COLUMN_EVENTS_PACKED
+    };
 
     void init(@NonNull Context context, @NonNull SuntimesCalendarSettings settings);
     boolean initCalendar(@NonNull SuntimesCalendarSettings settings,
@@ -21,16 +21,32 @@ package com.forrestguice.suntimeswidget.calendar.task;
 import android.content.Context;
 import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.forrestguice.suntimeswidget.calendar.InstrumentedCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarDescriptor;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarFactory;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
+import com.forrestguice.suntimeswidget.calendar.task.events.BatchEventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.events.BulkInsertEventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.events.PipelinedEventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.events.SyncEventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.queries.QueryPlanner;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @SuppressWarnings("Convert2Diamond")
 public class SuntimesCalendarTask extends SuntimesCalendarTaskBase
@@ -41,9 +57,16 @@ public class SuntimesCalendarTask extends SuntimesCalendarTaskBase
     {
         super(context);
         contextRef = new WeakReference<Context>(context);
-        adapter = new SuntimesCalendarAdapter(context.getContentResolver(), SuntimesCalendarDescriptor.getCalendars(context));
+        adapter = new InstrumentedCalendarAdapter(context.getContentResolver(), SuntimesCalendarDescriptor.getCalendars(context), latency);
         calendarWindow0 = SuntimesCalendarSettings.loadPrefCalendarWindow0(context);
         calendarWindow1 = SuntimesCalendarSettings.loadPrefCalendarWindow1(context);
+        setFlagParallel(SuntimesCalendarSettings.loadPrefCalendarsParallel(context), SuntimesCalendarSettings.loadPrefCalendarsMaxThreads(context));
+        flag_sync = SuntimesCalendarSettings.loadPrefCalendarsSync(context);
+        flag_cache = SuntimesCalendarSettings.loadPrefCalendarsCache(context);
+        flag_pipelined = SuntimesCalendarSettings.loadPrefCalendarsPipelined(context);
+        setWriteMode(SuntimesCalendarSettings.loadPrefCalendarsBatchWrites(context) ? WRITE_MODE_APPLYBATCH : WRITE_MODE_BULKINSERT);
+        flag_local_calculator = SuntimesCalendarSettings.loadPrefCalendarsLocalCalculator(context);
+        flag_ephemeris = flag_local_calculator;    // the table is precomputed by the built-in calculator; otherwise the user's chosen calculator is used
     }
 
     private long[] getWindow()
@@ -58,6 +81,7 @@ public class SuntimesCalendarTask extends SuntimesCalendarTaskBase
         startDate.set(Calendar.HOUR_OF_DAY, 0);
         startDate.set(Calendar.MINUTE, 0);
         startDate.set(Calendar.SECOND, 0);
+        startDate.set(Calendar.MILLISECOND, 0);
 
         endDate.setTimeInMillis(now.getTimeInMillis() + calendarWindow1);
         endDate.add(Calendar.YEAR, 1);       // round up to end of year
@@ -66,6 +90,7 @@ public class SuntimesCalendarTask extends SuntimesCalendarTaskBase
         endDate.set(Calendar.HOUR_OF_DAY, 0);
         endDate.set(Calendar.MINUTE, 0);
         endDate.set(Calendar.SECOND, 0);
+        endDate.set(Calendar.MILLISECOND, 0);
 
         return new long[] { startDate.getTimeInMillis(), endDate.getTimeInMillis() };
     }
@@ -76,12 +101,30 @@ public class SuntimesCalendarTask extends SuntimesCalendarTaskBase
         if (Build.VERSION.SDK_INT < 14)
             return false;
 
+        startMetrics();
+        boolean result = false;
+        try {
+            result = updateCalendars(items);
+        } finally {
+            finishMetrics(result && !isCancelled());
+        }
+        return result;
+    }
+
+    /**
+     * updateCalendars
+     * clears, adds, updates, or removes the calendars given by items (see doInBackground)
+     */
+    protected boolean updateCalendars(SuntimesCalendarTaskItem... items)
+    {
         if (items.length > 0) {
             setItems(items);
         }
 
         if (flag_clear && !isCancelled()) {
+            long bench_start = System.nanoTime();
             adapter.removeCalendars();
+            metrics.addNanos(RunMetrics.DELETE, System.nanoTime() - bench_start);
             for (String calendar : SuntimesCalendarDescriptor.getCalendars(contextRef.get())) {
                 SuntimesCalendarSettings.clearNotes(contextRef.get(), calendar);
             }
@@ -94,27 +137,53 @@ public class SuntimesCalendarTask extends SuntimesCalendarTaskBase
         }
 
         publishProgress(new SuntimesCalendarTaskProgress(1, 1000, notificationMsgAdding));
+        ExecutorService executor = null;
         try {
             int c = 0;
             int n = taskItems.size();
             TreeSet<String> calendarSet = new TreeSet<>(taskItems.keySet());
+            ArrayList<SuntimesCalendar> parallelCalendars = new ArrayList<>();
+            ArrayList<Future<Boolean>> parallelResults = new ArrayList<>();
+            if (flag_parallel && n > 1) {
+                executor = Executors.newFixedThreadPool(Math.min(config_max_threads, n));
+            }
+
             SuntimesCalendarFactory factory = new SuntimesCalendarFactory();
+            HashMap<String, SuntimesCalendar> calendars = new HashMap<>();
+            for (String calendarName : calendarSet)
+            {
+                if (taskItems.get(calendarName).getAction() != SuntimesCalendarTaskItem.ACTION_DELETE)
+                {
+                    SuntimesCalendarDescriptor descriptor = SuntimesCalendarDescriptor.getDescriptor(contextRef.get(), calendarName);
+                    SuntimesCalendar calendar = factory.createCalendar(contextRef.get(), descriptor);
+                    if (calendar instanceof QueryPlanner.Client) {
+                        ((QueryPlanner.Client) calendar).declareQueries(queryPlanner, window);    // before any calendar starts querying
+                    }
+                    calendars.put(calendarName, calendar);
+                }
+            }
+
             for (String calendarName : calendarSet)
             {
                 SuntimesCalendarTaskItem item = taskItems.get(calendarName);
-                SuntimesCalendarDescriptor descriptor = SuntimesCalendarDescriptor.getDescriptor(contextRef.get(), calendarName);
-                SuntimesCalendar calendar = factory.createCalendar(contextRef.get(), descriptor);
+                SuntimesCalendar calendar = calendars.get(calendarName);
                 switch (item.getAction())
                 {
                     case SuntimesCalendarTaskItem.ACTION_DELETE:
                         publishProgress(null, new SuntimesCalendarTaskProgress(0, 1, notificationMsgClearing));
+                        long bench_start = System.nanoTime();
                         retValue = retValue && adapter.removeCalendar(calendarName);
+                        metrics.child(calendarName).addNanos(RunMetrics.DELETE, System.nanoTime() - bench_start);
                         SuntimesCalendarSettings.clearNotes(contextRef.get(), calendarName);
                         break;
 
                     case SuntimesCalendarTaskItem.ACTION_UPDATE:
                     default:
-                        if (calendar != null) {
+                        if (calendar != null && executor != null) {
+                            parallelCalendars.add(calendar);
+                            parallelResults.add(executor.submit(initCalendarCallable(calendar, window, new SuntimesCalendarTaskProgress(c, n, calendar.calendarTitle()))));
+
+                        } else if (calendar != null) {
                             retValue = retValue && initCalendar(calendar, window, new SuntimesCalendarTaskProgress(c, n, calendar.calendarTitle()));
                             if (!retValue) {
                                 lastError = calendar.lastError();
@@ -131,15 +200,66 @@ public class SuntimesCalendarTask extends SuntimesCalendarTaskBase
                 c++;
             }
 
+            if (executor != null)
+            {
+                executor.shutdown();
+                for (int i=0; i<parallelResults.size(); i++)
+                {
+                    SuntimesCalendar calendar = parallelCalendars.get(i);
+                    try {
+                        if (!parallelResults.get(i).get()) {
+                            retValue = false;
+                            lastError = calendar.lastError();
+                        }
+                        publishProgress(new SuntimesCalendarTaskProgress(i + 1, parallelResults.size(), notificationMsgAdding), null);    // (number completed)
+
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof SecurityException) {
+                            throw (SecurityException) e.getCause();
+                        }
+                        retValue = false;
+                        lastError = "Failed to add " + calendar.calendarName() + "! " + e.getCause();
+                        Log.e(TAG, lastError);
+                    }
+                }
+            }
+
         } catch (SecurityException e) {
             lastError = "Unable to access provider! " + e;
             Log.e(TAG, lastError);
             return false;
+
+        } catch (InterruptedException e) {
+            Log.w(TAG, "interrupted while waiting on calendars; " + e);
+            return false;
+
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            Log.d(TAG, queryPlanner.toString());
         }
 
         return retValue;
     }
 
+    /**
+     * initCalendarCallable
+     * wraps initCalendar so that it can be run by an executor (parallel mode). Each calendar has its own progress (only updated by
+     * the calendar's thread); the task thread publishes the number completed. Calendars share the adapter, the queryPlanner, and the
+     * task's metrics (each records to its own child); these are thread-safe.
+     */
+    private Callable<Boolean> initCalendarCallable(@NonNull final SuntimesCalendar calendar, @NonNull final long[] window, @NonNull final SuntimesCalendarTaskProgress progress)
+    {
+        return new Callable<Boolean>()
+        {
+            @Override
+            public Boolean call() throws Exception {
+                return !isCancelled() && initCalendar(calendar, window, progress);
+            }
+        };
+    }
+
     /**
      * initCalendar
      */
@@ -150,18 +270,93 @@ public class SuntimesCalendarTask extends SuntimesCalendarTaskBase
             return false;
         }
 
+        RunMetrics calendarMetrics = metrics.child(calendar.calendarName());
+        calendarMetrics.start();
+
         boolean retValue = true;
         long calendarID = adapter.queryCalendarID(calendar.calendarName());
-        if (calendarID != -1) {
-            retValue = (adapter.removeCalendarEventsBefore(calendarID, window[0]) > 0);
+        if (calendarID != -1)
+        {
+            long bench_start = System.nanoTime();
+            if (flag_sync) {
+                adapter.removeCalendarEventsBefore(calendarID, window[0]);
+                adapter.removeCalendarEventsAfter(calendarID, window[1]);
+            } else {
+                retValue = (adapter.removeCalendarEventsBefore(calendarID, window[0]) > 0);
+            }
+            calendarMetrics.addNanos(RunMetrics.DELETE, System.nanoTime() - bench_start);
         }
 
-        long bench_start = System.nanoTime();
         retValue = retValue && calendar.initCalendar(new SuntimesCalendarSettings(), adapter, this, progress, window);
-        long bench_end = System.nanoTime();
-        Log.i(TAG, "initCalendar (" + calendar + ") in " + ((bench_end - bench_start) / 1000000.0) + " ms");
+        calendarMetrics.finish(retValue);
+        Log.i(TAG, "initCalendar (" + calendar + "): " + calendarMetrics);
+        return retValue || isSkipped(calendar.calendarName());    // skipped calendars don't fail the run (see skipCalendar)
+    }
 
-        return retValue;
+    /**
+     * openCalendar
+     * Creates the calendar if it doesn't exist (existing calendars are only opened when syncing). With WRITE_MODE_APPLYBATCH the
+     * calendar is created by the writer, in the same transaction as its first batch of events (see BatchEventWriter.createCalendar).
+     * In parallel mode this is called by the calendar's own thread (calendars are created concurrently; each by a single thread).
+     * @return an EventWriter for the calendar (see createEventWriter), or null if the calendar exists (and calendars aren't being synced) or couldn't be created
+     */
+    @Nullable
+    public EventWriter openCalendar(@NonNull SuntimesCalendarAdapter adapter, String calendarName, String calendarTitle, int calendarColor, @NonNull RunMetrics metrics)
+    {
+        if (adapter.hasCalendar(calendarName))
+        {
+            if (!flag_sync) {
+                return null;
+            }
+
+        } else if (config_write_mode == WRITE_MODE_APPLYBATCH) {
+            BatchEventWriter writer = new BatchEventWriter(adapter, -1);
+            writer.createCalendar(calendarName, calendarTitle, calendarColor);
+            return initEventWriter(writer, metrics);
+
+        } else {
+            adapter.createCalendar(calendarName, calendarTitle, calendarColor);
+        }
+
+        long calendarID = adapter.queryCalendarID(calendarName);
+        return (calendarID != -1 ? createEventWriter(adapter, calendarID, metrics) : null);
+    }
+
+    /**
+     * createEventWriter
+     * @return an EventWriter for the given calendar; a SyncEventWriter when syncing calendars, otherwise a BulkInsertEventWriter
+     * or BatchEventWriter (depending on write mode) .. wrapped by a PipelinedEventWriter when pipelined.
+     */
+    public EventWriter createEventWriter(@NonNull SuntimesCalendarAdapter adapter, long calendarID) {
+        return createEventWriter(adapter, calendarID, metrics);
+    }
+
+    /**
+     * @param metrics writes are recorded here (e.g. the calendar's child of getMetrics())
+     */
+    public EventWriter createEventWriter(@NonNull SuntimesCalendarAdapter adapter, long calendarID, @NonNull RunMetrics metrics)
+    {
+        EventWriter writer;
+        if (flag_sync) {
+            writer = new SyncEventWriter(adapter, calendarID);
+
+        } else if (config_write_mode == WRITE_MODE_APPLYBATCH) {
+            writer = new BatchEventWriter(adapter, calendarID);
+
+        } else {
+            writer = new BulkInsertEventWriter(adapter, calendarID);
+        }
+        return initEventWriter(writer, metrics);
+    }
+
+    /**
+     * @return the writer (wrapped by a PipelinedEventWriter when pipelined), recording to metrics
+     */
+    protected EventWriter initEventWriter(@NonNull EventWriter writer, @NonNull RunMetrics metrics)
+    {
+        writer = (flag_pipelined ? new PipelinedEventWriter(writer, this) : writer);
+        writer.setMetrics(metrics);
+        return writer;
     }
 
 }
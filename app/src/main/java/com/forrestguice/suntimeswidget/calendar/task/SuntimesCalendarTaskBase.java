@@ -23,17 +23,26 @@ import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.text.TextUtils;
 import android.util.Log;
 
 import com.forrestguice.suntimescalendars.R;
 import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+import com.forrestguice.suntimeswidget.calculator.local.LocalCalculator;
+import com.forrestguice.suntimeswidget.calendar.InstrumentedCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarDescriptor;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
+import com.forrestguice.suntimeswidget.calendar.task.queries.EphemerisQueries;
+import com.forrestguice.suntimeswidget.calendar.task.queries.ProviderResultCache;
+import com.forrestguice.suntimeswidget.calendar.task.queries.QueryPlanner;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 @SuppressWarnings("Convert2Diamond")
 public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalendarTaskItem, SuntimesCalendarTaskProgress, Boolean>
@@ -45,12 +54,26 @@ public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalenda
 
     protected boolean flag_notifications = true;
     protected boolean flag_clear = false;
+    protected boolean flag_sync = false;
+    protected boolean flag_parallel = false;
+    protected boolean flag_pipelined = true;
+    protected boolean flag_cache = true;
+    protected boolean flag_local_calculator = false;
+    protected boolean flag_ephemeris = false;
+
+    public static final int WRITE_MODE_BULKINSERT = 0;     // ContentResolver.bulkInsert
+    public static final int WRITE_MODE_APPLYBATCH = 1;     // ContentResolver.applyBatch
+    protected int config_write_mode = WRITE_MODE_BULKINSERT;
+    protected int config_max_threads = 3;
 
     protected int config_provider_version = 0;
     protected String config_location_name = "";
     protected String config_location_latitude = "";
     protected String config_location_longitude = "";
     protected String config_location_altitude = "";
+    protected String config_timezone = "";
+    protected String config_calculator = "";
+    protected int config_app_version = 0;
 
     protected long lastSync = -1;
     protected String lastError = null;
@@ -58,9 +81,10 @@ public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalenda
     public SuntimesCalendarTaskBase(Context context)
     {
         contextRef = new WeakReference<Context>(context);
-        adapter = new SuntimesCalendarAdapter(context.getContentResolver(), SuntimesCalendarDescriptor.getCalendars(context));
+        adapter = new InstrumentedCalendarAdapter(context.getContentResolver(), SuntimesCalendarDescriptor.getCalendars(context), latency);
         calendarWindow0 = SuntimesCalendarSettings.loadPrefCalendarWindow0(context);
         calendarWindow1 = SuntimesCalendarSettings.loadPrefCalendarWindow1(context);
+        queryPlanner.setLatency(latency);
         initDisplayStrings(context);
     }
 
@@ -71,10 +95,11 @@ public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalenda
         notificationMsgClearing = context.getString(R.string.calendars_notification_clearing);
         notificationMsgCleared = context.getString(R.string.calendars_notification_cleared);
         notificationMsgAddFailed = context.getString(R.string.calendars_notification_adding_failed);
+        notificationMsgSkipped = context.getString(R.string.calendars_notification_skipped);
     }
     protected String notificationMsgAdding, notificationMsgAdded;
     protected String notificationMsgClearing, notificationMsgCleared;
-    protected String notificationMsgAddFailed;
+    protected String notificationMsgAddFailed, notificationMsgSkipped;
 
     public long lastSync() {
         return lastSync;
@@ -109,6 +134,166 @@ public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalenda
         return flag_clear;
     }
 
+    /**
+     * @param flag true existing calendars are updated incrementally (only changed events are written), false existing calendars are left as-is
+     */
+    public void setFlagSyncCalendars( boolean flag ) {
+        flag_sync = flag;
+    }
+    public boolean getFlagSyncCalendars() {
+        return flag_sync;
+    }
+
+    /**
+     * @param flag true calendars are added concurrently (using up to `maxThreads` threads), false calendars are added one after another
+     */
+    public void setFlagParallel( boolean flag, int maxThreads ) {
+        flag_parallel = flag;
+        config_max_threads = Math.max(1, maxThreads);
+    }
+    public boolean getFlagParallel() {
+        return flag_parallel;
+    }
+    public int getMaxThreads() {
+        return config_max_threads;
+    }
+
+    /**
+     * Calculator provider queries made during this run (see QueryPlanner.Client).
+     */
+    protected final QueryPlanner queryPlanner = new QueryPlanner();
+    public QueryPlanner getQueryPlanner() {
+        return queryPlanner;
+    }
+
+    /**
+     * Time spent (and rows, events, batches) during this run; calendars record to their own child (see RunMetrics.child).
+     */
+    protected final RunMetrics metrics = new RunMetrics("run");
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Calendars that were skipped during this run (name -> title); see skipCalendar.
+     */
+    protected final LinkedHashMap<String, String> skipped = new LinkedHashMap<>();
+
+    /**
+     * Reports a calendar as skipped (e.g. an add-on that isn't responding); calendars call this before returning false from
+     * initCalendar. Skipped calendars are left as they are; they aren't counted as failed (the run continues) or as updated
+     * (they are listed when the run completes, and their metrics record the reason).
+     */
+    public void skipCalendar(String calendarName, String calendarTitle, String reason)
+    {
+        synchronized (skipped) {
+            skipped.put(calendarName, calendarTitle);
+        }
+        metrics.child(calendarName).setConfig("skipped", reason);
+        Log.w(getClass().getSimpleName(), "skipped " + calendarName + ": " + reason);
+    }
+
+    public boolean isSkipped(String calendarName)
+    {
+        synchronized (skipped) {
+            return skipped.containsKey(calendarName);
+        }
+    }
+
+    /**
+     * Latency of each provider call made during this run (calculator queries, and calendar provider calls
+     * made through the adapter); added to the histograms kept across runs when the run finishes.
+     */
+    protected final ProviderLatency latency = new ProviderLatency();
+    public ProviderLatency getLatency() {
+        return latency;
+    }
+
+    /**
+     * Starts measuring the run (see getMetrics); the task's flags are recorded with the metrics.
+     */
+    protected void startMetrics()
+    {
+        metrics.setConfig("clear", flag_clear);
+        metrics.setConfig("sync", flag_sync);
+        metrics.setConfig("parallel", flag_parallel);
+        metrics.setConfig("maxThreads", config_max_threads);
+        metrics.setConfig("pipelined", flag_pipelined);
+        metrics.setConfig("cache", flag_cache);
+        metrics.setConfig("localCalculator", flag_local_calculator);
+        metrics.setConfig("ephemeris", flag_ephemeris);
+        metrics.setConfig("writeMode", config_write_mode);
+        metrics.start();
+    }
+
+    /**
+     * Finishes measuring the run, appends it to the RunMetricsLog, and adds its latencies to ProviderLatency.
+     * @param result true the run succeeded, false it failed (or was cancelled)
+     */
+    protected void finishMetrics(boolean result)
+    {
+        metrics.finish(result);
+        Log.i(getClass().getSimpleName(), metrics.toString());
+        Log.i(getClass().getSimpleName(), latency.toString());
+
+        Context context = contextRef.get();
+        if (context != null) {
+            RunMetricsLog.create(context).add(metrics);
+            ProviderLatency.accumulate(context, latency);
+        }
+    }
+
+    /**
+     * @param flag true calculator provider results are cached on disk (see ProviderResultCache), false results are always queried
+     */
+    public void setFlagCache( boolean flag ) {
+        flag_cache = flag;
+    }
+    public boolean getFlagCache() {
+        return flag_cache;
+    }
+
+    /**
+     * @param flag true events are calculated in-process (see LocalCalculator), false events are queried from the calculator provider
+     */
+    public void setFlagLocalCalculator( boolean flag ) {
+        flag_local_calculator = flag;
+    }
+    public boolean getFlagLocalCalculator() {
+        return flag_local_calculator;
+    }
+
+    /**
+     * @param flag true moon phases and seasons are read from the bundled ephemeris table (see EphemerisQueries), false they are calculated;
+     *             the table is precomputed by the built-in calculator (so SuntimesCalendarTask only sets this with the "Built-in Calculator" option)
+     */
+    public void setFlagEphemeris( boolean flag ) {
+        flag_ephemeris = flag;
+    }
+    public boolean getFlagEphemeris() {
+        return flag_ephemeris;
+    }
+
+    /**
+     * @param flag true events are written by a separate writer thread (overlapping event generation), false events are written by the calendar's thread
+     */
+    public void setFlagPipelined( boolean flag ) {
+        flag_pipelined = flag;
+    }
+    public boolean getFlagPipelined() {
+        return flag_pipelined;
+    }
+
+    /**
+     * @param mode WRITE_MODE_BULKINSERT, WRITE_MODE_APPLYBATCH
+     */
+    public void setWriteMode( int mode ) {
+        config_write_mode = mode;
+    }
+    public int getWriteMode() {
+        return config_write_mode;
+    }
+
     protected boolean initLocation()
     {
         Context context = contextRef.get();
@@ -116,10 +301,11 @@ public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalenda
         if (resolver != null)
         {
             Uri configUri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_CONFIG);
-            String[] configProjection = new String[]{CalculatorProviderContract.COLUMN_CONFIG_LOCATION, CalculatorProviderContract.COLUMN_CONFIG_LATITUDE, CalculatorProviderContract.COLUMN_CONFIG_LONGITUDE, CalculatorProviderContract.COLUMN_CONFIG_ALTITUDE, CalculatorProviderContract.COLUMN_CONFIG_PROVIDER_VERSION_CODE};
+            String[] configProjection = new String[]{CalculatorProviderContract.COLUMN_CONFIG_LOCATION, CalculatorProviderContract.COLUMN_CONFIG_LATITUDE, CalculatorProviderContract.COLUMN_CONFIG_LONGITUDE, CalculatorProviderContract.COLUMN_CONFIG_ALTITUDE, CalculatorProviderContract.COLUMN_CONFIG_PROVIDER_VERSION_CODE,
+                                                     CalculatorProviderContract.COLUMN_CONFIG_TIMEZONE, CalculatorProviderContract.COLUMN_CONFIG_CALCULATOR, CalculatorProviderContract.COLUMN_CONFIG_APP_VERSION_CODE};
 
             try {
-                Cursor configCursor = resolver.query(configUri, configProjection, null, null, null);
+                Cursor configCursor = queryPlanner.query(resolver, CalculatorProviderContract.QUERY_CONFIG, null, configProjection);
                 if (configCursor != null)
                 {
                     configCursor.moveToFirst();
@@ -129,8 +315,14 @@ public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalenda
                         config_location_longitude = configCursor.getString(configCursor.getColumnIndex(CalculatorProviderContract.COLUMN_CONFIG_LONGITUDE));
                         config_location_altitude = configCursor.getString(configCursor.getColumnIndex(CalculatorProviderContract.COLUMN_CONFIG_ALTITUDE));
                         config_provider_version = configCursor.getInt(configCursor.getColumnIndex(CalculatorProviderContract.COLUMN_CONFIG_PROVIDER_VERSION_CODE));
+                        config_timezone = configCursor.getString(configCursor.getColumnIndex(CalculatorProviderContract.COLUMN_CONFIG_TIMEZONE));
+                        config_calculator = configCursor.getString(configCursor.getColumnIndex(CalculatorProviderContract.COLUMN_CONFIG_CALCULATOR));
+                        config_app_version = configCursor.getInt(configCursor.getColumnIndex(CalculatorProviderContract.COLUMN_CONFIG_APP_VERSION_CODE));
                     }
                     configCursor.close();
+                    initCache(context);
+                    initLocalCalculator();
+                    queryPlanner.setEphemeris(flag_ephemeris ? EphemerisQueries.open(context) : null);
                     return true;
 
                 } else {
@@ -149,6 +341,47 @@ public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalenda
             return false;
         }
     }
+    /**
+     * Attaches a ProviderResultCache (keyed on the config read by initLocation) to the queryPlanner.
+     */
+    protected void initCache(Context context)
+    {
+        if (flag_cache)
+        {
+            ProviderResultCache cache = ProviderResultCache.create(context);
+            if (cache.setConfig(config_provider_version, config_location_latitude, config_location_longitude, config_location_altitude,
+                                config_timezone, config_calculator, Integer.toString(config_app_version))) {
+                queryPlanner.setCache(cache);
+            } else queryPlanner.setCache(null);
+
+        } else {
+            ProviderResultCache.create(context).clear();    // (disabled) don't leave stale results behind
+            queryPlanner.setCache(null);
+        }
+    }
+
+    /**
+     * Attaches a LocalCalculator (for the location read by initLocation) to the queryPlanner; falls back to the provider if the location is invalid.
+     */
+    protected void initLocalCalculator()
+    {
+        LocalCalculator calculator = null;
+        if (flag_local_calculator)
+        {
+            if (config_location_latitude == null || config_location_longitude == null) {
+                Log.w(getClass().getSimpleName(), "initLocalCalculator: missing location; using the calculator provider instead..");
+
+            } else {
+                try {
+                    calculator = LocalCalculator.fromConfig(config_location_latitude, config_location_longitude, config_location_altitude, config_timezone);
+                } catch (NumberFormatException e) {
+                    Log.w(getClass().getSimpleName(), "initLocalCalculator: invalid location; using the calculator provider instead.. " + e);
+                }
+            }
+        }
+        queryPlanner.setLocalCalculator(calculator);
+    }
+
     public String[] getLocation() {
         return new String[] { config_location_name, config_location_latitude, config_location_longitude, config_location_altitude };
     }
@@ -202,6 +435,14 @@ public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalenda
                 }
             }
 
+            ArrayList<String> skippedTitles;
+            synchronized (skipped) {
+                skippedTitles = new ArrayList<>(skipped.values());
+            }
+            if (!skippedTitles.isEmpty()) {
+                message = String.format(notificationMsgSkipped, message, TextUtils.join(", ", skippedTitles));
+            }
+
             if (listener != null && context != null) {
                 listener.onSuccess(context, this, message);
             }
@@ -233,10 +474,12 @@ public abstract class SuntimesCalendarTaskBase extends AsyncTask<SuntimesCalenda
     @Override
     protected void onProgressUpdate(SuntimesCalendarTaskProgress... progress)
     {
+        long bench_start = System.nanoTime();
         Context context = contextRef.get();
         if (listener != null && context != null) {
             listener.onProgress(context, progress);
         }
+        metrics.addNanos(RunMetrics.PROGRESS, System.nanoTime() - bench_start);
     }
 
     public SuntimesCalendarTaskProgress createProgressObj(int i, int n, String message) {
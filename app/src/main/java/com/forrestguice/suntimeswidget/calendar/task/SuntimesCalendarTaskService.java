@@ -47,6 +47,7 @@ public class SuntimesCalendarTaskService extends Service
     public static final String TAG = "SuntimesCalendarsTask";
     public static final String ACTION_UPDATE_CALENDARS = "update_calendars";
     public static final String ACTION_CLEAR_CALENDARS = "clear_calendars";
+    public static final String ACTION_SYNC_CALENDARS = "sync_calendars";    // update_calendars also syncs when SuntimesCalendarSettings.PREF_KEY_CALENDARS_SYNC is enabled
 
     public static final String EXTRA_CALENDAR_ITEMS = "calendar_items";
     public static final String EXTRA_CALENDAR_LISTENER = "calendar_listener";
@@ -75,7 +76,7 @@ public class SuntimesCalendarTaskService extends Service
         {
             SuntimesCalendarServiceListener serviceListener = intent.getParcelableExtra(EXTRA_SERVICE_LISTENER);
             SuntimesCalendarTaskListener listener = intent.getParcelableExtra(EXTRA_CALENDAR_LISTENER);
-            if (action.equals(ACTION_UPDATE_CALENDARS))
+            if (action.equals(ACTION_UPDATE_CALENDARS) || action.equals(ACTION_SYNC_CALENDARS))
             {
                 Log.d(TAG, "onStartCommand: " + action);
                 boolean started = runCalendarTask(this, intent, false, false, listener);
@@ -225,6 +226,9 @@ public class SuntimesCalendarTaskService extends Service
         if (clearCalendars) {
             calendarTask.setFlagClearCalendars(true);
         }
+        if (ACTION_SYNC_CALENDARS.equals(intent.getAction())) {
+            calendarTask.setFlagSyncCalendars(true);
+        }
         calendarTask.setItems(items.toArray(new SuntimesCalendarTaskItem[0]));
         calendarTask.execute();
         return true;
@@ -22,21 +22,41 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
 import android.util.Log;
 
 import com.forrestguice.suntimescalendars.R;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.EventBatch;
+import com.forrestguice.suntimeswidget.calendar.core.PackedEvents;
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
+import com.forrestguice.suntimeswidget.calendar.task.AddonHealth;
+import com.forrestguice.suntimeswidget.calendar.task.ProviderLatency;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendar;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTask;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskProgress;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventCursorReader;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventWriter;
 
-import java.security.Security;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Acts as a ContentProvider -> SuntimesCalendar bridge; the constructor accepts a URI pointing to
@@ -46,6 +66,24 @@ import java.util.Calendar;
  * * SuntimeCalendar.QUERY_CALENDAR_INFO to retrieve calendar meta-data; row of [calendar_name(string), calendar_title(string), calendar_summary(string), calendar_color(int)]
  * * SuntimesCalendar.QUERY_CALENDAR_CONTENT to retrieve calendar entries; rows of [title(string), description(string), eventTimezone(string), dtstart(long), dtend(long), eventLocation(string), ...]
  *   ready to be passed to the SuntimesCalendarAdapter.createCalendarEntries method.
+ *   Only CalendarContract.Events columns listed by EventCursorReader.COLUMNS are copied (other columns, e.g. eventColor, hasAlarm, are ignored).
+ *
+ * The window is split into chunks (see `planChunks`) that are queried concurrently (up to `parallelism`
+ * at a time; declared by the add-on, see COLUMN_CALENDAR_PARALLELISM); events are written in chunk order.
+ *
+ * Add-ons may also declare (optional) capabilities with QUERY_CALENDAR_INFO (see SuntimesCalendar.QUERY_CALENDAR_INFO_PROJECTION_V2);
+ * the preferred chunk span, a limit on rows per query (chunks that reach it are split and queried again), projection support
+ * (QUERY_CALENDAR_CONTENT_PROJECTION, i.e. EventCursorReader.COLUMNS, is requested), a data version (unchanged calendars are skipped when syncing),
+ * and the number of concurrent queries and query deadline they can handle. Add-ons that omit these columns are queried in 7 day chunks
+ * (all columns; DEF_PARALLELISM queries at a time, with a DEF_TIMEOUT_MILLIS deadline).
+ *
+ * Add-ons that declare a packed format (COLUMN_CALENDAR_PACKED) are queried with QUERY_CALENDAR_CONTENT_PACKED_PROJECTION,
+ * and return one or more BLOB rows of packed events (see PackedEvents) rather than one row per event. Blobs are decoded
+ * straight into an EventBatch (without ContentValues).
+ *
+ * Each query has a deadline (see COLUMN_CALENDAR_TIMEOUT) enforced with a CancellationSignal
+ * (API 16+; add-ons may ignore the signal, so the task also stops waiting for the chunk). Queries that time out (or fail)
+ * are retried with backoff. Add-ons that fail repeatedly are skipped on later runs until they recover (see AddonHealth).
  */
 @SuppressWarnings("Convert2Diamond")
 public class ContentProviderCalendar extends SuntimesCalendarBase implements SuntimesCalendar
@@ -53,6 +91,15 @@ public class ContentProviderCalendar extends SuntimesCalendarBase implements Sun
     public static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
     public static final int CHUNK_DAYS = 7;
     public static final long CHUNK_MILLIS = CHUNK_DAYS * DAY_MILLIS;
+    public static final long MIN_SPLIT_MILLIS = 60 * 60 * 1000;    // chunks that reach maxRows are split until this span
+    public static final int MAX_SPLITS = 4;                        // .. or until split this many times (at most 2^MAX_SPLITS queries per chunk)
+    public static final int MAX_ATTEMPTS = 3;
+    public static final long BACKOFF_MILLIS = 500;                 // doubled after each attempt
+    public static final int DEF_PARALLELISM = 2;
+    public static final int MAX_PARALLELISM = 8;
+    public static final long DEF_TIMEOUT_MILLIS = 10 * 1000;
+    public static final long MIN_TIMEOUT_MILLIS = 1000;
+    public static final long MAX_TIMEOUT_MILLIS = 60 * 1000;
 
     private String contentUri = null;
     public String getContentUriString() {
@@ -73,6 +120,54 @@ public class ContentProviderCalendar extends SuntimesCalendarBase implements Sun
     }
     private String calenderName = null;
 
+    protected int parallelism = DEF_PARALLELISM;
+    public void setParallelism(int value) {
+        parallelism = Math.max(1, value);
+    }
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    protected long timeoutMillis = DEF_TIMEOUT_MILLIS;
+    public void setTimeoutMillis(long value) {
+        timeoutMillis = Math.max(1, value);
+    }
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return how long to wait for a chunk before giving up on the add-on (all attempts and their backoff)
+     */
+    public long chunkDeadlineMillis() {
+        return MAX_ATTEMPTS * (timeoutMillis + (BACKOFF_MILLIS << (MAX_ATTEMPTS - 1)));
+    }
+
+    protected long chunkMillis = CHUNK_MILLIS;
+    public long getChunkMillis() {
+        return chunkMillis;
+    }
+
+    protected int maxRows = 0;    // 0 no limit
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    protected boolean supportsProjections = false;
+    public boolean supportsProjections() {
+        return supportsProjections;
+    }
+
+    protected int packedFormat = 0;
+    public boolean usePackedFormat() {
+        return (packedFormat == PackedEvents.VERSION);
+    }
+
+    protected String dataVersion = null;
+    public String getDataVersion() {
+        return dataVersion;
+    }
+
     @Override
     public void init(@NonNull Context context, @NonNull SuntimesCalendarSettings settings) throws SecurityException
     {
@@ -89,7 +184,15 @@ public class ContentProviderCalendar extends SuntimesCalendarBase implements Sun
         if (resolver != null)
         {
             Uri uri = Uri.parse(contentUri + SuntimesCalendar.QUERY_CALENDAR_INFO);
-            Cursor cursor = resolver.query(uri, SuntimesCalendar.QUERY_CALENDAR_INFO_PROJECTION, null, null, null);
+            Cursor cursor;
+            try {
+                cursor = resolver.query(uri, SuntimesCalendar.QUERY_CALENDAR_INFO_PROJECTION_V2, null, null, null);
+
+            } catch (IllegalArgumentException e) {    // add-ons that predate v2 may reject unknown columns
+                Log.w(getClass().getSimpleName(), "queryCalendarInfo: v2 columns rejected (" + e + "); falling back to v1..");
+                cursor = resolver.query(uri, SuntimesCalendar.QUERY_CALENDAR_INFO_PROJECTION, null, null, null);
+            }
+
             if (cursor != null)
             {
                 cursor.moveToFirst();
@@ -97,11 +200,32 @@ public class ContentProviderCalendar extends SuntimesCalendarBase implements Sun
                 calendarTitle = cursor.getString(cursor.getColumnIndex(COLUMN_CALENDAR_TITLE));
                 calendarSummary = cursor.getString(cursor.getColumnIndex(COLUMN_CALENDAR_SUMMARY));
                 calendarColor = cursor.getInt(cursor.getColumnIndex(COLUMN_CALENDAR_COLOR));
+
+                long span = getLong(cursor, COLUMN_CALENDAR_CHUNK_SPAN, 0);
+                chunkMillis = (span > 0 ? Math.max(DAY_MILLIS, span) : CHUNK_MILLIS);
+                maxRows = (int) Math.max(0, getLong(cursor, COLUMN_CALENDAR_MAX_ROWS, 0));
+                supportsProjections = (getLong(cursor, COLUMN_CALENDAR_PROJECTIONS, 0) != 0);
+                packedFormat = (int) getLong(cursor, COLUMN_CALENDAR_PACKED, 0);
+                long n = getLong(cursor, COLUMN_CALENDAR_PARALLELISM, 0);
+                parallelism = (n > 0 ? (int) Math.min(MAX_PARALLELISM, n) : DEF_PARALLELISM);
+                long timeout = getLong(cursor, COLUMN_CALENDAR_TIMEOUT, 0);
+                timeoutMillis = (timeout > 0 ? Math.max(MIN_TIMEOUT_MILLIS, Math.min(MAX_TIMEOUT_MILLIS, timeout)) : DEF_TIMEOUT_MILLIS);
+                int i = cursor.getColumnIndex(COLUMN_CALENDAR_DATA_VERSION);
+                dataVersion = ((i >= 0 && !cursor.isNull(i)) ? cursor.getString(i) : null);
                 cursor.close();
             }
         }
     }
 
+    /**
+     * @return the column's value, or defaultValue if the column is missing (or null)
+     */
+    private static long getLong(@NonNull Cursor cursor, String column, long defaultValue)
+    {
+        int i = cursor.getColumnIndex(column);
+        return ((i >= 0 && !cursor.isNull(i)) ? cursor.getLong(i) : defaultValue);
+    }
+
     @Override
     public boolean initCalendar(@NonNull SuntimesCalendarSettings settings, @NonNull SuntimesCalendarAdapter adapter, @NonNull SuntimesCalendarTask task, @NonNull SuntimesCalendarTaskProgress progress0, @NonNull long[] window)
     {
@@ -110,87 +234,434 @@ public class ContentProviderCalendar extends SuntimesCalendarBase implements Sun
         }
 
         String calendarName = calendarName();
-        if (!adapter.hasCalendar(calendarName)) {
-            adapter.createCalendar(calendarName, calendarTitle, calendarColor);
-        } else return false;
-
-        long calendarID = adapter.queryCalendarID(calendarName);
-        if (calendarID != -1)
+        Context context0 = contextRef.get();
+        AddonHealth health = (context0 != null ? AddonHealth.load(context0, calendarName) : new AddonHealth(calendarName));
+        if (!health.allowRun(System.currentTimeMillis()))
         {
-            Context context = contextRef.get();
-            ContentResolver resolver = (context == null ? null : context.getContentResolver());
-            if (resolver != null)
-            {
-                String[] location = task.getLocation();
-                new SuntimesCalendarSettings().saveCalendarNote(context, calendarName, SuntimesCalendarSettings.NOTE_LOCATION_NAME, location[0]);
+            lastError = calendarTitle + " is not responding (skipped)";
+            task.skipCalendar(calendarName, calendarTitle, "degraded (" + health + ")");
+            return false;
+        }
 
-                Calendar startDate = Calendar.getInstance();
-                startDate.setTimeInMillis(window[0]);
+        boolean hasCalendar = adapter.hasCalendar(calendarName);
+        EventWriter writer = openCalendar(task, adapter);    // null if the calendar exists (and isn't being synced)
+        if (writer != null)
+        {
+            try {
+                Context context = contextRef.get();
+                ContentResolver resolver = (context == null ? null : context.getContentResolver());
+                if (resolver != null)
+                {
+                    String[] location = task.getLocation();
+                    new SuntimesCalendarSettings().saveCalendarNote(context, calendarName, SuntimesCalendarSettings.NOTE_LOCATION_NAME, location[0]);
 
-                Calendar endDate = Calendar.getInstance();
-                endDate.setTimeInMillis(window[1]);
+                    String progressTitle = context.getString(R.string.summarylist_format, calendarTitle, location[0]);
+                    long[][] chunks = planChunks(window, chunkMillis);
+                    SuntimesCalendarTaskProgress progress = task.createProgressObj(0, chunks.length, progressTitle);
+                    task.publishProgress(progress0, progress);
 
-                int c = 0;
-                String progressTitle = context.getString(R.string.summarylist_format, calendarTitle, location[0]);
-                int totalProgress = (int)((window[1] - window[0]) / CHUNK_MILLIS);
-                long start = window[0];
-                for (long i = window[0]; i < window[1] && !task.isCancelled(); i += DAY_MILLIS)
-                {
-                    if ((i - start) > CHUNK_MILLIS)
+                    // existing calendars are only revisited when syncing (SuntimesCalendarSettings.loadPrefCalendarsSync, or ACTION_SYNC_CALENDARS);
+                    // a calendar whose data version (window, and location) matches the last successful write is already up to date.
+                    String versionNote = (dataVersion != null ? dataVersion + "|" + window[0] + "-" + window[1] + "|" + TextUtils.join(",", location) : null);
+                    if (hasCalendar && task.getFlagSyncCalendars() && versionNote != null
+                            && versionNote.equals(settings.loadCalendarNote(context, calendarName, SuntimesCalendarSettings.NOTE_DATA_VERSION)))
                     {
-                        ArrayList<ContentValues> values = readCursor(calendarID, queryCursor(resolver, new long[] {start, i}), task);
-                        adapter.createCalendarEvents(values.toArray(new ContentValues[0]));
-                        c++;
-                        start = i;
-
-                        SuntimesCalendarTaskProgress progress = task.createProgressObj(c, totalProgress, progressTitle);
-                        progress.setProgress(c, totalProgress, progressTitle);
+                        Log.i(getClass().getSimpleName(), calendarName + " is unchanged (data version " + dataVersion + "); skipping..");
+                        metrics(task).setConfig("unchanged", dataVersion);
+                        progress.setProgress(chunks.length, chunks.length, progressTitle);
                         task.publishProgress(progress0, progress);
+                        return true;
                     }
+                    settings.saveCalendarNote(context, calendarName, SuntimesCalendarSettings.NOTE_DATA_VERSION, null);    // (re)set after the calendar is written
+
+                    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, chunks.length)));
+                    deadlines = Executors.newSingleThreadScheduledExecutor();
+                    queryNanos.set(0);
+                    queryCount.set(0);
+                    try {
+                        if (!fetchChunks(resolver, writer.calendarID(), chunks, task, executor, writer, progress0, progress))
+                        {
+                            if (!task.isCancelled()) {
+                                health.onFailure(System.currentTimeMillis());
+                                health.save(context);
+                                Log.w(getClass().getSimpleName(), "initCalendar: " + health);
+                            }
+                            return false;
+                        }
+                    } finally {
+                        executor.shutdownNow();
+                        deadlines.shutdownNow();
+                    }
+
+                    boolean finished = !task.isCancelled() && writer.finish();
+                    if (finished)
+                    {
+                        if (versionNote != null) {
+                            settings.saveCalendarNote(context, calendarName, SuntimesCalendarSettings.NOTE_DATA_VERSION, versionNote);
+                        }
+                        int n = queryCount.get();
+                        health.onSuccess(n > 0 ? (queryNanos.get() / (double) n) / 1000000d : 0);
+                        health.save(context);
+                    }
+                    return finished;
+
+                } else {
+                    lastError = "Unable to getContentResolver! ";
+                    Log.e(getClass().getSimpleName(), lastError);
+                    return false;
                 }
-                return true;
+            } finally {
+                writer.close();    // aborts the writer if it wasn't finished
+            }
+        } else return false;
+    }
 
-            } else {
-                lastError = "Unable to getContentResolver! ";
+    /**
+     * @param window [start, end] (ms)
+     * @param chunkMillis chunk span (ms)
+     * @return consecutive [start, end] chunks covering the window (the last chunk may be shorter)
+     */
+    public static long[][] planChunks(@NonNull long[] window, long chunkMillis)
+    {
+        chunkMillis = Math.max(DAY_MILLIS, chunkMillis);
+        long span = Math.max(0, window[1] - window[0]);
+        int n = (int) ((span / chunkMillis) + (span % chunkMillis != 0 ? 1 : 0));    // (without overflow for large chunkMillis)
+        long[][] chunks = new long[n][];
+        for (int i=0; i<n; i++)
+        {
+            long start = window[0] + (i * chunkMillis);
+            chunks[i] = new long[] { start, start + Math.min(chunkMillis, window[1] - start) };
+        }
+        return chunks;
+    }
+
+    /**
+     * Queries chunks concurrently (up to `parallelism` at a time), and adds their events to the writer in time order.
+     * @return true all chunks were read, false a query failed (or the task was cancelled)
+     */
+    private boolean fetchChunks(@NonNull final ContentResolver resolver, final long calendarID, @NonNull long[][] chunks, @NonNull final SuntimesCalendarTask task, @NonNull ExecutorService executor,
+                                @NonNull EventWriter writer, SuntimesCalendarTaskProgress progress0, @NonNull SuntimesCalendarTaskProgress progress)
+    {
+        final RunMetrics metrics = metrics(task);
+        ArrayDeque<Future<ChunkEvents>> pending = new ArrayDeque<>();
+        int next = 0;
+        for (int c=0; c<chunks.length; c++)
+        {
+            while (next < chunks.length && pending.size() <= parallelism)    // one extra in flight while the current chunk is written
+            {
+                final long[] chunk = chunks[next++];
+                pending.add(executor.submit(new Callable<ChunkEvents>()
+                {
+                    @Override
+                    public ChunkEvents call() throws InterruptedException, ChunkException {
+                        return task.isCancelled() ? null : fetchChunk(resolver, calendarID, chunk, 0, task, metrics);
+                    }
+                }));
+            }
+
+            ChunkEvents events;
+            try {
+                events = pending.remove().get(chunkDeadlineMillis(), TimeUnit.MILLISECONDS);
+
+            } catch (TimeoutException e) {
+                lastError = "Timed out reading " + calendarName() + "! (no response after " + chunkDeadlineMillis() + " ms)";
+                Log.e(getClass().getSimpleName(), lastError);
+                return false;
+
+            } catch (InterruptedException e) {
+                Log.w(getClass().getSimpleName(), "interrupted while reading chunks; " + e);
+                Thread.currentThread().interrupt();
+                return false;
+
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SecurityException) {
+                    throw (SecurityException) e.getCause();
+                }
+                lastError = (e.getCause() instanceof ChunkException ? e.getCause().getMessage() : "Failed to read " + calendarName() + "! " + e.getCause());
                 Log.e(getClass().getSimpleName(), lastError);
                 return false;
             }
-        } else return false;
+
+            if (events == null || task.isCancelled()) {
+                return false;
+            }
+            events.writeTo(writer);
+
+            progress.setProgress(c + 1, chunks.length, progress.getMessage());
+            task.publishProgress(progress0, progress);
+        }
+        return true;
+    }
+
+    /**
+     * Queries a chunk; chunks that reach `maxRows` (possibly truncated) are split in half and queried again (see MIN_SPLIT_MILLIS, MAX_SPLITS).
+     * Packed chunks are never split; their row count is the number of blobs (not events), so it says nothing about truncation.
+     * Called from worker threads; failures are thrown (and reported by fetchChunks).
+     * @param splits the number of times the chunk has already been split
+     * @return the chunk's events (in time order), or null if the task was cancelled
+     * @throws ChunkException if a query failed (or the result is invalid)
+     */
+    @Nullable
+    private ChunkEvents fetchChunk(@NonNull ContentResolver resolver, long calendarID, @NonNull long[] chunk, int splits, @NonNull SuntimesCalendarTask task, @NonNull RunMetrics metrics) throws InterruptedException, ChunkException
+    {
+        Cursor cursor = queryChunk(resolver, chunk, task, metrics);
+        if (cursor != null && maxRows > 0 && !usePackedFormat() && cursor.getCount() >= maxRows)
+        {
+            if ((chunk[1] - chunk[0]) > MIN_SPLIT_MILLIS && splits < MAX_SPLITS && !task.isCancelled())
+            {
+                cursor.close();
+                long middle = chunk[0] + ((chunk[1] - chunk[0]) / 2);
+                Log.d(getClass().getSimpleName(), "fetchChunk: " + chunk[0] + "-" + chunk[1] + " reached max rows (" + maxRows + "); splitting at " + middle);
+
+                ChunkEvents events = fetchChunk(resolver, calendarID, new long[] { chunk[0], middle }, splits + 1, task, metrics);
+                ChunkEvents events1 = (events != null ? fetchChunk(resolver, calendarID, new long[] { middle, chunk[1] }, splits + 1, task, metrics) : null);
+                if (events1 == null) {
+                    return null;
+                }
+                events.addAll(events1);
+                return events;
+
+            } else {
+                Log.w(getClass().getSimpleName(), "fetchChunk: " + chunk[0] + "-" + chunk[1] + " reached max rows (" + maxRows + "); events may be missing!");
+            }
+        }
+        return readChunk(calendarID, cursor, task, metrics);
+    }
+
+    /**
+     * Queries a chunk (up to MAX_ATTEMPTS times); failed attempts are retried after a backoff (see BACKOFF_MILLIS).
+     * @return a cursor, or null if the task was cancelled
+     * @throws ChunkException if every attempt failed
+     */
+    @Nullable
+    private Cursor queryChunk(@NonNull ContentResolver resolver, @NonNull long[] chunk, @NonNull SuntimesCalendarTask task, @NonNull RunMetrics metrics) throws InterruptedException, ChunkException
+    {
+        for (int attempt = 1; ; attempt++)
+        {
+            Cursor cursor;
+            try {
+                cursor = queryCursor(resolver, chunk, metrics, task.getLatency());
+
+            } catch (ChunkException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                cursor = null;
+            }
+            if (cursor != null || task.isCancelled()) {
+                return cursor;
+            }
+
+            long backoff = BACKOFF_MILLIS << (attempt - 1);
+            Log.w(getClass().getSimpleName(), "queryChunk: " + chunk[0] + "-" + chunk[1] + " failed (attempt " + attempt + " of " + MAX_ATTEMPTS + "); retrying in " + backoff + " ms..");
+            metrics.addCount(RunMetrics.RETRIES, 1);
+            Thread.sleep(backoff);
+        }
     }
 
-    private Cursor queryCursor(ContentResolver resolver, long[] window)
+    protected ScheduledExecutorService deadlines = null;    // cancels queries that pass their deadline (during initCalendar)
+    protected final AtomicLong queryNanos = new AtomicLong();
+    protected final AtomicInteger queryCount = new AtomicInteger();
+
+    /**
+     * @return a cursor
+     * @throws ChunkException if the query failed (or passed its deadline)
+     */
+    @NonNull
+    private Cursor queryCursor(ContentResolver resolver, long[] window, @NonNull RunMetrics metrics, @NonNull ProviderLatency latency) throws ChunkException
     {
         Uri uri = Uri.parse(contentUri + SuntimesCalendar.QUERY_CALENDAR_CONTENT + "/" + window[0] + "-" + window[1]);
-        Cursor cursor = resolver.query(uri, null, null, null, null);
+        String[] projection = (usePackedFormat() ? SuntimesCalendar.QUERY_CALENDAR_CONTENT_PACKED_PROJECTION
+                : supportsProjections ? SuntimesCalendar.QUERY_CALENDAR_CONTENT_PROJECTION : null);
+        long bench_start = System.nanoTime();
+        Cursor cursor;
+        boolean timedOut = false;
+
+        if (Build.VERSION.SDK_INT >= 16 && deadlines != null)
+        {
+            final CancellationSignal signal = new CancellationSignal();
+            ScheduledFuture<?> deadline = deadlines.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    signal.cancel();
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+            try {
+                cursor = resolver.query(uri, projection, null, null, null, signal);
+
+            } catch (RuntimeException e) {    // OperationCanceledException (API 16)
+                if (!signal.isCanceled()) {
+                    throw e;
+                }
+                cursor = null;
+                timedOut = true;
+
+            } finally {
+                deadline.cancel(false);
+            }
+
+        } else {
+            cursor = resolver.query(uri, projection, null, null, null);
+        }
+
+        long bench_nanos = System.nanoTime() - bench_start;
+        metrics.addNanos(RunMetrics.QUERY, bench_nanos);
+        latency.record(ProviderLatency.ADDON_QUERY, bench_nanos);
+        queryNanos.addAndGet(bench_nanos);
+        queryCount.incrementAndGet();
+
         if (cursor == null) {
-            lastError = "Failed to resolve URI! " + uri;
-            Log.e(getClass().getSimpleName(), lastError);
+            String error = (timedOut ? "Query timed out after " + timeoutMillis + " ms! " : "Failed to resolve URI! ") + uri;
+            Log.e(getClass().getSimpleName(), error);
+            throw new ChunkException(error);
         }
         return cursor;
     }
 
-    private ArrayList<ContentValues> readCursor(long calendarID, Cursor cursor, @NonNull SuntimesCalendarTask task)
+    /**
+     * Reads the chunk's events (see EventCursorReader); a chunk missing required columns is rejected without reading its rows.
+     * @return the chunk's events (in the order they were returned), or null if the task was cancelled
+     * @throws ChunkException if the result is invalid
+     */
+    @Nullable
+    private ChunkEvents readChunk(long calendarID, @Nullable Cursor cursor, @NonNull SuntimesCalendarTask task, @NonNull RunMetrics metrics) throws ChunkException
     {
+        if (cursor == null) {
+            return null;
+        } else if (usePackedFormat()) {
+            return readPackedChunk(cursor, task, metrics);
+        }
+
+        long t0 = System.nanoTime();
+        EventCursorReader reader = new EventCursorReader(cursor);
+        long buildNanos = (System.nanoTime() - t0);
+        if (!reader.isValid())
+        {
+            cursor.close();
+            throw new ChunkException("Invalid content from " + calendarName() + "! result is missing columns: " + reader.missingColumns());
+        }
+
+        ChunkEvents events = new ChunkEvents(cursor.getCount());
+        long cursorNanos = 0;
+        int rows = 0;
+
+        t0 = System.nanoTime();
         cursor.moveToFirst();
+        cursorNanos += (System.nanoTime() - t0);
 
-        ArrayList<ContentValues> eventValues = new ArrayList<>();
         while (!cursor.isAfterLast() && !task.isCancelled())
         {
-            ContentValues values = new ContentValues();
-            DatabaseUtils.cursorRowToContentValues(cursor, values);
-
-            boolean isValidEvent = (values.containsKey("title") && values.containsKey("description"));
-            if (isValidEvent) {
-                values.put("calendar_id", calendarID);
-                eventValues.add(values);
+            rows++;
+            t0 = System.nanoTime();
+            events.rows.add(reader.read(cursor, calendarID));
+            buildNanos += (System.nanoTime() - t0);
 
-            } else {
-                Log.w(getClass().getSimpleName(), "Invalid event! result does not contain expected values; skipping..");
-            }
+            t0 = System.nanoTime();
             cursor.moveToNext();
+            cursorNanos += (System.nanoTime() - t0);
         }
         cursor.close();
-        return eventValues;
+
+        metrics.addNanos(RunMetrics.CURSOR, cursorNanos);
+        metrics.addNanos(RunMetrics.BUILD, buildNanos);
+        metrics.addCount(RunMetrics.ROWS, rows);
+        return events;
+    }
+
+    /**
+     * Reads the chunk's packed events (see PackedEvents); each row is a blob of events.
+     * @return the chunk's events (in the order they were encoded)
+     * @throws ChunkException if the result is invalid
+     */
+    @NonNull
+    private ChunkEvents readPackedChunk(@NonNull Cursor cursor, @NonNull SuntimesCalendarTask task, @NonNull RunMetrics metrics) throws ChunkException
+    {
+        int i = cursor.getColumnIndex(COLUMN_EVENTS_PACKED);
+        if (i < 0)
+        {
+            cursor.close();
+            throw new ChunkException("Invalid content from " + calendarName() + "! result is missing columns: " + COLUMN_EVENTS_PACKED);
+        }
+
+        ChunkEvents events = new ChunkEvents(0);
+        long cursorNanos = 0, buildNanos = 0;
+        int rows = 0;
+        try {
+            long t0 = System.nanoTime();
+            cursor.moveToFirst();
+            cursorNanos += (System.nanoTime() - t0);
+
+            while (!cursor.isAfterLast() && !task.isCancelled())
+            {
+                t0 = System.nanoTime();
+                byte[] blob = cursor.getBlob(i);
+                cursorNanos += (System.nanoTime() - t0);
+
+                if (blob != null)
+                {
+                    t0 = System.nanoTime();
+                    rows += PackedEvents.decode(blob, events.packed);
+                    buildNanos += (System.nanoTime() - t0);
+                }
+
+                t0 = System.nanoTime();
+                cursor.moveToNext();
+                cursorNanos += (System.nanoTime() - t0);
+            }
+
+        } catch (IllegalArgumentException e) {
+            throw new ChunkException("Invalid content from " + calendarName() + "! " + e.getMessage());
+
+        } finally {
+            cursor.close();
+            metrics.addNanos(RunMetrics.CURSOR, cursorNanos);
+            metrics.addNanos(RunMetrics.BUILD, buildNanos);
+            metrics.addCount(RunMetrics.ROWS, rows);
+        }
+        return events;
+    }
+
+    /**
+     * ChunkException
+     * A chunk that couldn't be read; thrown by the worker threads, and reported (as lastError) by fetchChunks.
+     */
+    private static class ChunkException extends Exception
+    {
+        public ChunkException(String message) {
+            super(message);
+        }
     }
 
+    /**
+     * ChunkEvents
+     * The events of one chunk; either rows (ContentValues) or packed events (decoded into an EventBatch).
+     */
+    private static class ChunkEvents
+    {
+        public final ArrayList<ContentValues> rows;
+        public final EventBatch packed = new EventBatch();
+
+        public ChunkEvents(int capacity) {
+            rows = new ArrayList<>(capacity);
+        }
+
+        public void addAll(@NonNull ChunkEvents other)
+        {
+            rows.addAll(other.rows);
+            for (int i=0; i<other.packed.size(); i++) {
+                packed.add(other.packed.title(i), other.packed.description(i), other.packed.location(i), other.packed.start(i), other.packed.end(i));
+            }
+        }
+
+        public void writeTo(@NonNull EventWriter writer) throws SecurityException
+        {
+            for (ContentValues values : rows) {
+                writer.add(values);
+            }
+            for (int i=0; i<packed.size(); i++) {
+                writer.add(packed.title(i), packed.description(i), packed.location(i), packed.start(i), packed.end(i));
+            }
+        }
+    }
 }
@@ -0,0 +1,277 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.task.calendars;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+import com.forrestguice.suntimeswidget.calendar.core.MoonApsisEvents;
+import com.forrestguice.suntimeswidget.calendar.task.queries.QueryPlanner;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * MoonApsisEngine
+ * Finds every lunar apogee and perigee within a window (and their distances).
+ *
+ * Rather than walking the window one cycle at a time (each query starting after the previous apogee),
+ * lookups are planned up front at intervals of one anomalistic month and run concurrently on a worker
+ * pool. Since the time between apsides varies (perigee to perigee is 24.6 to 28.5 days), a planned lookup
+ * may occasionally step over one; these gaps are found afterward and filled by follow-up lookups.
+ * Lookups are answered by the planner's local calculator when it has one (see QueryPlanner.queryLocal).
+ */
+@SuppressWarnings("Convert2Diamond")
+public class MoonApsisEngine implements MoonApsisEvents.Distances
+{
+    public static final String TAG = "MoonApsisEngine";
+
+    public static final double ANOMALISTIC_MONTH_DAYS = 27.554551d;
+    public static final long ANOMALISTIC_MONTH_MILLIS = (long)(ANOMALISTIC_MONTH_DAYS * 24 * 60 * 60 * 1000);
+    public static final long MAX_GAP_MILLIS = (long)(1.5 * ANOMALISTIC_MONTH_MILLIS);    // consecutive apsides further apart than this are missing one
+    public static final long ADVANCE_MILLIS = 60 * 1000;
+    public static final int MAX_REPAIR_ROUNDS = 8;
+
+    public interface ProgressListener {
+        void onProgress(int completed, int total);
+    }
+
+    protected final ContentResolver resolver;
+    protected final QueryPlanner planner;
+    protected final AsyncTask<?,?,?> task;
+    protected final int maxThreads;
+
+    protected final TreeSet<Long> apogees = new TreeSet<>();
+    protected final TreeSet<Long> perigees = new TreeSet<>();
+    protected final MoonDistanceResolver distances;
+    protected int numQueries = 0;
+    protected boolean unsupported = false;
+
+    public MoonApsisEngine(@NonNull ContentResolver resolver, @Nullable QueryPlanner planner, @NonNull AsyncTask<?,?,?> task, int maxThreads)
+    {
+        this.resolver = resolver;
+        this.planner = planner;
+        this.distances = new MoonDistanceResolver(planner);
+        this.task = task;
+        this.maxThreads = Math.max(1, maxThreads);
+    }
+
+    /**
+     * @param window [start, end] (ms)
+     * @return lookup times; one per anomalistic month starting at window[0]
+     */
+    public static long[] planCycles(@NonNull long[] window)
+    {
+        int n = (int) Math.max(1, Math.ceil((window[1] - window[0]) / (double) ANOMALISTIC_MONTH_MILLIS));
+        long[] times = new long[n];
+        for (int i=0; i<n; i++) {
+            times[i] = window[0] + (i * ANOMALISTIC_MONTH_MILLIS);
+        }
+        return times;
+    }
+
+    /**
+     * Finds all apsides within the window, then resolves their distances.
+     * @param window [start, end] (ms)
+     * @param listener progress listener (called from this thread), or null
+     * @return true if successful, false if failed or cancelled (see `isUnsupported`)
+     */
+    public boolean run(@NonNull long[] window, @Nullable ProgressListener listener)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
+        try {
+            if (!queryApsides(executor, planCycles(window), listener)) {
+                return false;
+            }
+
+            for (int round = 0; round < MAX_REPAIR_ROUNDS; round++)
+            {
+                long[] gaps = findGaps(window[1]);
+                if (gaps.length == 0) {
+                    break;
+                }
+                Log.d(TAG, "run: filling " + gaps.length + " gaps (round " + round + ")");
+                if (!queryApsides(executor, gaps, null)) {
+                    return false;
+                }
+            }
+
+            for (Long time : apogees) {
+                distances.request(time);
+            }
+            for (Long time : perigees) {
+                distances.request(time);
+            }
+            boolean retValue = distances.resolve(resolver, task, executor);
+            Log.d(TAG, "run: " + apogees.size() + " apogees, " + perigees.size() + " perigees; " + numQueries + " apsis queries, " + distances.numQueries() + " distance queries");
+            return retValue;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true if the provider doesn't support apsis lookups (requires provider v2:0.3.0 (Suntimes v0.12.0+))
+     */
+    public boolean isUnsupported() {
+        return unsupported;
+    }
+
+    public TreeSet<Long> apogees() {
+        return apogees;
+    }
+
+    public TreeSet<Long> perigees() {
+        return perigees;
+    }
+
+    /**
+     * @return distance (km), or MoonDistanceResolver.UNKNOWN
+     */
+    @Override
+    public double distance(long time) {
+        return distances.distance(time);
+    }
+
+    protected boolean queryApsides(@NonNull ExecutorService executor, @NonNull long[] times, @Nullable ProgressListener listener)
+    {
+        ArrayList<Future<long[]>> results = new ArrayList<>(times.length);
+        for (final long time : times)
+        {
+            results.add(executor.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() {
+                    return queryApsis(time);
+                }
+            }));
+        }
+
+        try {
+            for (int i=0; i<results.size(); i++)
+            {
+                if (task.isCancelled()) {
+                    return false;
+                }
+
+                long[] apsis = results.get(i).get();
+                if (apsis == null) {
+                    return false;
+                }
+                apogees.add(apsis[0]);
+                perigees.add(apsis[1]);
+
+                if (listener != null) {
+                    listener.onProgress(i + 1, times.length);
+                }
+            }
+            numQueries += times.length;
+            return true;
+
+        } catch (InterruptedException e) {
+            Log.w(TAG, "queryApsides: interrupted; " + e);
+            Thread.currentThread().interrupt();
+            return false;
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnsupportedOperationException) {
+                unsupported = true;
+            }
+            Log.e(TAG, "queryApsides: failed; " + e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * @param time timestamp (ms)
+     * @return [apogee, perigee] following time, or null if the query failed
+     */
+    @Nullable
+    protected long[] queryApsis(long time)
+    {
+        String[] projection = new String[] { CalculatorProviderContract.COLUMN_MOONPOS_APOGEE, CalculatorProviderContract.COLUMN_MOONPOS_PERIGEE };
+        Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_MOONPOS  + "/" + time);
+        Cursor cursor = (planner != null ? planner.queryLocal(CalculatorProviderContract.QUERY_MOONPOS, Long.toString(time), projection) : null);
+        if (cursor == null)
+        {
+            long bench_start = System.nanoTime();
+            cursor = resolver.query(uri, projection, null, null, null);
+            if (planner != null) {
+                planner.recordQuery(System.nanoTime() - bench_start);
+            }
+        }
+        if (cursor == null) {
+            Log.w(TAG, "Failed to resolve URI! " + uri);
+            return null;
+        }
+
+        try {
+            if (!cursor.moveToFirst() || cursor.getColumnCount() < 2 || cursor.getLong(0) <= 0) {
+                throw new UnsupportedOperationException("moonpos does not contain apogee/perigee columns");
+            }
+            return new long[] { cursor.getLong(0), cursor.getLong(1) };
+
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @param end end of the window (ms)
+     * @return lookup times (just after an apsis) for any gaps in the results, or for the end of the window if not yet covered
+     */
+    protected long[] findGaps(long end)
+    {
+        TreeSet<Long> times = new TreeSet<>();
+        findGaps(apogees, end, times);
+        findGaps(perigees, end, times);
+
+        long[] retValue = new long[times.size()];
+        int i = 0;
+        for (Long time : times) {
+            retValue[i++] = time;
+        }
+        return retValue;
+    }
+
+    protected static void findGaps(@NonNull TreeSet<Long> apsides, long end, @NonNull TreeSet<Long> times)
+    {
+        Long previous = null;
+        for (Long time : apsides)
+        {
+            if (previous != null && (time - previous) > MAX_GAP_MILLIS) {
+                times.add(previous + ADVANCE_MILLIS);
+            }
+            previous = time;
+        }
+        if (previous != null && (previous + ADVANCE_MILLIS) < end) {
+            times.add(previous + ADVANCE_MILLIS);    // the last lookup should start past the end of the window
+        }
+    }
+}
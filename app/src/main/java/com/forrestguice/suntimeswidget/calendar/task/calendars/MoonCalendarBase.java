@@ -18,42 +18,36 @@
 
 package com.forrestguice.suntimeswidget.calendar.task.calendars;
 
-import android.content.ContentResolver;
 import android.content.Context;
-import android.database.Cursor;
-import android.net.Uri;
 import android.support.annotation.NonNull;
 
-import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
-
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
+import com.forrestguice.suntimescalendars.R;
+import com.forrestguice.suntimeswidget.calendar.core.DescriptionTemplate;
 
 @SuppressWarnings("Convert2Diamond")
 public abstract class MoonCalendarBase extends SuntimesCalendarBase
 {
-    protected NumberFormat distanceFormatter = null;
-    protected String formatDistanceString(double distance)
+    /**
+     * @param context context
+     * @param titles event titles
+     * @return a distance template (R.string.event_distance_format) for each title
+     */
+    protected DescriptionTemplate[] distanceTemplates(@NonNull Context context, String[] titles)
     {
-        if (distanceFormatter == null)
-        {
-            distanceFormatter = new DecimalFormat();
-            distanceFormatter.setMinimumFractionDigits(0);
-            distanceFormatter.setMaximumFractionDigits(2);
+        DescriptionTemplate[] retValue = new DescriptionTemplate[titles.length];
+        for (int i=0; i<titles.length; i++) {
+            retValue[i] = descriptionTemplate(context, R.string.event_distance_format, titles[i]);
         }
-        return distanceFormatter.format(distance);
+        return retValue;
     }
 
-    protected double lookupMoonDistance(@NonNull Context context, @NonNull ContentResolver resolver, long dateMillis )
+    protected DescriptionTemplate[][] distanceTemplates(@NonNull Context context, String[][] titles)
     {
-        double retValue = -1;
-        Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_MOONPOS  + "/" + dateMillis);
-        Cursor cursor = resolver.query(uri, new String[] { CalculatorProviderContract.COLUMN_MOONPOS_DISTANCE }, null, null, null);
-        if (cursor != null) {
-            cursor.moveToFirst();
-            retValue = cursor.getDouble(0);
-            cursor.close();
+        DescriptionTemplate[][] retValue = new DescriptionTemplate[titles.length][];
+        for (int i=0; i<titles.length; i++) {
+            retValue[i] = distanceTemplates(context, titles[i]);
         }
         return retValue;
     }
+
 }
@@ -0,0 +1,175 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.task.calendars;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+import com.forrestguice.suntimeswidget.calendar.core.EventGenerator;
+import com.forrestguice.suntimeswidget.calendar.task.queries.QueryPlanner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * MoonDistanceResolver
+ * Resolves moon distances for a set of timestamps in one pass. Calendars `request` every timestamp
+ * they need, `resolve` once, and then read results with `distance`.
+ *
+ * Distances are cached by timestamp (a timestamp requested twice is looked up once). Lookups are run on
+ * an ExecutorService (one ContentResolver query per pending timestamp; ContentResolver is safe to share
+ * between threads), and their results are collected on the calling thread. If the planner has a local
+ * calculator, lookups are answered by it instead (see QueryPlanner.queryLocal).
+ */
+@SuppressWarnings("Convert2Diamond")
+public class MoonDistanceResolver
+{
+    public static final String TAG = "MoonDistanceResolver";
+    public static final double UNKNOWN = EventGenerator.UNKNOWN_DISTANCE;
+
+    protected final HashMap<Long, Double> distances = new HashMap<>();
+    protected final TreeSet<Long> pending = new TreeSet<>();
+    protected int numQueries = 0;
+    protected final QueryPlanner planner;
+
+    public MoonDistanceResolver() {
+        this(null);
+    }
+
+    public MoonDistanceResolver(@Nullable QueryPlanner planner) {
+        this.planner = planner;
+    }
+
+    /**
+     * @param time timestamp (ms) to be resolved by the next call to `resolve`
+     */
+    public void request(long time)
+    {
+        if (!distances.containsKey(time)) {
+            pending.add(time);
+        }
+    }
+
+    /**
+     * @param time timestamp (ms)
+     * @param distance the distance (km) looked up for this timestamp
+     */
+    private void put(long time, double distance)
+    {
+        distances.put(time, distance);
+        pending.remove(time);
+    }
+
+    /**
+     * @return the distance (km), or UNKNOWN if the timestamp wasn't resolved
+     */
+    public double distance(long time)
+    {
+        Double distance = distances.get(time);
+        return (distance != null ? distance : UNKNOWN);
+    }
+
+    /**
+     * @return number of provider queries made (so far)
+     */
+    public synchronized int numQueries() {
+        return numQueries;
+    }
+
+    /**
+     * Looks up all pending timestamps using the given executor (one query per pending timestamp); results
+     * are collected on the calling thread.
+     * @param resolver content resolver
+     * @param task resolving stops early (returning false) if the task is cancelled
+     * @param executor executor
+     * @return true if all pending timestamps were looked up, false otherwise
+     */
+    public boolean resolve(@NonNull final ContentResolver resolver, @Nullable AsyncTask<?,?,?> task, @NonNull ExecutorService executor)
+    {
+        ArrayList<Long> times = new ArrayList<>(pending);
+        ArrayList<Future<Double>> results = new ArrayList<>(times.size());
+        for (final Long time : times)
+        {
+            results.add(executor.submit(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return queryDistance(resolver, time);
+                }
+            }));
+        }
+
+        try {
+            for (int i=0; i<times.size(); i++)
+            {
+                if (task != null && task.isCancelled()) {
+                    return false;
+                }
+                put(times.get(i), results.get(i).get());
+            }
+            return true;
+
+        } catch (InterruptedException e) {
+            Log.w(TAG, "resolve: interrupted; " + e);
+            Thread.currentThread().interrupt();
+            return false;
+
+        } catch (ExecutionException e) {
+            Log.e(TAG, "resolve: failed to query distance; " + e.getCause());
+            return false;
+        }
+    }
+
+    protected double queryDistance(@NonNull ContentResolver resolver, long time)
+    {
+        double retValue = UNKNOWN;
+        Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_MOONPOS  + "/" + time);
+        String[] projection = new String[] { CalculatorProviderContract.COLUMN_MOONPOS_DISTANCE };
+        Cursor cursor = (planner != null ? planner.queryLocal(CalculatorProviderContract.QUERY_MOONPOS, Long.toString(time), projection) : null);
+        if (cursor == null)
+        {
+            long bench_start = System.nanoTime();
+            cursor = resolver.query(uri, projection, null, null, null);
+            if (planner != null) {
+                planner.recordQuery(System.nanoTime() - bench_start);
+            }
+            synchronized (this) {
+                numQueries++;
+            }
+        }
+
+        if (cursor != null)
+        {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                retValue = cursor.getDouble(0);
+            }
+            cursor.close();
+        }
+        return retValue;
+    }
+}
@@ -19,24 +19,20 @@
 package com.forrestguice.suntimeswidget.calendar.task.calendars;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
-import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
 import com.forrestguice.suntimescalendars.R;
-import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
-
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.GenerationTimer;
+import com.forrestguice.suntimeswidget.calendar.core.MoonApsisEvents;
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendar;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTask;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskProgress;
-
-import java.util.ArrayList;
-import java.util.Calendar;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventWriter;
 
 @SuppressWarnings("Convert2Diamond")
 public class MoonapsisCalendar extends MoonCalendarBase implements SuntimesCalendar
@@ -67,17 +63,15 @@ public class MoonapsisCalendar extends MoonCalendarBase implements SuntimesCalen
     }
 
     @Override
-    public boolean initCalendar(@NonNull SuntimesCalendarSettings settings, @NonNull SuntimesCalendarAdapter adapter, @NonNull SuntimesCalendarTask task, @NonNull SuntimesCalendarTaskProgress progress0, @NonNull long[] window)
+    public boolean initCalendar(@NonNull SuntimesCalendarSettings settings, @NonNull SuntimesCalendarAdapter adapter, @NonNull final SuntimesCalendarTask task, @NonNull final SuntimesCalendarTaskProgress progress0, @NonNull long[] window)
     {
         if (task.isCancelled()) {
             return false;
         }
 
-        String calendarName = calendarName();
-
         Log.d("DEBUG", "providerVersion: " + task.getProviderVersion());
 
-        if (task.getProviderVersion() < 2)    // sanity check.. moonApsis needs provider v2:0.3.0 (Suntimes v0.12.0+))
+        if (task.getProviderVersion() < 2 && task.getQueryPlanner().getLocalCalculator() == null)    // sanity check.. moonApsis needs provider v2:0.3.0 (Suntimes v0.12.0+))
         {
             Context context = contextRef.get();
             lastError = context != null ? context.getString(R.string.feature_not_supported_by_provider, calendarTitle, "Suntimes v0.12.0")
@@ -86,92 +80,58 @@ public class MoonapsisCalendar extends MoonCalendarBase implements SuntimesCalen
             return false;
         }
 
-        if (!adapter.hasCalendar(calendarName)) {
-            adapter.createCalendar(calendarName, calendarTitle, calendarColor);
-        } else return false;
-
-        String[] projection = new String[] {
-                CalculatorProviderContract.COLUMN_MOONPOS_APOGEE,
-                CalculatorProviderContract.COLUMN_MOONPOS_PERIGEE
-        };
-
-        long calendarID = adapter.queryCalendarID(calendarName);
-        if (calendarID != -1)
+        EventWriter writer = openCalendar(task, adapter);    // null if the calendar exists (and isn't being synced)
+        if (writer != null)
         {
-            Context context = contextRef.get();
-            ContentResolver resolver = (context == null ? null : context.getContentResolver());
-            if (resolver != null)
-            {
-                int c = 0;
-                int totalProgress = (int)Math.ceil(1.25 * (((window[1] - window[0]) / 1000d / 60d / 60d / 24d) / 27.554551d));
-                SuntimesCalendarTaskProgress progress = task.createProgressObj(c, totalProgress, calendarTitle);
-                task.publishProgress(progress0, progress);
-
-                Calendar date = Calendar.getInstance();
-                date.setTimeInMillis(window[0]);
-
-                Calendar endDate = Calendar.getInstance();
-                endDate.setTimeInMillis(window[1]);
-
-                while (date.before(endDate) && !task.isCancelled())
+            try {
+                Context context = contextRef.get();
+                ContentResolver resolver = (context == null ? null : context.getContentResolver());
+                if (resolver != null)
                 {
-                    Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_MOONPOS  + "/" + (date.getTimeInMillis()));
-                    Cursor cursor = resolver.query(uri, projection, null, null, null);
-                    if (cursor == null)
+                    final SuntimesCalendarTaskProgress progress = task.createProgressObj(0, MoonApsisEngine.planCycles(window).length, calendarTitle);
+                    task.publishProgress(progress0, progress);
+
+                    long bench_start = System.nanoTime();
+                    MoonApsisEngine engine = new MoonApsisEngine(resolver, task.getQueryPlanner(), task, task.getMaxThreads());
+                    boolean found = engine.run(window, new MoonApsisEngine.ProgressListener()
                     {
-                        lastError = "Failed to resolve URI! " + uri;
-                        Log.w(getClass().getSimpleName(), lastError);
+                        @Override
+                        public void onProgress(int completed, int total) {
+                            progress.setProgress(completed, total, calendarTitle);
+                            task.publishProgress(progress0, progress);
+                        }
+                    });
+                    metrics(task).addNanos(RunMetrics.QUERY, System.nanoTime() - bench_start);
+
+                    if (task.isCancelled()) {
                         return false;
 
-                    } else {
-                        progress = task.createProgressObj(c, totalProgress, calendarTitle);
+                    } else if (engine.isUnsupported()) {   // sanity check.. moonApsis needs provider v2:0.3.0 (Suntimes v0.12.0+))
+                        progress.setProgress(progress.getCount(), progress.getCount(), calendarTitle);
                         task.publishProgress(progress0, progress);
+                        lastError = context.getString(R.string.feature_not_supported_by_provider, calendarTitle, "Suntimes v0.12.0");
+                        Log.e("initMoonApsisCalendar", lastError);
+                        return false;
 
-                        ArrayList<ContentValues> eventValues = new ArrayList<>();
-                        cursor.moveToFirst();
-                        while (!cursor.isAfterLast() && !task.isCancelled())
-                        {
-                            if (cursor.getColumnCount() < 2 || cursor.getLong(0) <= 0)
-                            {   // sanity check.. moonApsis needs provider v2:0.3.0 (Suntimes v0.12.0+))
-                                cursor.close();
-                                progress.setProgress(totalProgress, totalProgress, calendarTitle);
-                                task.publishProgress(progress0, progress);
-                                lastError = context.getString(R.string.feature_not_supported_by_provider, calendarTitle, "Suntimes v0.12.0");
-                                Log.e("initMoonApsisCalendar", lastError);
-                                return false;
-                            }
-
-                            for (int i=0; i<2; i++)
-                            {
-                                Calendar eventTime = Calendar.getInstance();
-                                eventTime.setTimeInMillis(cursor.getLong(i));
-                                double distance = lookupMoonDistance(context, resolver, eventTime.getTimeInMillis());
-                                String desc = ((distance != -1) ? context.getString(R.string.event_distance_format, apsisStrings[i], formatDistanceString(distance)) : apsisStrings[i]);
-                                eventValues.add(adapter.createEventContentValues(calendarID, apsisStrings[i], desc, null, eventTime));
-                            }
-                            date.setTimeInMillis(cursor.getLong(0) + (60 * 1000));  // advance to next cycle
-                            cursor.moveToNext();
-                            c++;
-
-                            progress.setProgress(c, totalProgress, calendarTitle);
-                            task.publishProgress(progress0, progress);
-                        }
-                        cursor.close();
-
-                        int chunk = 128;
-                        int n = eventValues.size();
-                        for (int i = 0; i < n; i += chunk) {
-                            int j = i + chunk;
-                            adapter.createCalendarEvents(eventValues.subList(i, (j > n ? n : j)).toArray(new ContentValues[0]));
-                        }
+                    } else if (!found) {
+                        lastError = "Failed to find apogee/perigee for " + window[0] + "-" + window[1];
+                        Log.w(getClass().getSimpleName(), lastError);
+                        return false;
                     }
-                }
-                return !task.isCancelled();
 
-            } else {
-                lastError = "Unable to getContentResolver!";
-                Log.e("initMoonApsisCalendar", lastError);
-                return false;
+                    MoonApsisEvents events = new MoonApsisEvents(apsisStrings, distanceTemplates(context, apsisStrings));
+                    GenerationTimer timer = new GenerationTimer(metrics(task));
+                    boolean generated = events.generate(engine.apogees(), engine.perigees(), engine, timer.sink(writer), timer.listener(generatorListener(task, progress0, progress, calendarTitle)));
+                    timer.stop();
+                    return generated && writer.finish();
+
+                } else {
+                    lastError = "Unable to getContentResolver!";
+                    Log.e("initMoonApsisCalendar", lastError);
+                    return false;
+                }
+            } finally {
+                writer.close();    // aborts the writer if it wasn't finished
             }
         } else return false;
     }
@@ -19,7 +19,6 @@
 package com.forrestguice.suntimeswidget.calendar.task.calendars;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -32,11 +31,13 @@ import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContrac
 
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.GenerationTimer;
+import com.forrestguice.suntimeswidget.calendar.core.MoonPhaseEvents;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTask;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskProgress;
-
-import java.util.ArrayList;
-import java.util.Calendar;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.queries.CursorRowSource;
+import com.forrestguice.suntimeswidget.calendar.task.queries.QueryPlanner;
 
 @SuppressWarnings("Convert2Diamond")
 public class MoonphaseCalendar extends MoonCalendarBase
@@ -45,8 +46,8 @@ public class MoonphaseCalendar extends MoonCalendarBase
     private static final int resID_calendarTitle = R.string.calendar_moonPhase_displayName;
     private static final int resID_calendarSummary = R.string.calendar_moonPhase_summary;
 
-    public static final double THRESHHOLD_SUPERMOON = 360000;    // km
-    public static final double THRESHHOLD_MICROMOON = 405000;    // km
+    public static final double THRESHHOLD_SUPERMOON = MoonPhaseEvents.THRESHHOLD_SUPERMOON;    // km
+    public static final double THRESHHOLD_MICROMOON = MoonPhaseEvents.THRESHHOLD_MICROMOON;    // km
 
     private String[] phaseStrings = new String[4];     // {major phases}
     private String[] phaseStrings1 = new String[4];    // {major phases; supermoon}
@@ -83,6 +84,20 @@ public class MoonphaseCalendar extends MoonCalendarBase
         phaseStrings2[3] = context.getString(R.string.timeMode_moon_thirdquarter);
     }
 
+    private static final String[] projection = new String[] {    // indices 0-3 should contain ordered phases!
+            CalculatorProviderContract.COLUMN_MOON_NEW,
+            CalculatorProviderContract.COLUMN_MOON_FIRST,
+            CalculatorProviderContract.COLUMN_MOON_FULL,
+            CalculatorProviderContract.COLUMN_MOON_THIRD,
+            CalculatorProviderContract.COLUMN_MOON_NEW_DISTANCE,  // use indices 4+ for other data
+            CalculatorProviderContract.COLUMN_MOON_FULL_DISTANCE
+    };
+
+    @Override
+    public void declareQueries(@NonNull QueryPlanner planner, @NonNull long[] window) {
+        planner.declare(CalculatorProviderContract.QUERY_MOONPHASE, QueryPlanner.range(window), projection);
+    }
+
     @Override
     public boolean initCalendar(@NonNull SuntimesCalendarSettings settings, @NonNull SuntimesCalendarAdapter adapter, @NonNull SuntimesCalendarTask task, @NonNull SuntimesCalendarTaskProgress progress0, @NonNull long[] window)
     {
@@ -90,86 +105,43 @@ public class MoonphaseCalendar extends MoonCalendarBase
             return false;
         }
 
-        String calendarName = calendarName();
-        if (!adapter.hasCalendar(calendarName)) {
-            adapter.createCalendar(calendarName, calendarTitle, calendarColor);
-        } else return false;
-
-        String[] projection = new String[] {    // indices 0-3 should contain ordered phases!
-                CalculatorProviderContract.COLUMN_MOON_NEW,
-                CalculatorProviderContract.COLUMN_MOON_FIRST,
-                CalculatorProviderContract.COLUMN_MOON_FULL,
-                CalculatorProviderContract.COLUMN_MOON_THIRD,
-                CalculatorProviderContract.COLUMN_MOON_NEW_DISTANCE,  // use indices 4+ for other data
-                CalculatorProviderContract.COLUMN_MOON_FULL_DISTANCE
-        };
-
-        long calendarID = adapter.queryCalendarID(calendarName);
-        if (calendarID != -1)
+        EventWriter writer = openCalendar(task, adapter);    // null if the calendar exists (and isn't being synced)
+        if (writer != null)
         {
-            Context context = contextRef.get();
-            ContentResolver resolver = (context == null ? null : context.getContentResolver());
-            if (resolver != null)
-            {
-                Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_MOONPHASE + "/" + window[0] + "-" + window[1]);
-                Cursor cursor = resolver.query(uri, projection, null, null, null);
-                if (cursor != null)
+            try {
+                Context context = contextRef.get();
+                ContentResolver resolver = (context == null ? null : context.getContentResolver());
+                if (resolver != null)
                 {
-                    int c = 0;
-                    int totalProgress = cursor.getCount();
-                    SuntimesCalendarTaskProgress progress = task.createProgressObj(c, totalProgress, calendarTitle);
-                    task.publishProgress(progress0, progress);
-
-                    ArrayList<ContentValues> eventValues = new ArrayList<>();
-                    cursor.moveToFirst();
-                    while (!cursor.isAfterLast() && !task.isCancelled())
+                    Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_MOONPHASE + "/" + window[0] + "-" + window[1]);
+                    Cursor cursor = query(task, resolver, CalculatorProviderContract.QUERY_MOONPHASE, QueryPlanner.range(window), projection);
+                    if (cursor != null)
                     {
-                        for (int i=0; i<4; i++)
-                        {
-                            double distance = -1;
-                            String[] titleStrings;
-                            if (i == 0 || i == 2)  // new moon || full moon
-                            {
-                                distance = cursor.getDouble(i == 0 ? 4 : 5);
-
-                                if (distance < THRESHHOLD_SUPERMOON) {
-                                    titleStrings = phaseStrings1;
-                                } else if (distance > THRESHHOLD_MICROMOON) {
-                                    titleStrings = phaseStrings2;
-                                } else titleStrings = phaseStrings;
-
-                            } else titleStrings = phaseStrings;
-
-                            String desc = (distance > 0)
-                                    ? context.getString(R.string.event_distance_format, titleStrings[i], formatDistanceString(distance))
-                                    : titleStrings[i];
-                            Calendar eventTime = Calendar.getInstance();
-                            eventTime.setTimeInMillis(cursor.getLong(i));
-                            eventValues.add(adapter.createEventContentValues(calendarID, titleStrings[i], desc, null, eventTime));
-                        }
-                        cursor.moveToNext();
-                        c++;
-
-                        if (c % 128 == 0 || cursor.isLast())
-                        {
-                            adapter.createCalendarEvents(eventValues.toArray(new ContentValues[0]));
-                            eventValues.clear();
-                        }
-                        progress.setProgress(c, totalProgress, calendarTitle);
+                        int c = 0;
+                        int totalProgress = cursor.getCount();
+                        SuntimesCalendarTaskProgress progress = task.createProgressObj(c, totalProgress, calendarTitle);
                         task.publishProgress(progress0, progress);
-                    }
-                    cursor.close();
-                    return !task.isCancelled();
 
+                        String[][] titles = new String[][] { phaseStrings, phaseStrings1, phaseStrings2 };
+                        MoonPhaseEvents events = new MoonPhaseEvents(titles, distanceTemplates(context, titles));
+                        GenerationTimer timer = new GenerationTimer(metrics(task));
+                        boolean generated = events.generate(timer.rows(new CursorRowSource(cursor)), timer.sink(writer), timer.listener(generatorListener(task, progress0, progress, calendarTitle)));
+                        timer.stop();
+                        cursor.close();
+                        return generated && writer.finish();
+
+                    } else {
+                        lastError = "Failed to resolve URI! " + uri;
+                        Log.w(getClass().getSimpleName(), lastError);
+                        return false;
+                    }
                 } else {
-                    lastError = "Failed to resolve URI! " + uri;
-                    Log.w(getClass().getSimpleName(), lastError);
+                    lastError = "Unable to getContentResolver!";
+                    Log.e("initMoonPhaseCalendar", lastError);
                     return false;
                 }
-            } else {
-                lastError = "Unable to getContentResolver!";
-                Log.e("initMoonPhaseCalendar", lastError);
-                return false;
+            } finally {
+                writer.close();    // aborts the writer if it wasn't finished
             }
         } else return false;
     }
@@ -19,7 +19,6 @@
 package com.forrestguice.suntimeswidget.calendar.task.calendars;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -30,12 +29,14 @@ import com.forrestguice.suntimescalendars.R;
 import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.GenerationTimer;
+import com.forrestguice.suntimeswidget.calendar.core.MoonriseEvents;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendar;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTask;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskProgress;
-
-import java.util.ArrayList;
-import java.util.Calendar;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.queries.CursorRowSource;
+import com.forrestguice.suntimeswidget.calendar.task.queries.QueryPlanner;
 
 @SuppressWarnings("Convert2Diamond")
 public class MoonriseCalendar extends MoonCalendarBase implements SuntimesCalendar
@@ -65,6 +66,13 @@ public class MoonriseCalendar extends MoonCalendarBase implements SuntimesCalend
         moonStrings[1] = context.getString(R.string.moonset);
     }
 
+    private static final String[] moonProjection = new String[] { CalculatorProviderContract.COLUMN_MOON_RISE, CalculatorProviderContract.COLUMN_MOON_SET };
+
+    @Override
+    public void declareQueries(@NonNull QueryPlanner planner, @NonNull long[] window) {
+        planner.declare(CalculatorProviderContract.QUERY_MOON, QueryPlanner.range(window), moonProjection);
+    }
+
     @Override
     public boolean initCalendar(@NonNull SuntimesCalendarSettings settings, @NonNull SuntimesCalendarAdapter adapter, @NonNull SuntimesCalendarTask task, @NonNull SuntimesCalendarTaskProgress progress0, @NonNull long[] window)
     {
@@ -73,74 +81,51 @@ public class MoonriseCalendar extends MoonCalendarBase implements SuntimesCalend
         }
 
         String calendarName = calendarName();
-        if (!adapter.hasCalendar(calendarName)) {
-            adapter.createCalendar(calendarName, calendarTitle, calendarColor);
-        } else return false;
-
-        long calendarID = adapter.queryCalendarID(calendarName);
-        if (calendarID != -1)
+        EventWriter writer = openCalendar(task, adapter);    // null if the calendar exists (and isn't being synced)
+        if (writer != null)
         {
-            Context context = contextRef.get();
-            ContentResolver resolver = (context == null ? null : context.getContentResolver());
-            if (resolver != null)
-            {
-                Uri moonUri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_MOON + "/" + window[0] + "-" + window[1]);
-                String[] moonProjection = new String[] { CalculatorProviderContract.COLUMN_MOON_RISE, CalculatorProviderContract.COLUMN_MOON_SET };
-                Cursor moonCursor = resolver.query(moonUri, moonProjection, null, null, null);
-                if (moonCursor != null)
+            try {
+                Context context = contextRef.get();
+                ContentResolver resolver = (context == null ? null : context.getContentResolver());
+                if (resolver != null)
                 {
-                    String[] location = task.getLocation();
-                    settings.saveCalendarNote(context, calendarName, SuntimesCalendarSettings.NOTE_LOCATION_NAME, location[0]);
-
-                    int c = 0;
-                    int totalProgress = moonCursor.getCount();
-                    String progressTitle = context.getString(R.string.summarylist_format, calendarTitle, location[0]);
-                    SuntimesCalendarTaskProgress progress = task.createProgressObj(c, totalProgress, progressTitle);
-                    task.publishProgress(progress0, progress);
-
-                    ArrayList<ContentValues> eventValues = new ArrayList<>();
-                    String title, desc;
-                    moonCursor.moveToFirst();
-                    while (!moonCursor.isAfterLast() && !task.isCancelled())
+                    Uri moonUri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_MOON + "/" + window[0] + "-" + window[1]);
+                    Cursor moonCursor = query(task, resolver, CalculatorProviderContract.QUERY_MOON, QueryPlanner.range(window), moonProjection);
+                    if (moonCursor != null)
                     {
-                        for (int i=0; i<moonProjection.length; i++)
-                        {
-                            if (!moonCursor.isNull(i))
-                            {
-                                Calendar eventTime = Calendar.getInstance();
-                                eventTime.setTimeInMillis(moonCursor.getLong(i));
-                                title = moonStrings[i];
-                                //desc = context.getString(R.string.event_at_format, moonStrings[i], context.getString(R.string.location_format_short, config_location_name, config_location_latitude, config_location_longitude));
-                                desc = context.getString(R.string.event_at_format, moonStrings[i], location[0]);
-                                eventValues.add(adapter.createEventContentValues(calendarID, title, desc, location[0], eventTime));
-                                //Log.d("DEBUG", "create event: " + moonStrings[i] + " at " + eventTime.toString());
-                            }
-                        }
-                        moonCursor.moveToNext();
-                        c++;
-
-                        if (c % 128 == 0 || moonCursor.isLast()) {
-                            adapter.createCalendarEvents( eventValues.toArray(new ContentValues[0]) );
-                            eventValues.clear();
-                        }
-                        if (c % 8 == 0 || moonCursor.isLast()) {
-                            progress.setProgress(c, totalProgress, progressTitle);
-                            task.publishProgress(progress0, progress);
+                        String[] location = task.getLocation();
+                        settings.saveCalendarNote(context, calendarName, SuntimesCalendarSettings.NOTE_LOCATION_NAME, location[0]);
+
+                        int c = 0;
+                        int totalProgress = moonCursor.getCount();
+                        String progressTitle = context.getString(R.string.summarylist_format, calendarTitle, location[0]);
+                        SuntimesCalendarTaskProgress progress = task.createProgressObj(c, totalProgress, progressTitle);
+                        task.publishProgress(progress0, progress);
+
+                        String[] descriptions = new String[moonStrings.length];
+                        for (int i=0; i<moonStrings.length; i++) {
+                            descriptions[i] = formatDescription(context, R.string.event_at_format, moonStrings[i], location[0]);
                         }
+                        MoonriseEvents events = new MoonriseEvents(moonStrings, descriptions, location[0]);
+                        GenerationTimer timer = new GenerationTimer(metrics(task));
+                        boolean generated = events.generate(timer.rows(new CursorRowSource(moonCursor)), timer.sink(writer), timer.listener(generatorListener(task, progress0, progress, progressTitle)));
+                        timer.stop();
+                        moonCursor.close();
+                        return generated && writer.finish();
+
+                    } else {
+                        lastError = "Failed to resolve URI! " + moonUri;
+                        Log.e(getClass().getSimpleName(), lastError);
+                        return false;
                     }
-                    moonCursor.close();
-                    return !task.isCancelled();
 
                 } else {
-                    lastError = "Failed to resolve URI! " + moonUri;
+                    lastError = "Unable to getContentResolver! ";
                     Log.e(getClass().getSimpleName(), lastError);
                     return false;
                 }
-
-            } else {
-                lastError = "Unable to getContentResolver! ";
-                Log.e(getClass().getSimpleName(), lastError);
-                return false;
+            } finally {
+                writer.close();    // aborts the writer if it wasn't finished
             }
         } else return false;
     }
@@ -19,7 +19,6 @@
 package com.forrestguice.suntimeswidget.calendar.task.calendars;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -31,11 +30,15 @@ import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContrac
 
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.GenerationTimer;
+import com.forrestguice.suntimeswidget.calendar.core.SeasonEvents;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendar;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTask;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskProgress;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.queries.CursorRowSource;
+import com.forrestguice.suntimeswidget.calendar.task.queries.QueryPlanner;
 
-import java.util.ArrayList;
 import java.util.Calendar;
 
 @SuppressWarnings("Convert2Diamond")
@@ -68,6 +71,27 @@ public class SolsticeCalendar extends SuntimesCalendarBase implements SuntimesCa
         solsticeStrings[3] = context.getString(R.string.timeMode_solstice_winter);
     }
 
+    private static final String[] projection = new String[] { CalculatorProviderContract.COLUMN_SEASON_VERNAL, CalculatorProviderContract.COLUMN_SEASON_SUMMER, CalculatorProviderContract.COLUMN_SEASON_AUTUMN, CalculatorProviderContract.COLUMN_SEASON_WINTER };
+
+    /**
+     * @param window [start, end] (ms)
+     * @return a year range (e.g. "2020-2023") as used by QUERY_SEASONS
+     */
+    protected static String yearRange(@NonNull long[] window)
+    {
+        Calendar startDate = Calendar.getInstance();
+        startDate.setTimeInMillis(window[0]);
+
+        Calendar endDate = Calendar.getInstance();
+        endDate.setTimeInMillis(window[1]);
+        return startDate.get(Calendar.YEAR) + "-" + endDate.get(Calendar.YEAR);
+    }
+
+    @Override
+    public void declareQueries(@NonNull QueryPlanner planner, @NonNull long[] window) {
+        planner.declare(CalculatorProviderContract.QUERY_SEASONS, yearRange(window), projection);
+    }
+
     @Override
     public boolean initCalendar(@NonNull SuntimesCalendarSettings settings, @NonNull SuntimesCalendarAdapter adapter, @NonNull SuntimesCalendarTask task, @NonNull SuntimesCalendarTaskProgress progress0, @NonNull long[] window)
     {
@@ -75,71 +99,42 @@ public class SolsticeCalendar extends SuntimesCalendarBase implements SuntimesCa
             return false;
         }
 
-        String calendarName = calendarName();
-        if (!adapter.hasCalendar(calendarName)) {
-            adapter.createCalendar(calendarName, calendarTitle, calendarColor);
-        } else return false;
-
-        long calendarID = adapter.queryCalendarID(calendarName);
-        if (calendarID != -1)
+        EventWriter writer = openCalendar(task, adapter);    // null if the calendar exists (and isn't being synced)
+        if (writer != null)
         {
-            Context context = contextRef.get();
-            ContentResolver resolver = (context == null ? null : context.getContentResolver());
-            if (resolver != null)
-            {
-                Calendar startDate = Calendar.getInstance();
-                startDate.setTimeInMillis(window[0]);
-
-                Calendar endDate = Calendar.getInstance();
-                endDate.setTimeInMillis(window[1]);
-
-                Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_SEASONS + "/" + startDate.get(Calendar.YEAR) + "-" + endDate.get(Calendar.YEAR));
-                String[] projection = new String[] { CalculatorProviderContract.COLUMN_SEASON_VERNAL, CalculatorProviderContract.COLUMN_SEASON_SUMMER, CalculatorProviderContract.COLUMN_SEASON_AUTUMN, CalculatorProviderContract.COLUMN_SEASON_WINTER };
-                Cursor cursor = resolver.query(uri, projection, null, null, null);
-                if (cursor != null)
+            try {
+                Context context = contextRef.get();
+                ContentResolver resolver = (context == null ? null : context.getContentResolver());
+                if (resolver != null)
                 {
-                    cursor.moveToFirst();
-
-                    int c = 0;
-                    int totalProgress = cursor.getCount();
-                    SuntimesCalendarTaskProgress progress = task.createProgressObj(c, totalProgress, calendarTitle);
-                    task.publishProgress(progress0, progress);
-
-                    ArrayList<ContentValues> eventValues = new ArrayList<>();
-                    while (!cursor.isAfterLast() && !task.isCancelled())
+                    Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_SEASONS + "/" + yearRange(window));
+                    Cursor cursor = query(task, resolver, CalculatorProviderContract.QUERY_SEASONS, yearRange(window), projection);
+                    if (cursor != null)
                     {
-                        for (int i=0; i<projection.length; i++)
-                        {
-                            if (!cursor.isNull(i))
-                            {
-                                Calendar eventTime = Calendar.getInstance();
-                                eventTime.setTimeInMillis(cursor.getLong(i));
-                                eventValues.add(adapter.createEventContentValues(calendarID, solsticeStrings[i], solsticeStrings[i], null, eventTime));
-                            }
-                        }
-                        cursor.moveToNext();
-                        c++;
-
-                        if (c % 128 == 0 || cursor.isLast())
-                        {
-                            adapter.createCalendarEvents(eventValues.toArray(new ContentValues[0]));
-                            eventValues.clear();
-                        }
-                        progress.setProgress(c, totalProgress, calendarTitle);
+                        int c = 0;
+                        int totalProgress = cursor.getCount();
+                        SuntimesCalendarTaskProgress progress = task.createProgressObj(c, totalProgress, calendarTitle);
                         task.publishProgress(progress0, progress);
-                    }
-                    cursor.close();
-                    return !task.isCancelled();
 
+                        SeasonEvents events = new SeasonEvents(solsticeStrings);
+                        GenerationTimer timer = new GenerationTimer(metrics(task));
+                        boolean generated = events.generate(timer.rows(new CursorRowSource(cursor)), timer.sink(writer), timer.listener(generatorListener(task, progress0, progress, calendarTitle)));
+                        timer.stop();
+                        cursor.close();
+                        return generated && writer.finish();
+
+                    } else {
+                        lastError = "Failed to resolve URI! " + uri;
+                        Log.e(getClass().getSimpleName(), lastError);
+                        return false;
+                    }
                 } else {
-                    lastError = "Failed to resolve URI! " + uri;
+                    lastError = "Unable to getContentResolver! ";
                     Log.e(getClass().getSimpleName(), lastError);
                     return false;
                 }
-            } else {
-                lastError = "Unable to getContentResolver! ";
-                Log.e(getClass().getSimpleName(), lastError);
-                return false;
+            } finally {
+                writer.close();    // aborts the writer if it wasn't finished
             }
         } else return false;
     }
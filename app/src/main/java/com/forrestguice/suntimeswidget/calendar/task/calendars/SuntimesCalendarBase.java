@@ -18,16 +18,29 @@
 
 package com.forrestguice.suntimeswidget.calendar.task.calendars;
 
+import android.content.ContentResolver;
 import android.content.Context;
+import android.database.Cursor;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
 
+import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.DescriptionTemplate;
+import com.forrestguice.suntimeswidget.calendar.core.EventGenerator;
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendar;
+import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTask;
+import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskProgress;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.queries.QueryPlanner;
 
 import java.lang.ref.WeakReference;
+import java.util.HashMap;
 
 @SuppressWarnings("Convert2Diamond")
-public abstract class SuntimesCalendarBase implements SuntimesCalendar
+public abstract class SuntimesCalendarBase implements SuntimesCalendar, QueryPlanner.Client
 {
     protected WeakReference<Context> contextRef = null;
     protected String calendarTitle, calendarSummary, calendarDesc;
@@ -37,6 +50,94 @@ public abstract class SuntimesCalendarBase implements SuntimesCalendar
     @Override
     public void init(@NonNull Context context, @NonNull SuntimesCalendarSettings settings) {
         contextRef = new WeakReference<>(context);
+        templates.clear();
+    }
+
+    private final SparseArray<HashMap<String, DescriptionTemplate>> templates = new SparseArray<>();
+
+    /**
+     * @param context context
+     * @param formatResID a format string taking two args (label, value); e.g. R.string.event_at_format
+     * @param label the label (e.g. phase name)
+     * @return the template (cached for the remainder of the run)
+     */
+    protected DescriptionTemplate descriptionTemplate(@NonNull Context context, int formatResID, String label)
+    {
+        HashMap<String, DescriptionTemplate> byLabel = templates.get(formatResID);
+        if (byLabel == null) {
+            templates.put(formatResID, byLabel = new HashMap<>());
+        }
+
+        DescriptionTemplate template = byLabel.get(label);
+        if (template == null) {
+            byLabel.put(label, template = new DescriptionTemplate(context.getString(formatResID, label, DescriptionTemplate.VALUE)));
+        }
+        return template;
+    }
+
+    /**
+     * Formats a description where both label and value are constant for the run (e.g. event_at_format with
+     * the location label); the result is resolved once and the same instance returned for every event.
+     */
+    protected String formatDescription(@NonNull Context context, int formatResID, String label, String value) {
+        return descriptionTemplate(context, formatResID, label).resolve(value);
+    }
+
+    /**
+     * @param task events are no longer generated after the task is cancelled
+     * @param progress0 task progress
+     * @param progress calendar progress (published along with progress0)
+     * @param progressTitle calendar progress title
+     * @return a listener that publishes generator progress to the task
+     */
+    protected EventGenerator.Listener generatorListener(@NonNull final SuntimesCalendarTask task, final SuntimesCalendarTaskProgress progress0, final SuntimesCalendarTaskProgress progress, final String progressTitle)
+    {
+        return new EventGenerator.Listener()
+        {
+            @Override
+            public boolean isCancelled() {
+                return task.isCancelled();
+            }
+
+            @Override
+            public void onProgress(int c, int total) {
+                progress.setProgress(c, total, progressTitle);
+                task.publishProgress(progress0, progress);
+            }
+        };
+    }
+
+    /**
+     * @return this calendar's metrics for the current run (see SuntimesCalendarTask.getMetrics)
+     */
+    protected RunMetrics metrics(@NonNull SuntimesCalendarTask task) {
+        return task.getMetrics().child(calendarName());
+    }
+
+    /**
+     * Queries the task's QueryPlanner; time spent is recorded as QUERY.
+     */
+    @Nullable
+    protected Cursor query(@NonNull SuntimesCalendarTask task, @NonNull ContentResolver resolver, @NonNull String query, @Nullable String range, @NonNull String[] projection)
+    {
+        long bench_start = System.nanoTime();
+        Cursor cursor = task.getQueryPlanner().query(resolver, query, range, projection);
+        metrics(task).addNanos(RunMetrics.QUERY, System.nanoTime() - bench_start);
+        return cursor;
+    }
+
+    /**
+     * Creates the calendar (if it doesn't exist) and opens an EventWriter for it (see SuntimesCalendarTask.openCalendar).
+     * @return an EventWriter that records to this calendar's metrics, or null if the calendar already exists (and the task isn't syncing calendars) or couldn't be created
+     */
+    @Nullable
+    protected EventWriter openCalendar(@NonNull SuntimesCalendarTask task, @NonNull SuntimesCalendarAdapter adapter) {
+        return task.openCalendar(adapter, calendarName(), calendarTitle, calendarColor, metrics(task));
+    }
+
+    @Override
+    public void declareQueries(@NonNull QueryPlanner planner, @NonNull long[] window) {
+        /* calendars that read from the calculator provider should declare their queries */
     }
 
     @Override
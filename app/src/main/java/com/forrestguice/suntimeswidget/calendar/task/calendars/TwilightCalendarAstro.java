@@ -19,7 +19,6 @@
 package com.forrestguice.suntimeswidget.calendar.task.calendars;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -31,11 +30,14 @@ import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContrac
 
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.GenerationTimer;
+import com.forrestguice.suntimeswidget.calendar.core.TwilightEvents;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendar;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTask;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTaskProgress;
-
-import java.util.ArrayList;
+import com.forrestguice.suntimeswidget.calendar.task.events.EventWriter;
+import com.forrestguice.suntimeswidget.calendar.task.queries.CursorRowSource;
+import com.forrestguice.suntimeswidget.calendar.task.queries.QueryPlanner;
 
 @SuppressWarnings("Convert2Diamond")
 public class TwilightCalendarAstro extends TwilightCalendarBase implements SuntimesCalendar
@@ -59,6 +61,14 @@ public class TwilightCalendarAstro extends TwilightCalendarBase implements Sunti
         calendarColor = settings.loadPrefCalendarColor(context, calendarName());
     }
 
+    private static final String[] projection = new String[] { CalculatorProviderContract.COLUMN_SUN_ASTRO_RISE, CalculatorProviderContract.COLUMN_SUN_NAUTICAL_RISE,
+            CalculatorProviderContract.COLUMN_SUN_NAUTICAL_SET, CalculatorProviderContract.COLUMN_SUN_ASTRO_SET };
+
+    @Override
+    public void declareQueries(@NonNull QueryPlanner planner, @NonNull long[] window) {
+        planner.declare(CalculatorProviderContract.QUERY_SUN, QueryPlanner.range(window), projection);
+    }
+
     @Override
     public boolean initCalendar(@NonNull SuntimesCalendarSettings settings, @NonNull SuntimesCalendarAdapter adapter, @NonNull SuntimesCalendarTask task, @NonNull SuntimesCalendarTaskProgress progress0, @NonNull long[] window)
     {
@@ -67,64 +77,48 @@ public class TwilightCalendarAstro extends TwilightCalendarBase implements Sunti
         }
 
         String calendarName = calendarName();
-        if (!adapter.hasCalendar(calendarName)) {
-            adapter.createCalendar(calendarName, calendarTitle, calendarColor);
-        } else return false;
-
-        long calendarID = adapter.queryCalendarID(calendarName);
-        if (calendarID != -1)
+        EventWriter writer = openCalendar(task, adapter);    // null if the calendar exists (and isn't being synced)
+        if (writer != null)
         {
-            Context context = contextRef.get();
-            ContentResolver resolver = (context == null ? null : context.getContentResolver());
-            if (resolver != null)
-            {
-                Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_SUN + "/" + window[0] + "-" + window[1]);
-                String[] projection = new String[] { CalculatorProviderContract.COLUMN_SUN_ASTRO_RISE, CalculatorProviderContract.COLUMN_SUN_NAUTICAL_RISE,
-                        CalculatorProviderContract.COLUMN_SUN_NAUTICAL_SET, CalculatorProviderContract.COLUMN_SUN_ASTRO_SET };
-                Cursor cursor = resolver.query(uri, projection, null, null, null);
-
-                if (cursor != null)
+            try {
+                Context context = contextRef.get();
+                ContentResolver resolver = (context == null ? null : context.getContentResolver());
+                if (resolver != null)
                 {
-                    String[] location = task.getLocation();
-                    new SuntimesCalendarSettings().saveCalendarNote(context, calendarName, SuntimesCalendarSettings.NOTE_LOCATION_NAME, location[0]);
-
-                    int c = 0;
-                    int totalProgress = cursor.getCount();
-                    String progressTitle = context.getString(R.string.summarylist_format, calendarTitle, location[0]);
-                    SuntimesCalendarTaskProgress progress = new SuntimesCalendarTaskProgress(c, totalProgress, progressTitle);
-                    task.publishProgress(progress0, progress);
-
-                    ArrayList<ContentValues> eventValues = new ArrayList<>();
-                    cursor.moveToFirst();
-                    while (!cursor.isAfterLast() && !task.isCancelled())
+                    Uri uri = Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + CalculatorProviderContract.QUERY_SUN + "/" + window[0] + "-" + window[1]);
+                    Cursor cursor = query(task, resolver, CalculatorProviderContract.QUERY_SUN, QueryPlanner.range(window), projection);    // shared with the other twilight calendars
+
+                    if (cursor != null)
                     {
-                        createSunCalendarEvent(context, adapter, task, eventValues, calendarID, cursor, 0, calendarTitle, s_DAWN_TWILIGHT, s_NAUTICAL_NIGHT, s_ASTRO_TWILIGHT);
-                        createSunCalendarEvent(context, adapter, task, eventValues, calendarID, cursor, 2, calendarTitle, s_DUSK_TWILIGHT, s_ASTRO_TWILIGHT, s_ASTRO_TWILIGHT);
-                        cursor.moveToNext();
-                        c++;
-
-                        if (c % 128 == 0 || cursor.isLast()) {
-                            adapter.createCalendarEvents( eventValues.toArray(new ContentValues[0]) );
-                            eventValues.clear();
-                        }
-                        if (c % 8 == 0 || cursor.isLast()) {
-                            progress.setProgress(c, totalProgress, progressTitle);
-                            task.publishProgress(progress0, progress);
-                        }
+                        String[] location = task.getLocation();
+                        new SuntimesCalendarSettings().saveCalendarNote(context, calendarName, SuntimesCalendarSettings.NOTE_LOCATION_NAME, location[0]);
+
+                        int c = 0;
+                        int totalProgress = cursor.getCount();
+                        String progressTitle = context.getString(R.string.summarylist_format, calendarTitle, location[0]);
+                        SuntimesCalendarTaskProgress progress = new SuntimesCalendarTaskProgress(c, totalProgress, progressTitle);
+                        task.publishProgress(progress0, progress);
+
+                        TwilightEvents events = twilightEvents(context, location[0], calendarTitle, s_DAWN_TWILIGHT, s_NAUTICAL_NIGHT, s_DUSK_TWILIGHT, s_ASTRO_TWILIGHT, s_ASTRO_TWILIGHT);
+                        GenerationTimer timer = new GenerationTimer(metrics(task));
+                        boolean generated = events.generate(timer.rows(new CursorRowSource(cursor)), timer.sink(writer), timer.listener(generatorListener(task, progress0, progress, progressTitle)));
+                        timer.stop();
+                        cursor.close();
+                        return generated && writer.finish();
+
+                    } else {
+                        lastError = "Failed to resolve URI! " + uri;
+                        Log.e(getClass().getSimpleName(), lastError);
+                        return false;
                     }
-                    cursor.close();
-                    return !task.isCancelled();
 
                 } else {
-                    lastError = "Failed to resolve URI! " + uri;
+                    lastError = "Unable to getContentResolver! ";
                     Log.e(getClass().getSimpleName(), lastError);
                     return false;
                 }
-
-            } else {
-                lastError = "Unable to getContentResolver! ";
-                Log.e(getClass().getSimpleName(), lastError);
-                return false;
+            } finally {
+                writer.close();    // aborts the writer if it wasn't finished
             }
         } else return false;
     }
@@ -18,19 +18,13 @@
 
 package com.forrestguice.suntimeswidget.calendar.task.calendars;
 
-import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
 import android.support.annotation.NonNull;
 
 import com.forrestguice.suntimescalendars.R;
-import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
 import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarSettings;
+import com.forrestguice.suntimeswidget.calendar.core.TwilightEvents;
 import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendar;
-import com.forrestguice.suntimeswidget.calendar.task.SuntimesCalendarTask;
-
-import java.util.ArrayList;
-import java.util.Calendar;
 
 @SuppressWarnings("Convert2Diamond")
 public abstract class TwilightCalendarBase extends SuntimesCalendarBase implements SuntimesCalendar
@@ -57,64 +51,24 @@ public abstract class TwilightCalendarBase extends SuntimesCalendarBase implemen
     }
 
     /**
-     *
      * @param context context
-     * @param calendarID calender identifier
-     * @param cursor a cursor containing columns [rise-start, rise-end, set-start, set-end]
-     * @param i index into cursor columns (expects i = 0 (rising), or i = 2 (setting))
+     * @param location location label (e.g. task.getLocation()[0])
      * @param title event title (e.g. Civil Twilight)
-     * @param desc0 avg case description (e.g. ending in sunrise, starting at sunset)
-     * @param desc1 edge case description (e.g. polar twilight)
+     * @param risingDesc avg case description (e.g. ending in sunrise)
+     * @param risingEdgeDesc edge case description (e.g. polar twilight)
+     * @param settingDesc avg case description (e.g. starting at sunset)
+     * @param settingEdgeDesc edge case description (e.g. white night)
+     * @param settingFallbackDesc start-only description (e.g. civil twilight)
+     * @return a generator for rows of [rise-start, rise-end, set-start, set-end]; descriptions are formatted with the location
      */
-    protected void createSunCalendarEvent(Context context, @NonNull SuntimesCalendarAdapter adapter, @NonNull SuntimesCalendarTask task,
-                                          ArrayList<ContentValues> values, long calendarID, Cursor cursor, int i, String title, String desc0, String desc1, String desc_fallback)
+    protected TwilightEvents twilightEvents(Context context, String location, String title, String risingDesc, String risingEdgeDesc, String settingDesc, String settingEdgeDesc, String settingFallbackDesc)
     {
-        int j = i + 1;             // [rise-start, rise-end, set-start, set-end]
-        int k = (i == 0) ? 2 : 0;  // rising [i, j, k, l] .. setting [k, l, i, j]
-        int l = k + 1;
-        String eventDesc;
-        Calendar eventStart = Calendar.getInstance();
-        Calendar eventEnd = Calendar.getInstance();
-        String[] location = task.getLocation();
-
-        if (!cursor.isNull(i) && !cursor.isNull(j))                // avg case [i, j]
-        {
-            eventStart.setTimeInMillis(cursor.getLong(i));
-            eventEnd.setTimeInMillis(cursor.getLong(j));
-            //eventDesc = context.getString(R.string.event_at_format, desc0, context.getString(R.string.location_format_short, config_location_name, config_location_latitude, config_location_longitude));
-            eventDesc = context.getString(R.string.event_at_format, desc0, location[0]);
-            values.add(adapter.createEventContentValues(calendarID, title, eventDesc, location[0], eventStart, eventEnd));
-
-        } else if (!cursor.isNull(i)) {
-            eventStart.setTimeInMillis(cursor.getLong(i));
-            if (i == 0)
-            {
-                if (!cursor.isNull(l)) {                          // edge [i, l] of [i, j, k, l]
-                    eventEnd.setTimeInMillis(cursor.getLong(l));
-                    //eventDesc = context.getString(R.string.event_at_format, desc1, context.getString(R.string.location_format_short, config_location_name, config_location_latitude, config_location_longitude));
-                    eventDesc = context.getString(R.string.event_at_format, desc1, location[0]);
-                    values.add(adapter.createEventContentValues(calendarID, title, eventDesc, location[0], eventStart, eventEnd));
-                }
-
-            } else {
-                if (cursor.moveToNext())
-                {                                // peek forward
-                    if (!cursor.isNull(l))
-                    {
-                        eventEnd.setTimeInMillis(cursor.getLong(l));      // edge [i, +l] of [+k, +l, i, j]
-                        //eventDesc = context.getString(R.string.event_at_format, desc1, context.getString(R.string.location_format_short, config_location_name, config_location_latitude, config_location_longitude));
-                        eventDesc = context.getString(R.string.event_at_format, desc1, location[0]);
-                        values.add(adapter.createEventContentValues(calendarID, title, eventDesc, location[0], eventStart, eventEnd));
-
-                    } else {                                              // fallback (start-only; end-only events are ignored)
-                        //eventDesc = context.getString(R.string.event_at_format, desc_fallback, context.getString(R.string.location_format_short, config_location_name, config_location_latitude, config_location_longitude));
-                        eventDesc = context.getString(R.string.event_at_format, desc_fallback, location[0]);
-                        values.add(adapter.createEventContentValues(calendarID, title, eventDesc, location[0], eventStart));
-                    }
-                    cursor.moveToPrevious();
-                }
-            }
-        }
+        return new TwilightEvents(title, location,
+                formatDescription(context, R.string.event_at_format, risingDesc, location),
+                formatDescription(context, R.string.event_at_format, risingEdgeDesc, location),
+                formatDescription(context, R.string.event_at_format, settingDesc, location),
+                formatDescription(context, R.string.event_at_format, settingEdgeDesc, location),
+                formatDescription(context, R.string.event_at_format, settingFallbackDesc, location));
     }
 
 }
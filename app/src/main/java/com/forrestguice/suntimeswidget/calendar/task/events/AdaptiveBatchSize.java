@@ -0,0 +1,117 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task.events;
+
+import android.content.ContentValues;
+import android.support.annotation.NonNull;
+
+import com.forrestguice.suntimeswidget.calendar.core.EventBatch;
+
+/**
+ * AdaptiveBatchSize
+ * Decides how many events go into each write. Each write is timed (see `onBatchWritten`) and the
+ * batch size grows or shrinks toward a target latency. The batch size is also capped by the
+ * (estimated) parcel size of the batch, to stay well clear of TransactionTooLargeException.
+ *
+ * Shared by an EventWriter and any writers it wraps (e.g. PipelinedEventWriter), so methods are synchronized.
+ */
+public class AdaptiveBatchSize
+{
+    public static final int DEF_BATCH_SIZE = 128;
+    public static final int MIN_BATCH_SIZE = 16;
+    public static final int MAX_BATCH_SIZE = 1024;
+    public static final long DEF_TARGET_MILLIS = 200;
+    public static final int DEF_MAX_BYTES = 256 * 1024;    // binder transactions are limited to 1MB (shared by the process)
+
+    protected int batchSize;
+    protected final int minBatchSize, maxBatchSize;
+    protected final long targetNanos;
+    protected final int maxBytes;
+
+    public AdaptiveBatchSize() {
+        this(DEF_BATCH_SIZE, MIN_BATCH_SIZE, MAX_BATCH_SIZE, DEF_TARGET_MILLIS, DEF_MAX_BYTES);
+    }
+
+    public AdaptiveBatchSize(int initialSize, int minSize, int maxSize, long targetMillis, int maxBytes)
+    {
+        this.minBatchSize = Math.max(1, minSize);
+        this.maxBatchSize = Math.max(minBatchSize, maxSize);
+        this.batchSize = clamp(initialSize, minBatchSize, maxBatchSize);
+        this.targetNanos = targetMillis * 1000000L;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the number of events that should go into the next write
+     */
+    public synchronized int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the maximum (estimated) size of a batch in bytes
+     */
+    public int maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Adjusts the batch size using the time taken by the last write; batches that finish under the target
+     * latency grow (up to 2x), batches that exceed it shrink (down to 1/2).
+     * @param n number of events written
+     * @param nanos time taken (ns)
+     */
+    public synchronized void onBatchWritten(int n, long nanos)
+    {
+        if (n <= 0 || nanos <= 0) {
+            return;
+        }
+        long desired = (n * targetNanos) / nanos;
+        desired = Math.max(batchSize / 2, Math.min(batchSize * 2L, desired));
+        batchSize = clamp((int)((batchSize + desired) / 2), minBatchSize, maxBatchSize);
+    }
+
+    protected static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * @param values event values
+     * @return estimated size of values when written to a parcel (bytes)
+     */
+    public static int estimateSize(@NonNull ContentValues values)
+    {
+        int size = 4;
+        for (String key : values.keySet())
+        {
+            size += estimateSize(key) + 4;
+            Object value = values.get(key);
+            if (value instanceof String) {
+                size += estimateSize((String) value);
+            } else if (value instanceof byte[]) {
+                size += 4 + ((byte[]) value).length;
+            } else size += 8;
+        }
+        return size;
+    }
+
+    protected static int estimateSize(String value) {
+        return EventBatch.estimateSize(value);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task.events;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.provider.CalendarContract;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
+
+import java.util.ArrayList;
+
+/**
+ * BatchEventWriter
+ * Writes events using SuntimesCalendarAdapter.applyBatch (ContentProviderOperations); each batch is
+ * committed in a single provider transaction (rather than one transaction per row).
+ *
+ * A calendar insert (`createCalendar`) is applied in the same batch as the first events (which refer
+ * back to it), so a new calendar and its first events are committed (or rolled back) together.
+ *
+ * The writer fails after the first batch that can't be applied; later events are counted as failed
+ * (rather than written), and `finish` returns false.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class BatchEventWriter extends EventWriter
+{
+    public static final String TAG = "BatchEventWriter";
+
+    protected ArrayList<ContentProviderOperation> pending = new ArrayList<>();
+    protected boolean pendingCalendar = false;     // calendar insert is pending (first operation of the next batch)
+    protected boolean createdCalendar = false;     // calendar was created by this writer (calendarID assigned by the provider)
+    protected boolean failed = false;
+    protected int numFailed = 0;
+
+    public BatchEventWriter(@NonNull SuntimesCalendarAdapter adapter, long calendarID) {
+        super(adapter, calendarID);
+    }
+
+    /**
+     * Queues creation of the calendar; it is created together with the first batch of events (calendarID is assigned once applied).
+     */
+    public void createCalendar(String calendarName, String calendarDisplayName, int calendarColor)
+    {
+        pending.add(0, adapter.newCalendarOperation(calendarName, calendarDisplayName, calendarColor).build());
+        pendingCalendar = true;
+    }
+
+    /**
+     * @return true a batch could not be applied (the writer no longer writes events)
+     */
+    public boolean failed() {
+        return failed;
+    }
+
+    @Override
+    public void write(@NonNull ContentValues[] values) throws SecurityException
+    {
+        if (failed) {
+            numFailed += values.length;
+            return;
+        }
+
+        for (ContentValues v : values)
+        {
+            ContentProviderOperation.Builder op = adapter.newEventOperation(v);
+            if (pendingCalendar) {
+                op.withValueBackReference(CalendarContract.Events.CALENDAR_ID, 0);
+
+            } else if (createdCalendar) {
+                op.withValue(CalendarContract.Events.CALENDAR_ID, calendarID);    // values may have been created before the calendarID was known
+            }
+            pending.add(op.build());
+        }
+        if (!apply(pending, values.length)) {
+            Log.e(TAG, "write: failed to apply batch of " + values.length + " events" + (calendarID == -1 ? " (calendar not created)" : "") + "; remaining events will be dropped.");
+        }
+    }
+
+    /**
+     * Applies the operations as a single batch; on failure the operations are discarded and the writer fails.
+     * @return true the batch was applied, false otherwise
+     */
+    protected boolean apply(ArrayList<ContentProviderOperation> operations, int numEvents) throws SecurityException
+    {
+        if (operations.isEmpty()) {
+            return true;
+        }
+
+        long bench_start = System.nanoTime();
+        ContentProviderResult[] results = adapter.applyBatch(operations);
+        long bench_end = System.nanoTime();
+        operations.clear();
+
+        if (results != null)
+        {
+            if (pendingCalendar)
+            {
+                pendingCalendar = false;
+                if (results.length > 0 && results[0].uri != null)
+                {
+                    calendarID = ContentUris.parseId(results[0].uri);
+                    createdCalendar = true;
+
+                } else {
+                    Log.e(TAG, "apply: calendar insert returned no uri!");
+                    failed = true;
+                    return false;
+                }
+            }
+            onWritten(numEvents, bench_end - bench_start);
+            return true;
+
+        } else {
+            numFailed += numEvents;
+            pendingCalendar = false;    // (rolled back) the calendar wasn't created
+            failed = true;
+            return false;
+        }
+    }
+
+    @Override
+    public boolean finish() throws SecurityException
+    {
+        flush();
+        boolean retValue = !failed && apply(pending, 0);    // a pending calendar insert without events
+        Log.i(TAG, toString() + (numFailed > 0 ? ", " + numFailed + " failed" : ""));
+        return retValue && !failed && (numFailed == 0);
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+        pending.clear();    // (aborted) a pending calendar insert is discarded too
+        pendingCalendar = false;
+    }
+}
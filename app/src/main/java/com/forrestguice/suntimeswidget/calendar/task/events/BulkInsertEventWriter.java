@@ -0,0 +1,57 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task.events;
+
+import android.content.ContentValues;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
+
+/**
+ * BulkInsertEventWriter
+ * Inserts every event using SuntimesCalendarAdapter.createCalendarEvents (bulkInsert).
+ */
+public class BulkInsertEventWriter extends EventWriter
+{
+    public static final String TAG = "BulkInsertEventWriter";
+
+    public BulkInsertEventWriter(@NonNull SuntimesCalendarAdapter adapter, long calendarID) {
+        super(adapter, calendarID);
+    }
+
+    @Override
+    public void write(@NonNull ContentValues[] values) throws SecurityException
+    {
+        if (values.length > 0)
+        {
+            long bench_start = System.nanoTime();
+            adapter.createCalendarEvents(values);
+            onWritten(values.length, System.nanoTime() - bench_start);
+        }
+    }
+
+    @Override
+    public boolean finish() throws SecurityException
+    {
+        flush();
+        Log.i(TAG, toString());
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task.events;
+
+import android.content.ContentValues;
+import android.support.annotation.NonNull;
+
+import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
+import com.forrestguice.suntimeswidget.calendar.core.EventBatch;
+
+/**
+ * EventBuffer
+ * A batch of events (see EventBatch); events are converted to ContentValues only when the batch is
+ * handed to the adapter (see `toContentValues`).
+ *
+ * Events that arrive as ContentValues (e.g. from an add-on provider) are kept as-is.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class EventBuffer extends EventBatch
+{
+    protected ContentValues[] values = null;       // lazy; non-null entries were added as ContentValues
+
+    public EventBuffer() {
+        super();
+    }
+
+    public EventBuffer(int capacity) {
+        super(capacity);
+    }
+
+    /**
+     * @param values event values (as returned by SuntimesCalendarAdapter.createEventContentValues)
+     */
+    public void add(@NonNull ContentValues values)
+    {
+        ensureCapacity(size + 1);
+        if (this.values == null) {
+            this.values = new ContentValues[start.length];
+        }
+        this.values[size] = values;
+        bytes += AdaptiveBatchSize.estimateSize(values);
+        size++;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity)
+    {
+        super.ensureCapacity(capacity);
+        if (values != null && values.length < start.length)
+        {
+            ContentValues[] values0 = new ContentValues[start.length];
+            System.arraycopy(values, 0, values0, 0, size);
+            values = values0;
+        }
+    }
+
+    /**
+     * Creates ContentValues for each event in the buffer.
+     * @param adapter adapter
+     * @param calendarID calendar ID
+     * @param timezone timezone ID (applied to events added as primitives)
+     * @return event values, in the order they were added
+     */
+    public ContentValues[] toContentValues(@NonNull SuntimesCalendarAdapter adapter, long calendarID, String timezone)
+    {
+        ContentValues[] result = new ContentValues[size];
+        for (int i=0; i<size; i++)
+        {
+            result[i] = (values != null && values[i] != null) ? values[i]
+                    : adapter.createEventContentValues(calendarID, strings.get(title[i]), strings.get(description[i]), string(location[i]), timezone, start[i], end[i]);
+        }
+        return result;
+    }
+}
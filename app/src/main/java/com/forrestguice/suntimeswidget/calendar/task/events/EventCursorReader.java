@@ -0,0 +1,141 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task.events;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.provider.CalendarContract;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * EventCursorReader
+ * Reads events from an add-on calendar's content (see ContentProviderCalendar); only whitelisted CalendarContract.Events
+ * columns (see COLUMNS) are copied. Column indexes are resolved (and the schema validated) once per cursor, rather than
+ * copying every column of every row (DatabaseUtils.cursorRowToContentValues) and then checking each row for the
+ * required columns; a cursor that is missing a required column (see REQUIRED) is rejected before any rows are read.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class EventCursorReader
+{
+    protected static final int TYPE_STRING = 0, TYPE_LONG = 1, TYPE_INT = 2;
+
+    public static final String[] COLUMNS = new String[] {
+            CalendarContract.Events.TITLE, CalendarContract.Events.DESCRIPTION, CalendarContract.Events.EVENT_LOCATION,
+            CalendarContract.Events.EVENT_TIMEZONE, CalendarContract.Events.EVENT_END_TIMEZONE,
+            CalendarContract.Events.DTSTART, CalendarContract.Events.DTEND, CalendarContract.Events.DURATION, CalendarContract.Events.ALL_DAY,
+            CalendarContract.Events.RRULE, CalendarContract.Events.RDATE, CalendarContract.Events.EXDATE,
+            CalendarContract.Events.AVAILABILITY, CalendarContract.Events.STATUS
+    };
+    protected static final int[] TYPES = new int[] {
+            TYPE_STRING, TYPE_STRING, TYPE_STRING,
+            TYPE_STRING, TYPE_STRING,
+            TYPE_LONG, TYPE_LONG, TYPE_STRING, TYPE_INT,
+            TYPE_STRING, TYPE_STRING, TYPE_STRING,
+            TYPE_INT, TYPE_INT
+    };
+
+    public static final String[] REQUIRED = new String[] { CalendarContract.Events.TITLE, CalendarContract.Events.DESCRIPTION };
+
+    protected final String[] columns;    // present columns (a subset of COLUMNS)
+    protected final int[] types;
+    protected final int[] index;         // cursor index of each present column
+    protected final String missing;      // required columns that are missing (or null)
+
+    public EventCursorReader(@NonNull Cursor cursor)
+    {
+        ArrayList<Integer> present = new ArrayList<>(COLUMNS.length);
+        int[] cursorIndex = new int[COLUMNS.length];
+        for (int i=0; i<COLUMNS.length; i++)
+        {
+            cursorIndex[i] = cursor.getColumnIndex(COLUMNS[i]);
+            if (cursorIndex[i] >= 0) {
+                present.add(i);
+            }
+        }
+
+        columns = new String[present.size()];
+        types = new int[present.size()];
+        index = new int[present.size()];
+        for (int j=0; j<present.size(); j++)
+        {
+            int i = present.get(j);
+            columns[j] = COLUMNS[i];
+            types[j] = TYPES[i];
+            index[j] = cursorIndex[i];
+        }
+
+        StringBuilder missingColumns = new StringBuilder();
+        for (String column : REQUIRED)
+        {
+            if (cursor.getColumnIndex(column) < 0) {
+                missingColumns.append(missingColumns.length() > 0 ? ", " : "").append(column);
+            }
+        }
+        missing = (missingColumns.length() > 0 ? missingColumns.toString() : null);
+    }
+
+    /**
+     * @return true the cursor has the required columns
+     */
+    public boolean isValid() {
+        return (missing == null);
+    }
+
+    /**
+     * @return required columns that are missing from the cursor (or null if valid)
+     */
+    public String missingColumns() {
+        return missing;
+    }
+
+    /**
+     * @return number of whitelisted columns present in the cursor
+     */
+    public int numColumns() {
+        return columns.length;
+    }
+
+    /**
+     * @param cursor the cursor this reader was created with (positioned on a row)
+     * @param calendarID calendar the event belongs to
+     * @return the row's event values (whitelisted columns only; null fields are kept as null)
+     */
+    public ContentValues read(@NonNull Cursor cursor, long calendarID)
+    {
+        ContentValues values = new ContentValues(columns.length + 1);
+        for (int j=0; j<columns.length; j++)
+        {
+            int i = index[j];
+            if (cursor.isNull(i)) {
+                values.putNull(columns[j]);
+                continue;
+            }
+            switch (types[j])
+            {
+                case TYPE_LONG: values.put(columns[j], cursor.getLong(i)); break;
+                case TYPE_INT: values.put(columns[j], cursor.getInt(i)); break;
+                case TYPE_STRING: default: values.put(columns[j], cursor.getString(i)); break;
+            }
+        }
+        values.put(CalendarContract.Events.CALENDAR_ID, calendarID);
+        return values;
+    }
+}
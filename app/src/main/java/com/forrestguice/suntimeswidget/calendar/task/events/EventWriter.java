@@ -0,0 +1,212 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task.events;
+
+import android.content.ContentValues;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
+import com.forrestguice.suntimeswidget.calendar.core.EventSink;
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
+
+import java.util.TimeZone;
+
+/**
+ * EventWriter
+ * Receives the events generated by a SuntimesCalendar and writes them to the calendar provider.
+ *
+ * Calendars `add` events one at a time; events are buffered (see EventBuffer) and written in batches sized by an
+ * AdaptiveBatchSize. Calendars `finish` the writer after the last event (writing any remaining events), and
+ * always `close` it (in a finally block); a writer that is closed without being finished is aborted (buffered
+ * events are discarded). Writers are the EventSink for the calendars' EventGenerators.
+ *
+ * Writers record insert time, events, batches, and batch bytes to RunMetrics (see `setMetrics`).
+ */
+@SuppressWarnings("Convert2Diamond")
+public abstract class EventWriter implements EventSink
+{
+    protected SuntimesCalendarAdapter adapter;
+    protected long calendarID;
+
+    public EventWriter(@NonNull SuntimesCalendarAdapter adapter, long calendarID)
+    {
+        this.adapter = adapter;
+        this.calendarID = calendarID;
+    }
+
+    public long calendarID() {
+        return calendarID;
+    }
+
+    protected RunMetrics metrics = new RunMetrics("EventWriter");    // unattached; see setMetrics
+    public void setMetrics(@NonNull RunMetrics value) {
+        metrics = value;
+    }
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    protected int numWritten = 0;
+    protected long writeNanos = 0;
+
+    /**
+     * Records throughput (and adjusts the batch size); called by subclasses after each write to the provider.
+     * @param n number of events written
+     * @param nanos time spent writing (ns)
+     */
+    protected void onWritten(int n, long nanos)
+    {
+        numWritten += n;
+        writeNanos += nanos;
+        batchSize.onBatchWritten(n, nanos);
+
+        metrics.addNanos(RunMetrics.INSERT, nanos);
+        if (n > 0) {
+            metrics.addCount(RunMetrics.EVENTS, n);
+            metrics.addCount(RunMetrics.BATCHES, 1);
+        }
+    }
+
+    protected AdaptiveBatchSize batchSize = new AdaptiveBatchSize();
+    public void setBatchSize(@NonNull AdaptiveBatchSize value) {
+        batchSize = value;
+    }
+    public AdaptiveBatchSize getBatchSize() {
+        return batchSize;
+    }
+
+    protected EventBuffer buffer = new EventBuffer();
+
+    /**
+     * Adds an event to the buffer; the buffer is written when it reaches the current batch size (or byte limit).
+     * @param values event values (as returned by SuntimesCalendarAdapter.createEventContentValues)
+     */
+    public void add(@NonNull ContentValues values) throws SecurityException
+    {
+        if (!buffer.isEmpty() && (buffer.bytes() + AdaptiveBatchSize.estimateSize(values)) > batchSize.maxBytes()) {
+            flush();
+        }
+        buffer.add(values);
+        if (buffer.size() >= batchSize.batchSize()) {
+            flush();
+        }
+    }
+
+    protected String timezone = TimeZone.getDefault().getID();
+
+    /**
+     * Adds an event to the buffer (see add(ContentValues)); ContentValues are created when the batch is written.
+     * @param title event title
+     * @param description event description
+     * @param location event location (or null)
+     * @param start event start (ms)
+     * @param end event end (ms); same as start for events without a duration
+     */
+    @Override
+    public void add(String title, String description, @Nullable String location, long start, long end) throws SecurityException
+    {
+        if (!buffer.isEmpty() && (buffer.bytes() + EventBuffer.estimateSize(title, description, location)) > batchSize.maxBytes()) {
+            flush();
+        }
+        buffer.add(title, description, location, start, end);
+        if (buffer.size() >= batchSize.batchSize()) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes any buffered events.
+     */
+    public void flush() throws SecurityException
+    {
+        if (!buffer.isEmpty())
+        {
+            EventBuffer events = buffer;
+            buffer = new EventBuffer(batchSize.batchSize());
+            metrics.addCount(RunMetrics.BATCH_BYTES, events.bytes());
+            write(events);
+        }
+    }
+
+    /**
+     * @param events events to write; converted to ContentValues (see write(ContentValues[]))
+     */
+    public void write(@NonNull EventBuffer events) throws SecurityException
+    {
+        long t0 = System.nanoTime();
+        ContentValues[] values = events.toContentValues(adapter, calendarID, timezone);
+        metrics.addNanos(RunMetrics.BUILD, System.nanoTime() - t0);
+        write(values);
+    }
+
+    /**
+     * @return number of events written to the provider (so far)
+     */
+    public int numWritten() {
+        return numWritten;
+    }
+
+    /**
+     * @return time spent writing to the provider (ms)
+     */
+    public double writeMillis() {
+        return writeNanos / 1000000d;
+    }
+
+    /**
+     * @return events written per second (or 0 if nothing has been written)
+     */
+    public double eventsPerSecond() {
+        return (writeNanos > 0 ? (numWritten / (writeNanos / 1000000000d)) : 0);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": " + numWritten + " events in " + writeMillis() + " ms (" + Math.round(eventsPerSecond()) + " events/s)";
+    }
+
+    /**
+     * @param values events to write (as returned by SuntimesCalendarAdapter.createEventContentValues)
+     */
+    public abstract void write(@NonNull ContentValues[] values) throws SecurityException;
+
+    /**
+     * Called after the last event has been added (and not called if the task was cancelled); writes any buffered events.
+     * @return true writer finished successfully, false otherwise
+     */
+    public boolean finish() throws SecurityException
+    {
+        flush();
+        return true;
+    }
+
+    /**
+     * Releases the writer; called after `finish`, or in its place when a calendar stops early (an error, or the task
+     * was cancelled). Events that are still buffered are discarded. Calling close more than once has no effect.
+     */
+    public void close()
+    {
+        if (!buffer.isEmpty()) {
+            Log.w(getClass().getSimpleName(), "close: discarding " + buffer.size() + " unwritten events.");
+        }
+        buffer = new EventBuffer();
+    }
+}
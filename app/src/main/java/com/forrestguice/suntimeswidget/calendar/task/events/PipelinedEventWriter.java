@@ -0,0 +1,224 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task.events;
+
+import android.content.ContentValues;
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PipelinedEventWriter
+ * Wraps another EventWriter; batches passed to `write` are placed on a bounded queue and written by
+ * a dedicated writer thread, so that event generation (provider reads) and calendar writes overlap.
+ *
+ * `write` blocks while the queue is full (backpressure). The writer thread runs until the writer is
+ * finished (after writing everything queued), or stops (dropping anything still queued) when the task
+ * is cancelled or the writer is closed without being finished (see `close`).
+ */
+@SuppressWarnings("Convert2Diamond")
+public class PipelinedEventWriter extends EventWriter
+{
+    public static final String TAG = "PipelinedEventWriter";
+    public static final int DEFAULT_CAPACITY = 4;      // batches
+    public static final long POLL_MILLIS = 100;
+
+    private static final EventBuffer END_OF_EVENTS = new EventBuffer(1);
+
+    protected final EventWriter writer;
+    protected final AsyncTask<?,?,?> task;
+    protected final BlockingQueue<EventBuffer> queue;
+    protected Thread writerThread = null;
+    protected volatile RuntimeException writerError = null;
+    protected volatile boolean aborted = false;
+    protected int numDropped = 0;
+
+    public PipelinedEventWriter(@NonNull EventWriter writer, @NonNull AsyncTask<?,?,?> task) {
+        this(writer, task, DEFAULT_CAPACITY);
+    }
+
+    public PipelinedEventWriter(@NonNull EventWriter writer, @NonNull AsyncTask<?,?,?> task, int capacity)
+    {
+        super(writer.adapter, writer.calendarID);
+        this.writer = writer;
+        this.task = task;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = writer.getBatchSize();    // batches are sized here, but timed by the wrapped writer
+    }
+
+    @Override
+    public void setBatchSize(@NonNull AdaptiveBatchSize value)
+    {
+        super.setBatchSize(value);
+        writer.setBatchSize(value);
+    }
+
+    @Override
+    public void setMetrics(@NonNull RunMetrics value)
+    {
+        super.setMetrics(value);
+        writer.setMetrics(value);
+    }
+
+    protected void startWriterThread()
+    {
+        writerThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    while (!task.isCancelled() && !aborted)
+                    {
+                        EventBuffer events = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        if (events == END_OF_EVENTS) {
+                            break;
+
+                        } else if (events != null && !aborted) {
+                            writer.write(events);    // ContentValues are created here (on the writer thread)
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Log.w(TAG, "writer thread interrupted; " + e);
+                } catch (RuntimeException e) {
+                    writerError = e;
+                    Log.e(TAG, "writer thread failed; " + e);
+                } finally {
+                    if (task.isCancelled() || aborted) {
+                        queue.clear();
+                    }
+                }
+            }
+        }, TAG + "-" + calendarID);
+        writerThread.start();
+    }
+
+    protected void checkWriterError()
+    {
+        if (writerError != null) {
+            throw writerError;
+        }
+    }
+
+    /**
+     * Queues the batch to be written (blocks while the queue is full).
+     */
+    @Override
+    public void write(@NonNull EventBuffer events) throws SecurityException
+    {
+        if (!events.isEmpty() && !enqueue(events)) {
+            numDropped += events.size();
+        }
+    }
+
+    @Override
+    public void write(@NonNull ContentValues[] values) throws SecurityException
+    {
+        EventBuffer events = new EventBuffer(values.length);
+        for (ContentValues v : values) {
+            events.add(v);
+        }
+        write(events);
+    }
+
+    protected boolean enqueue(@NonNull EventBuffer events)
+    {
+        try {
+            while (!task.isCancelled() && !aborted)
+            {
+                checkWriterError();
+                if (writerThread == null) {
+                    startWriterThread();
+
+                } else if (!writerThread.isAlive()) {
+                    Log.w(TAG, "writer thread has stopped; dropping " + events.size() + " events.");
+                    return false;
+                }
+                if (queue.offer(events, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.w(TAG, "interrupted while queuing events; " + e);
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Waits for queued batches to be written, then finishes the wrapped writer.
+     */
+    @Override
+    public boolean finish() throws SecurityException
+    {
+        flush();
+        if (writerThread != null)
+        {
+            enqueue(END_OF_EVENTS);
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Log.w(TAG, "interrupted while waiting on writer thread; " + e);
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            checkWriterError();
+
+            EventBuffer events;
+            while ((events = queue.poll()) != null && !task.isCancelled())
+            {
+                if (events != END_OF_EVENTS) {
+                    writer.write(events);    // leftovers (the writer thread was interrupted)
+                }
+            }
+        }
+        if (numDropped > 0) {
+            Log.e(TAG, "finish: " + numDropped + " events were dropped.");
+        }
+        return !task.isCancelled() && writer.finish() && (numDropped == 0);
+    }
+
+    /**
+     * Stops the writer thread (if still running; anything still queued is dropped), then closes the wrapped writer.
+     */
+    @Override
+    public void close()
+    {
+        super.close();
+        if (writerThread != null && writerThread.isAlive())
+        {
+            aborted = true;
+            queue.clear();
+            try {
+                writerThread.join();    // waits for a batch that is being written
+            } catch (InterruptedException e) {
+                Log.w(TAG, "interrupted while stopping writer thread; " + e);
+                Thread.currentThread().interrupt();
+            }
+            queue.clear();
+        }
+        writer.close();
+    }
+}
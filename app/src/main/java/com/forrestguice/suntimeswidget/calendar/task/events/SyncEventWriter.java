@@ -0,0 +1,215 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task.events;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.provider.CalendarContract;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calendar.SuntimesCalendarAdapter;
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * SyncEventWriter
+ * Compares generated events against the events already in the calendar; only the differences are
+ * written (new events are inserted, changed events are updated, and events that are no longer
+ * generated are removed when the writer is finished). Inserts and updates are written in batches
+ * (updates are applied together using SuntimesCalendarAdapter.applyBatch).
+ *
+ * Events are matched by start time and title.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class SyncEventWriter extends EventWriter
+{
+    public static final String TAG = "SyncEventWriter";
+
+    public static final String[] EVENT_PROJECTION = new String[] {
+            CalendarContract.Events._ID,                  // 0
+            CalendarContract.Events.DTSTART,              // 1
+            CalendarContract.Events.TITLE,                // 2
+            CalendarContract.Events.DTEND,                // 3
+            CalendarContract.Events.DESCRIPTION,          // 4
+            CalendarContract.Events.EVENT_LOCATION,       // 5
+            CalendarContract.Events.EVENT_TIMEZONE        // 6
+    };
+    public static final String[] COMPARE_COLUMNS = new String[] { CalendarContract.Events.DTEND, CalendarContract.Events.DESCRIPTION, CalendarContract.Events.EVENT_LOCATION, CalendarContract.Events.EVENT_TIMEZONE };
+    public static final int[] COMPARE_INDEX = new int[] { 3, 4, 5, 6 };
+
+    protected HashMap<String, String[]> existing = null;      // key -> [_id, dtend, description, location, timezone]
+    protected ArrayList<Long> duplicates = new ArrayList<>();
+    protected int numInserted = 0, numUpdated = 0, numUnchanged = 0, numRemoved = 0;
+
+    public SyncEventWriter(@NonNull SuntimesCalendarAdapter adapter, long calendarID) {
+        super(adapter, calendarID);
+    }
+
+    protected static String eventKey(Object start, Object title) {
+        return start + "|" + title;
+    }
+
+    protected void loadExistingEvents() throws SecurityException
+    {
+        long bench_start = System.nanoTime();
+        existing = new HashMap<>();
+        Cursor cursor = adapter.queryCalendarEvents(calendarID, EVENT_PROJECTION);
+        if (cursor != null)
+        {
+            while (cursor.moveToNext())
+            {
+                String[] event = new String[1 + COMPARE_INDEX.length];
+                event[0] = cursor.getString(0);
+                for (int i=0; i<COMPARE_INDEX.length; i++) {
+                    event[i + 1] = cursor.getString(COMPARE_INDEX[i]);
+                }
+
+                String key = eventKey(cursor.getLong(1), cursor.getString(2));
+                if (existing.containsKey(key)) {
+                    duplicates.add(cursor.getLong(0));
+                } else existing.put(key, event);
+            }
+            cursor.close();
+        } else {
+            Log.w(TAG, "loadExistingEvents: null cursor; all events will be inserted.");
+        }
+        metrics.addNanos(RunMetrics.QUERY, System.nanoTime() - bench_start);
+    }
+
+    protected static boolean hasChanged(@NonNull ContentValues values, @NonNull String[] event)
+    {
+        for (int i=0; i<COMPARE_COLUMNS.length; i++)
+        {
+            String value = values.getAsString(COMPARE_COLUMNS[i]);
+            if ((value == null) ? (event[i + 1] != null) : !value.equals(event[i + 1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void write(@NonNull ContentValues[] values) throws SecurityException
+    {
+        if (existing == null) {
+            loadExistingEvents();
+        }
+
+        ArrayList<ContentValues> inserts = new ArrayList<>();
+        ArrayList<ContentProviderOperation> updates = new ArrayList<>();
+        for (ContentValues v : values)
+        {
+            String key = eventKey(v.getAsLong(CalendarContract.Events.DTSTART), v.getAsString(CalendarContract.Events.TITLE));
+            String[] event = existing.remove(key);
+            if (event == null) {
+                inserts.add(v);
+
+            } else if (hasChanged(v, event)) {
+                updates.add(adapter.newUpdateEventOperation(Long.parseLong(event[0]), v).build());
+
+            } else {
+                numUnchanged++;
+            }
+        }
+
+        if (updates.size() > 0)
+        {
+            long bench_start = System.nanoTime();
+            ContentProviderResult[] results = adapter.applyBatch(updates);
+            metrics.addNanos(RunMetrics.INSERT, System.nanoTime() - bench_start);
+            int updated = 0;
+            if (results != null)
+            {
+                for (ContentProviderResult result : results)
+                {
+                    if (result.count != null && result.count > 0) {
+                        updated++;
+                    }
+                }
+            }
+            numUpdated += updated;
+            if (updated < updates.size()) {
+                Log.w(TAG, "write: failed to update " + (updates.size() - updated) + " of " + updates.size() + " events");
+            }
+        }
+
+        if (inserts.size() > 0)
+        {
+            long bench_start = System.nanoTime();
+            adapter.createCalendarEvents(inserts.toArray(new ContentValues[0]));
+            onWritten(inserts.size(), System.nanoTime() - bench_start);
+            numInserted += inserts.size();
+        }
+    }
+
+    /**
+     * Removes events that were not generated during this run (and any duplicates).
+     */
+    @Override
+    public boolean finish() throws SecurityException
+    {
+        flush();
+        if (existing == null) {
+            loadExistingEvents();
+        }
+
+        long[] eventIDs = new long[existing.size() + duplicates.size()];
+        int i = 0;
+        for (String[] event : existing.values()) {
+            eventIDs[i++] = Long.parseLong(event[0]);
+        }
+        for (Long eventID : duplicates) {
+            eventIDs[i++] = eventID;
+        }
+
+        int chunk = 128;
+        long bench_start = System.nanoTime();
+        for (int j = 0; j < eventIDs.length; j += chunk)
+        {
+            int k = Math.min(j + chunk, eventIDs.length);
+            long[] ids = new long[k - j];
+            System.arraycopy(eventIDs, j, ids, 0, ids.length);
+            numRemoved += adapter.removeCalendarEvents(calendarID, ids);
+        }
+        metrics.addNanos(RunMetrics.DELETE, System.nanoTime() - bench_start);
+        existing.clear();
+        duplicates.clear();
+
+        Log.i(TAG, "finish: calendar " + calendarID + ": " + numInserted + " inserted, " + numUpdated + " updated, " + numRemoved + " removed, " + numUnchanged + " unchanged.");
+        return true;
+    }
+
+    public int numInserted() {
+        return numInserted;
+    }
+    public int numUpdated() {
+        return numUpdated;
+    }
+    public int numRemoved() {
+        return numRemoved;
+    }
+    public int numUnchanged() {
+        return numUnchanged;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.task.queries;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.forrestguice.suntimeswidget.calendar.core.RowSource;
+
+/**
+ * CursorRowSource
+ * Adapts a Cursor (e.g. as returned by QueryPlanner.query) to the RowSource read by EventGenerators.
+ */
+public class CursorRowSource implements RowSource
+{
+    protected final Cursor cursor;
+
+    public CursorRowSource(@NonNull Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public int getCount() {
+        return cursor.getCount();
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return cursor.moveToFirst();
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return cursor.moveToNext();
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return cursor.moveToPrevious();
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return cursor.isAfterLast();
+    }
+
+    @Override
+    public boolean isLast() {
+        return cursor.isLast();
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return cursor.isNull(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return cursor.getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return cursor.getDouble(column);
+    }
+}
@@ -0,0 +1,340 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.task.queries;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+import com.forrestguice.suntimeswidget.calculator.local.EphemerisTable;
+import com.forrestguice.suntimeswidget.calculator.local.SeasonCalculator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * EphemerisQueries
+ * Answers QUERY_MOONPHASE and QUERY_SEASONS from the bundled EphemerisTable (assets/ephemeris.bin; 1900-2100).
+ * The table is precomputed by the built-in calculator, so it is only used along with it (see SuntimesCalendarTaskBase.setFlagEphemeris).
+ *
+ * The table is memory-mapped directly from the apk (the asset is stored uncompressed; see build.gradle `noCompress`),
+ * or from a copy in the app's files dir if that isn't possible. Results are cursors that read from the mapped table
+ * in place (nothing is copied onto the heap).
+ */
+public class EphemerisQueries
+{
+    public static final String TAG = "EphemerisQueries";
+    public static final String ASSET = "ephemeris.bin";
+
+    private static EphemerisTable table = null;
+    private static boolean tableFailed = false;
+
+    /**
+     * @return the bundled table (mapped once per process), or null if unavailable
+     */
+    @Nullable
+    public static synchronized EphemerisTable open(@NonNull Context context)
+    {
+        if (table == null && !tableFailed)
+        {
+            try {
+                table = mapAsset(context);
+            } catch (IOException e) {
+                Log.w(TAG, "open: unable to map asset directly (" + e + "); using a copy..");
+                try {
+                    table = EphemerisTable.map(copyAsset(context));
+                } catch (IOException e1) {
+                    Log.e(TAG, "open: unable to open " + ASSET + "; " + e1);
+                    tableFailed = true;
+                }
+            }
+            if (table != null) {
+                Log.d(TAG, "open: " + table.startYear() + "-" + table.endYear() + ", " + table.numPhases() + " phases");
+            }
+        }
+        return table;
+    }
+
+    protected static EphemerisTable mapAsset(@NonNull Context context) throws IOException
+    {
+        AssetFileDescriptor fd = context.getAssets().openFd(ASSET);    // throws if the asset is compressed
+        FileInputStream in = fd.createInputStream();
+        try {
+            FileChannel channel = in.getChannel();
+            return new EphemerisTable(channel.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength()));
+        } finally {
+            in.close();
+            fd.close();
+        }
+    }
+
+    protected static File copyAsset(@NonNull Context context) throws IOException
+    {
+        File file = new File(context.getFilesDir(), ASSET);
+        File tmpFile = new File(context.getFilesDir(), ASSET + ".tmp");
+        InputStream in = context.getAssets().open(ASSET);
+        OutputStream out = new FileOutputStream(tmpFile);
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Failed to rename " + tmpFile);
+        }
+        return file;
+    }
+
+    /**
+     * @param table ephemeris table
+     * @param query QUERY_MOONPHASE or QUERY_SEASONS
+     * @param range "[millis]-[millis]" (QUERY_MOONPHASE), "[year]-[year]" (QUERY_SEASONS)
+     * @param projection columns
+     * @return a cursor, or null if the query isn't supported or the range isn't covered by the table
+     */
+    @Nullable
+    public static Cursor query(@NonNull EphemerisTable table, @NonNull String query, @Nullable String range, @NonNull String[] projection)
+    {
+        long[] r = parseRange(range);
+        if (r == null) {
+            return null;
+        }
+
+        if (CalculatorProviderContract.QUERY_MOONPHASE.equals(query) && table.hasPhases(r[0], r[1])) {
+            return new MoonPhaseCursor(table, projection, r[0], r[1]);
+
+        } else if (CalculatorProviderContract.QUERY_SEASONS.equals(query) && r[0] <= Integer.MAX_VALUE && table.hasSeasons((int) r[0], (int) r[1])) {
+            return new SeasonCursor(table, projection, (int) r[0], (int) r[1]);
+
+        } else return null;
+    }
+
+    @Nullable
+    protected static long[] parseRange(@Nullable String range)
+    {
+        if (range == null) {
+            return null;
+        }
+        try {
+            int i = range.indexOf('-', 1);
+            long start = Long.parseLong(i > 0 ? range.substring(0, i) : range);
+            long end = (i > 0 ? Long.parseLong(range.substring(i + 1)) : start);
+            return new long[] { start, Math.max(start, end) };
+
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * TableCursor
+     */
+    protected abstract static class TableCursor extends AbstractCursor
+    {
+        protected final EphemerisTable table;
+        protected final String[] projection;
+
+        public TableCursor(EphemerisTable table, String[] projection)
+        {
+            this.table = table;
+            this.projection = projection;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return projection;
+        }
+
+        @Override
+        public int getType(int column) {
+            return isNull(column) ? Cursor.FIELD_TYPE_NULL : Cursor.FIELD_TYPE_INTEGER;
+        }
+
+        @Override
+        public String getString(int column) {
+            return isNull(column) ? null : Long.toString(getLong(column));
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return (float) getDouble(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            return getLong(column);
+        }
+    }
+
+    /**
+     * MoonPhaseCursor
+     * Rows as returned by the provider; each row contains the next four major phases (following the previous row).
+     */
+    protected static class MoonPhaseCursor extends TableCursor
+    {
+        protected final int first;       // index of the first phase after start
+        protected final int numRows;
+        protected final int[] kinds;     // phase kind for each column (or -1)
+        protected final boolean[] distance;
+
+        public MoonPhaseCursor(EphemerisTable table, String[] projection, long start, long end)
+        {
+            super(table, projection);
+            first = table.nextPhase(start);
+            numRows = table.phaseRows(first, end);
+
+            kinds = new int[projection.length];
+            distance = new boolean[projection.length];
+            for (int i=0; i<projection.length; i++)
+            {
+                switch (projection[i])
+                {
+                    case CalculatorProviderContract.COLUMN_MOON_NEW: case CalculatorProviderContract.COLUMN_MOON_NEW_DISTANCE: kinds[i] = EphemerisTable.NEW; break;
+                    case CalculatorProviderContract.COLUMN_MOON_FIRST: case CalculatorProviderContract.COLUMN_MOON_FIRST_DISTANCE: kinds[i] = EphemerisTable.FIRST_QUARTER; break;
+                    case CalculatorProviderContract.COLUMN_MOON_FULL: case CalculatorProviderContract.COLUMN_MOON_FULL_DISTANCE: kinds[i] = EphemerisTable.FULL; break;
+                    case CalculatorProviderContract.COLUMN_MOON_THIRD: case CalculatorProviderContract.COLUMN_MOON_THIRD_DISTANCE: kinds[i] = EphemerisTable.THIRD_QUARTER; break;
+                    default: kinds[i] = -1; break;
+                }
+                distance[i] = projection[i].endsWith("_distance");
+            }
+        }
+
+        /**
+         * @return index of the phase for this column (in the current row)
+         */
+        protected int phase(int column) {
+            return table.rowPhase(first, mPos, kinds[column]);
+        }
+
+        @Override
+        public int getCount() {
+            return numRows;
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return kinds[column] < 0;
+        }
+
+        @Override
+        public int getType(int column) {
+            return isNull(column) ? Cursor.FIELD_TYPE_NULL : (distance[column] ? Cursor.FIELD_TYPE_FLOAT : Cursor.FIELD_TYPE_INTEGER);
+        }
+
+        @Override
+        public long getLong(int column)
+        {
+            if (isNull(column)) {
+                return 0;
+            }
+            return distance[column] ? (long) table.phaseDistance(phase(column)) : table.phaseTime(phase(column));
+        }
+
+        @Override
+        public double getDouble(int column)
+        {
+            if (isNull(column)) {
+                return 0;
+            }
+            return distance[column] ? table.phaseDistance(phase(column)) : table.phaseTime(phase(column));
+        }
+
+        @Override
+        public String getString(int column) {
+            return isNull(column) ? null : (distance[column] ? Double.toString(getDouble(column)) : Long.toString(getLong(column)));
+        }
+    }
+
+    /**
+     * SeasonCursor
+     * One row per year.
+     */
+    protected static class SeasonCursor extends TableCursor
+    {
+        protected final int startYear, endYear;
+        protected final int[] seasons;    // season for each column (4 for the year, -1 if unknown)
+
+        public SeasonCursor(EphemerisTable table, String[] projection, int startYear, int endYear)
+        {
+            super(table, projection);
+            this.startYear = startYear;
+            this.endYear = endYear;
+
+            seasons = new int[projection.length];
+            for (int i=0; i<projection.length; i++)
+            {
+                switch (projection[i])
+                {
+                    case CalculatorProviderContract.COLUMN_SEASON_VERNAL: seasons[i] = SeasonCalculator.VERNAL; break;
+                    case CalculatorProviderContract.COLUMN_SEASON_SUMMER: seasons[i] = SeasonCalculator.SUMMER; break;
+                    case CalculatorProviderContract.COLUMN_SEASON_AUTUMN: seasons[i] = SeasonCalculator.AUTUMN; break;
+                    case CalculatorProviderContract.COLUMN_SEASON_WINTER: seasons[i] = SeasonCalculator.WINTER; break;
+                    case CalculatorProviderContract.COLUMN_SEASON_YEAR: seasons[i] = 4; break;
+                    default: seasons[i] = -1; break;
+                }
+            }
+        }
+
+        @Override
+        public int getCount() {
+            return endYear - startYear + 1;
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return seasons[column] < 0;
+        }
+
+        @Override
+        public long getLong(int column)
+        {
+            int year = startYear + mPos;
+            switch (seasons[column])
+            {
+                case -1: return 0;
+                case 4: return year;
+                default: return table.season(year, seasons[column]);
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.task.queries;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * ProviderResultCache
+ * An on-disk cache of calculator provider results (see ProviderRows), kept under the app's files dir.
+ *
+ * Entries are keyed on the provider config (location, altitude, timezone, calculator, version codes; see `setConfig`)
+ * plus the (query, range, columns) that produced them; each entry is a single binary file (see ProviderRows.writeTo).
+ * The cache is size-bounded; the least recently used entries are evicted first (see `trim`). The whole cache is
+ * discarded when the config changes (e.g. a new location, or calculator), so entries for an old config don't linger.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class ProviderResultCache
+{
+    public static final String TAG = "ProviderResultCache";
+
+    public static final String DIR_NAME = "provider_cache";
+    public static final String FILE_CONFIG = "config";
+    public static final String FILE_SUFFIX = ".rows";
+
+    public static final int MAGIC = 0x53435243;    // "SCRC"
+    public static final int FORMAT = 1;
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    protected final File dir;
+    protected final long maxBytes;
+    protected String config = "";
+    protected int numHits = 0, numMisses = 0;
+
+    public ProviderResultCache(@NonNull File dir, long maxBytes)
+    {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    public static ProviderResultCache create(@NonNull Context context) {
+        return new ProviderResultCache(new File(context.getFilesDir(), DIR_NAME), DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Sets the provider config that subsequent entries are keyed on; existing entries are discarded if the
+     * config (or provider version code) differs from the config they were written with.
+     * @param providerVersion COLUMN_CONFIG_PROVIDER_VERSION_CODE
+     * @param config e.g. latitude, longitude, altitude, timezone, calculator, ..
+     * @return false if the cache dir is unusable (the cache is disabled)
+     */
+    public synchronized boolean setConfig(int providerVersion, String... config)
+    {
+        this.config = providerVersion + ":" + Arrays.toString(config);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "setConfig: unable to create " + dir);
+            return false;
+        }
+
+        File configFile = new File(dir, FILE_CONFIG);
+        String previous = null;
+        if (configFile.exists())
+        {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new FileInputStream(configFile));
+                previous = in.readUTF();
+            } catch (IOException e) {
+                Log.w(TAG, "setConfig: failed to read " + configFile + ": " + e);
+            } finally {
+                close(in);
+            }
+        }
+
+        if (!this.config.equals(previous))
+        {
+            Log.i(TAG, "setConfig: config changed (" + previous + " -> " + this.config + "); clearing cache..");
+            clear();
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new FileOutputStream(configFile));
+                out.writeUTF(this.config);
+            } catch (IOException e) {
+                Log.w(TAG, "setConfig: failed to write " + configFile + ": " + e);
+                return false;
+            } finally {
+                close(out);
+            }
+        }
+        return true;
+    }
+
+    protected String key(@NonNull String query, @NonNull String range, @NonNull Collection<String> columns) {
+        return config + "|" + query + "/" + range + "|" + new TreeSet<String>(columns);
+    }
+
+    protected File file(@NonNull String key)
+    {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(hash.length * 2 + FILE_SUFFIX.length());
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(dir, name.append(FILE_SUFFIX).toString());
+
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return new File(dir, Integer.toHexString(key.hashCode()) + FILE_SUFFIX);
+        }
+    }
+
+    /**
+     * @return the cached rows, or null if not cached
+     */
+    @Nullable
+    public synchronized ProviderRows get(@NonNull String query, @NonNull String range, @NonNull Collection<String> columns)
+    {
+        String key = key(query, range, columns);
+        File file = file(key);
+        if (!file.exists()) {
+            numMisses++;
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !key.equals(in.readUTF())) {
+                throw new IOException("Stale or mismatched entry");
+            }
+            ProviderRows rows = ProviderRows.readFrom(in);
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            numHits++;
+            return rows;
+
+        } catch (IOException e) {
+            Log.w(TAG, "get: discarding " + file + ": " + e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            numMisses++;
+            return null;
+
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Adds rows to the cache (replacing any existing entry), then evicts entries to stay within the size limit.
+     */
+    public synchronized void put(@NonNull String query, @NonNull String range, @NonNull Collection<String> columns, @NonNull ProviderRows rows)
+    {
+        if (!dir.isDirectory()) {
+            return;
+        }
+
+        String key = key(query, range, columns);
+        File file = file(key);
+        File tmpFile = new File(dir, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(key);
+            rows.writeTo(out);
+            out.close();
+            out = null;
+
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tmpFile);
+            }
+
+        } catch (IOException e) {
+            Log.w(TAG, "put: failed to write " + file + ": " + e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+
+        } finally {
+            close(out);
+        }
+        trim(maxBytes);
+    }
+
+    /**
+     * Evicts least recently used entries until the cache is within the given size.
+     * @param bytes max size (bytes)
+     */
+    public synchronized void trim(long bytes)
+    {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long total = 0;
+        TreeSet<File> entries = new TreeSet<>(new Comparator<File>()
+        {
+            @Override
+            public int compare(File f1, File f2)
+            {
+                int c = Long.valueOf(f1.lastModified()).compareTo(f2.lastModified());
+                return (c != 0 ? c : f1.getName().compareTo(f2.getName()));
+            }
+        });
+        for (File file : files)
+        {
+            if (file.getName().endsWith(FILE_SUFFIX)) {
+                entries.add(file);
+                total += file.length();
+            }
+        }
+
+        for (File file : entries)
+        {
+            if (total <= bytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                Log.d(TAG, "trim: evicted " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear()
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private static void close(@Nullable Closeable closeable)
+    {
+        if (closeable != null)
+        {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.w(TAG, "close: " + e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return TAG + ": " + numHits + " hits, " + numMisses + " misses";
+    }
+}
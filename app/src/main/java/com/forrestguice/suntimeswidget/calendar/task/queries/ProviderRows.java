@@ -0,0 +1,375 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.task.queries;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * ProviderRows
+ * A read-only copy of a provider query result; rows are read once (see `read`) and then shared.
+ * Each reader gets its own Cursor over some subset of the columns (see `newCursor`), so a single
+ * query can serve several calendars (each with its own position and column order).
+ */
+@SuppressWarnings("Convert2Diamond")
+public class ProviderRows
+{
+    protected final String[] columns;
+    protected final HashMap<String, Integer> columnIndex = new HashMap<>();
+    protected final int numRows;
+
+    protected final byte[] types;        // Cursor.FIELD_TYPE_* for each [row * numColumns + column]
+    protected final long[] longs;
+    protected final double[] doubles;
+    protected String[] strings = null;   // lazy; only if the result contains strings
+
+    protected ProviderRows(@NonNull String[] columns, int numRows)
+    {
+        this.columns = columns;
+        this.numRows = numRows;
+        for (int i=0; i<columns.length; i++) {
+            columnIndex.put(columns[i], i);
+        }
+        int n = numRows * columns.length;
+        types = new byte[n];
+        longs = new long[n];
+        doubles = new double[n];
+    }
+
+    /**
+     * Reads all rows from the cursor (and closes it).
+     * @param cursor a query result
+     * @return the rows
+     */
+    public static ProviderRows read(@NonNull Cursor cursor)
+    {
+        ProviderRows rows = new ProviderRows(cursor.getColumnNames(), cursor.getCount());
+        int numColumns = rows.columns.length;
+        int k = 0;
+
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast())
+        {
+            for (int j=0; j<numColumns; j++, k++)
+            {
+                int type = cursor.getType(j);
+                rows.types[k] = (byte) type;
+                switch (type)
+                {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        rows.longs[k] = cursor.getLong(j);
+                        rows.doubles[k] = rows.longs[k];
+                        break;
+
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        rows.doubles[k] = cursor.getDouble(j);
+                        rows.longs[k] = (long) rows.doubles[k];
+                        break;
+
+                    case Cursor.FIELD_TYPE_STRING:
+                        if (rows.strings == null) {
+                            rows.strings = new String[rows.types.length];
+                        }
+                        rows.strings[k] = cursor.getString(j);
+                        break;
+                }
+            }
+            cursor.moveToNext();
+        }
+        cursor.close();
+        return rows;
+    }
+
+    /**
+     * @param columns column names
+     * @param values rows of values (Long, Integer, Double, String, or null) in column order
+     * @return the rows
+     */
+    public static ProviderRows fromRows(@NonNull String[] columns, @NonNull Object[][] values)
+    {
+        ProviderRows rows = new ProviderRows(columns, values.length);
+        int k = 0;
+        for (Object[] row : values)
+        {
+            for (int j=0; j<columns.length; j++, k++)
+            {
+                Object value = (j < row.length ? row[j] : null);
+                if (value == null) {
+                    rows.types[k] = Cursor.FIELD_TYPE_NULL;
+
+                } else if (value instanceof Double || value instanceof Float) {
+                    rows.types[k] = Cursor.FIELD_TYPE_FLOAT;
+                    rows.doubles[k] = ((Number) value).doubleValue();
+                    rows.longs[k] = (long) rows.doubles[k];
+
+                } else if (value instanceof Number) {
+                    rows.types[k] = Cursor.FIELD_TYPE_INTEGER;
+                    rows.longs[k] = ((Number) value).longValue();
+                    rows.doubles[k] = rows.longs[k];
+
+                } else {
+                    rows.types[k] = Cursor.FIELD_TYPE_STRING;
+                    if (rows.strings == null) {
+                        rows.strings = new String[rows.types.length];
+                    }
+                    rows.strings[k] = value.toString();
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @param columns column names
+     * @param values one array of timestamps per column (all the same length)
+     * @param none value to be read as null
+     * @return the rows
+     */
+    public static ProviderRows fromColumns(@NonNull String[] columns, @NonNull long[][] values, long none)
+    {
+        int numRows = (values.length > 0 ? values[0].length : 0);
+        ProviderRows rows = new ProviderRows(columns, numRows);
+        for (int j=0; j<columns.length; j++)
+        {
+            long[] column = values[j];
+            for (int i=0, k=j; i<numRows; i++, k += columns.length)
+            {
+                long value = column[i];
+                rows.types[k] = (byte) (value == none ? Cursor.FIELD_TYPE_NULL : Cursor.FIELD_TYPE_INTEGER);
+                rows.longs[k] = value;
+                rows.doubles[k] = value;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Writes these rows to a stream (see `readFrom`).
+     * Format: numColumns, columns.., numRows, then for each cell: type, value (long, double, or UTF; nothing for null)
+     */
+    public void writeTo(@NonNull DataOutputStream out) throws IOException
+    {
+        out.writeInt(columns.length);
+        for (String column : columns) {
+            out.writeUTF(column);
+        }
+        out.writeInt(numRows);
+        for (int k=0; k<types.length; k++)
+        {
+            out.writeByte(types[k]);
+            switch (types[k])
+            {
+                case Cursor.FIELD_TYPE_INTEGER: out.writeLong(longs[k]); break;
+                case Cursor.FIELD_TYPE_FLOAT: out.writeDouble(doubles[k]); break;
+                case Cursor.FIELD_TYPE_STRING: out.writeUTF(strings[k] != null ? strings[k] : ""); break;
+            }
+        }
+    }
+
+    /**
+     * Reads rows from a stream (see `writeTo`).
+     * @throws IOException if the stream is truncated or malformed
+     */
+    public static ProviderRows readFrom(@NonNull DataInputStream in) throws IOException
+    {
+        int numColumns = in.readInt();
+        if (numColumns < 0 || numColumns > 1024) {
+            throw new IOException("Invalid column count: " + numColumns);
+        }
+        String[] columns = new String[numColumns];
+        for (int j=0; j<numColumns; j++) {
+            columns[j] = in.readUTF();
+        }
+
+        int numRows = in.readInt();
+        if (numRows < 0 || (numColumns > 0 && numRows > (Integer.MAX_VALUE / numColumns))) {
+            throw new IOException("Invalid row count: " + numRows);
+        }
+
+        ProviderRows rows = new ProviderRows(columns, numRows);
+        for (int k=0; k<rows.types.length; k++)
+        {
+            byte type = in.readByte();
+            rows.types[k] = type;
+            switch (type)
+            {
+                case Cursor.FIELD_TYPE_NULL:
+                case Cursor.FIELD_TYPE_BLOB:    // blobs aren't kept (see `read`)
+                    break;
+
+                case Cursor.FIELD_TYPE_INTEGER:
+                    rows.longs[k] = in.readLong();
+                    rows.doubles[k] = rows.longs[k];
+                    break;
+
+                case Cursor.FIELD_TYPE_FLOAT:
+                    rows.doubles[k] = in.readDouble();
+                    rows.longs[k] = (long) rows.doubles[k];
+                    break;
+
+                case Cursor.FIELD_TYPE_STRING:
+                    if (rows.strings == null) {
+                        rows.strings = new String[rows.types.length];
+                    }
+                    rows.strings[k] = in.readUTF();
+                    break;
+
+                default:
+                    throw new IOException("Invalid field type: " + type);
+            }
+        }
+        return rows;
+    }
+
+    public int getCount() {
+        return numRows;
+    }
+
+    public String[] getColumnNames() {
+        return columns;
+    }
+
+    public boolean hasColumns(@NonNull String[] projection)
+    {
+        for (String column : projection) {
+            if (!columnIndex.containsKey(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param projection columns (must be contained by this result; see `hasColumns`)
+     * @return a new cursor over these rows with the given columns (in the given order)
+     */
+    public Cursor newCursor(@NonNull String[] projection)
+    {
+        int[] mapping = new int[projection.length];
+        for (int i=0; i<projection.length; i++)
+        {
+            Integer j = columnIndex.get(projection[i]);
+            if (j == null) {
+                throw new IllegalArgumentException("Column " + projection[i] + " is not in the result!");
+            }
+            mapping[i] = j;
+        }
+        return new RowsCursor(projection, mapping);
+    }
+
+    /**
+     * RowsCursor
+     */
+    protected class RowsCursor extends AbstractCursor
+    {
+        protected final String[] projection;
+        protected final int[] mapping;
+
+        public RowsCursor(String[] projection, int[] mapping)
+        {
+            this.projection = projection;
+            this.mapping = mapping;
+        }
+
+        protected int index(int column) {
+            return (mPos * columns.length) + mapping[column];
+        }
+
+        @Override
+        public int getCount() {
+            return numRows;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return projection;
+        }
+
+        @Override
+        public int getType(int column) {
+            return types[index(column)];
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return (types[index(column)] == Cursor.FIELD_TYPE_NULL);
+        }
+
+        @Override
+        public long getLong(int column)
+        {
+            int k = index(column);
+            if (types[k] == Cursor.FIELD_TYPE_STRING)
+            {
+                try {
+                    return (long) Double.parseDouble(strings[k]);    // as SQLiteCursor does (strings are converted)
+                } catch (NumberFormatException | NullPointerException e) {
+                    return 0;
+                }
+            } else return longs[k];
+        }
+
+        @Override
+        public double getDouble(int column)
+        {
+            int k = index(column);
+            if (types[k] == Cursor.FIELD_TYPE_STRING)
+            {
+                try {
+                    return Double.parseDouble(strings[k]);
+                } catch (NumberFormatException | NullPointerException e) {
+                    return 0;
+                }
+            } else return doubles[k];
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return (float) getDouble(column);
+        }
+
+        @Override
+        public String getString(int column)
+        {
+            int k = index(column);
+            switch (types[k])
+            {
+                case Cursor.FIELD_TYPE_NULL: return null;
+                case Cursor.FIELD_TYPE_INTEGER: return Long.toString(longs[k]);
+                case Cursor.FIELD_TYPE_FLOAT: return Double.toString(doubles[k]);
+                default: return (strings != null ? strings[k] : null);
+            }
+        }
+    }
+}
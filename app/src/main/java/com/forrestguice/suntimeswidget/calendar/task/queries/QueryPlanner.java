@@ -0,0 +1,324 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.task.queries;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+import com.forrestguice.suntimeswidget.calculator.local.EphemerisTable;
+import com.forrestguice.suntimeswidget.calculator.local.LocalCalculator;
+import com.forrestguice.suntimeswidget.calculator.local.SolarKernel;
+import com.forrestguice.suntimeswidget.calendar.task.ProviderLatency;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * QueryPlanner
+ * Plans the CalculatorProviderContract queries made during a task run.
+ *
+ * Before a run, each calendar declares the (query, columns, range) it needs (see `Client`). Declarations
+ * for the same query and range are merged (the projection is widened to the union of the columns), so
+ * each distinct (query, range) is made at most once; the first calendar to ask for it makes the query
+ * and everyone else reads the shared (read-only) result (see ProviderRows).
+ *
+ * Queries that weren't declared still go through the planner (and are shared with later requests for
+ * the same columns); a request for columns missing from an already fetched result is queried directly.
+ *
+ * If a ProviderResultCache is set (see `setCache`), ranged queries are read from the cache when possible
+ * (and provider results are added to it); un-ranged queries (e.g. QUERY_CONFIG) always go to the provider.
+ *
+ * If a LocalCalculator is set (see `setLocalCalculator`), the queries it supports are answered in-process
+ * instead (neither the provider nor the cache are used).
+ *
+ * If an EphemerisTable is set (see `setEphemeris`), QUERY_MOONPHASE and QUERY_SEASONS are read from the table
+ * (when it covers the range) before anything else; these results aren't copied or shared (see EphemerisQueries).
+ */
+@SuppressWarnings("Convert2Diamond")
+public class QueryPlanner
+{
+    public static final String TAG = "QueryPlanner";
+
+    /**
+     * Client
+     * Implemented by calendars that read from the calculator provider.
+     */
+    public interface Client
+    {
+        /**
+         * Called before the run starts; declare each query that will be made (see `declare`).
+         * @param window [start, end] (ms)
+         */
+        void declareQueries(@NonNull QueryPlanner planner, @NonNull long[] window);
+    }
+
+    /**
+     * @param window [start, end] (ms)
+     * @return a timestamp range (e.g. "start-end") as used by QUERY_SUN, QUERY_MOON, and QUERY_MOONPHASE
+     */
+    public static String range(@NonNull long[] window) {
+        return window[0] + "-" + window[1];
+    }
+
+    /**
+     * PlannedQuery
+     */
+    protected static class PlannedQuery
+    {
+        public final String query;
+        public final String range;
+        public final LinkedHashSet<String> columns = new LinkedHashSet<>();
+        public int numRequests = 0;
+
+        public ProviderRows rows = null;
+        public boolean fetched = false;
+
+        public PlannedQuery(@NonNull String query, @Nullable String range)
+        {
+            this.query = query;
+            this.range = range;
+        }
+
+        public Uri uri() {
+            return Uri.parse("content://" + CalculatorProviderContract.AUTHORITY + "/" + query + (range != null ? "/" + range : ""));
+        }
+
+        @Override
+        public String toString() {
+            return query + (range != null ? "/" + range : "") + " " + columns;
+        }
+    }
+
+    protected final HashMap<String, PlannedQuery> planned = new HashMap<>();
+    protected int numQueries = 0;
+
+    protected ProviderResultCache cache = null;
+    public void setCache(@Nullable ProviderResultCache cache) {
+        this.cache = cache;
+    }
+    @Nullable
+    public ProviderResultCache getCache() {
+        return cache;
+    }
+
+    protected ProviderLatency latency = null;
+    public void setLatency(@Nullable ProviderLatency value) {
+        latency = value;
+    }
+    @Nullable
+    public ProviderLatency getLatency() {
+        return latency;
+    }
+
+    /**
+     * Records the latency of a calculator provider query (see ProviderLatency.CALCULATOR_QUERY); also used by
+     * clients that query the provider directly (e.g. MoonDistanceResolver).
+     * @param nanos time spent (ns)
+     */
+    public void recordQuery(long nanos)
+    {
+        ProviderLatency latency = this.latency;
+        if (latency != null) {
+            latency.record(ProviderLatency.CALCULATOR_QUERY, nanos);
+        }
+    }
+
+    protected EphemerisTable ephemeris = null;
+    public void setEphemeris(@Nullable EphemerisTable table) {
+        ephemeris = table;
+    }
+    @Nullable
+    public EphemerisTable getEphemeris() {
+        return ephemeris;
+    }
+
+    protected LocalCalculator localCalculator = null;
+    public void setLocalCalculator(@Nullable LocalCalculator calculator) {
+        localCalculator = calculator;
+    }
+    @Nullable
+    public LocalCalculator getLocalCalculator() {
+        return localCalculator;
+    }
+
+    /**
+     * Answers a query using the local calculator (if set).
+     * @param query e.g. CalculatorProviderContract.QUERY_MOONPOS
+     * @param range e.g. a timestamp, or null
+     * @param projection columns
+     * @return a cursor, or null if there is no local calculator (or it doesn't support the query)
+     */
+    @Nullable
+    public Cursor queryLocal(@NonNull String query, @Nullable String range, @NonNull String[] projection)
+    {
+        ProviderRows rows = queryLocalRows(query, range, projection);
+        return (rows != null ? rows.newCursor(projection) : null);
+    }
+
+    @Nullable
+    protected ProviderRows queryLocalRows(@NonNull String query, @Nullable String range, @NonNull String[] projection)
+    {
+        LocalCalculator calculator = localCalculator;
+        if (calculator != null && LocalCalculator.supports(query))
+        {
+            try {
+                if (CalculatorProviderContract.QUERY_SUN.equals(query)) {
+                    return ProviderRows.fromColumns(projection, calculator.querySunColumns(range, projection), SolarKernel.NONE);
+                } else return ProviderRows.fromRows(projection, calculator.query(query, range, projection));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "queryLocal: failed to query " + query + "/" + range + "; " + e);
+            }
+        }
+        return null;
+    }
+
+    protected static String key(@NonNull String query, @Nullable String range) {
+        return (range != null ? query + "/" + range : query);
+    }
+
+    protected synchronized PlannedQuery plannedQuery(@NonNull String query, @Nullable String range)
+    {
+        String key = key(query, range);
+        PlannedQuery p = planned.get(key);
+        if (p == null) {
+            planned.put(key, p = new PlannedQuery(query, range));
+        }
+        return p;
+    }
+
+    /**
+     * Declares a query (to be made later by `query`).
+     * @param query e.g. CalculatorProviderContract.QUERY_SUN
+     * @param range e.g. range(window), or null
+     * @param columns the columns that will be requested
+     */
+    public void declare(@NonNull String query, @Nullable String range, @NonNull String[] columns)
+    {
+        PlannedQuery p = plannedQuery(query, range);
+        synchronized (p)
+        {
+            if (!p.fetched) {
+                Collections.addAll(p.columns, columns);
+            } else Log.w(TAG, "declare: " + p + " was already fetched; ignoring " + Arrays.toString(columns));
+        }
+    }
+
+    /**
+     * @param resolver content resolver
+     * @param query e.g. CalculatorProviderContract.QUERY_SUN
+     * @param range e.g. range(window), or null
+     * @param projection columns (should have been declared)
+     * @return a cursor containing the requested columns (in the given order), or null if the query failed
+     */
+    @Nullable
+    public Cursor query(@NonNull ContentResolver resolver, @NonNull String query, @Nullable String range, @NonNull String[] projection) throws SecurityException
+    {
+        PlannedQuery p = plannedQuery(query, range);
+        EphemerisTable table = ephemeris;
+        Cursor tableCursor = (table != null ? EphemerisQueries.query(table, query, range, projection) : null);
+        if (tableCursor != null)
+        {
+            synchronized (p) {
+                p.numRequests++;
+            }
+            Log.d(TAG, "query: " + p + " -> " + tableCursor.getCount() + " rows (ephemeris)");
+            return tableCursor;
+        }
+
+        synchronized (p)
+        {
+            p.numRequests++;
+            if (!p.fetched)
+            {
+                Collections.addAll(p.columns, projection);
+                ProviderResultCache cache = (p.range != null ? this.cache : null);
+                p.rows = queryLocalRows(p.query, p.range, p.columns.toArray(new String[0]));
+                if (p.rows != null) {
+                    Log.d(TAG, "query: " + p + " -> " + p.rows.getCount() + " rows (local)");
+
+                } else {
+                    p.rows = (cache != null ? cache.get(p.query, p.range, p.columns) : null);
+                    if (p.rows == null)
+                    {
+                        long bench_start = System.nanoTime();
+                        Cursor cursor = resolver.query(p.uri(), p.columns.toArray(new String[0]), null, null, null);
+                        recordQuery(System.nanoTime() - bench_start);
+                        countQuery();
+                        p.rows = (cursor != null ? ProviderRows.read(cursor) : null);
+                        if (cache != null && p.rows != null && p.rows.getCount() > 0) {
+                            cache.put(p.query, p.range, p.columns, p.rows);
+                        }
+                        Log.d(TAG, "query: " + p + " -> " + (p.rows != null ? p.rows.getCount() + " rows" : "null"));
+                    } else Log.d(TAG, "query: " + p + " -> " + p.rows.getCount() + " rows (cached)");
+                }
+                p.fetched = true;
+            }
+
+            if (p.rows != null && p.rows.hasColumns(projection)) {
+                return p.rows.newCursor(projection);
+            }
+        }
+
+        Cursor local = queryLocal(query, range, projection);
+        if (local != null) {
+            return local;
+        }
+
+        Log.w(TAG, "query: " + Arrays.toString(projection) + " was not planned; querying directly.. " + p.uri());
+        long bench_start = System.nanoTime();
+        Cursor cursor = resolver.query(p.uri(), projection, null, null, null);
+        recordQuery(System.nanoTime() - bench_start);
+        countQuery();
+        return cursor;
+    }
+
+    protected synchronized void countQuery() {
+        numQueries++;
+    }
+
+    /**
+     * @return number of provider queries made (so far)
+     */
+    public synchronized int numQueries() {
+        return numQueries;
+    }
+
+    /**
+     * @return number of requests (served by queries or shared results)
+     */
+    public synchronized int numRequests()
+    {
+        int n = 0;
+        for (PlannedQuery p : planned.values()) {
+            n += p.numRequests;
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return TAG + ": " + numRequests() + " requests, " + numQueries() + " queries" + (cache != null ? "; " + cache : "");
+    }
+}
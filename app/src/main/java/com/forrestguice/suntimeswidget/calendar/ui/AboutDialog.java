@@ -33,6 +33,7 @@ import android.support.design.widget.BottomSheetDialog;
 import android.support.design.widget.BottomSheetDialogFragment;
 import android.support.v4.content.ContextCompat;
 import android.text.method.LinkMovementMethod;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -40,6 +41,13 @@ import android.widget.TextView;
 
 import com.forrestguice.suntimescalendars.BuildConfig;
 import com.forrestguice.suntimescalendars.R;
+import com.forrestguice.suntimeswidget.calendar.core.LatencyHistogram;
+import com.forrestguice.suntimeswidget.calendar.core.RunMetrics;
+import com.forrestguice.suntimeswidget.calendar.task.ProviderLatency;
+import com.forrestguice.suntimeswidget.calendar.task.RunMetricsLog;
+
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.util.Arrays;
 import java.util.Comparator;
@@ -139,6 +147,19 @@ public class AboutDialog extends BottomSheetDialogFragment
         TextView providerView = (TextView) dialogContent.findViewById(R.id.txt_about_provider);
         providerView.setText(Utils.fromHtml(providerVersionString(context)));
 
+        final RunMetricsLog metricsLog = RunMetricsLog.create(context);
+        final ProviderLatency latency = ProviderLatency.load(context);
+        TextView metricsView = (TextView) dialogContent.findViewById(R.id.txt_about_metrics);
+        metricsView.setText(Utils.fromHtml(metricsString(context, metricsLog.lastRun()) + "<br/>" + latencyString(context, latency)));
+        metricsView.setOnClickListener(new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View v)
+            {
+                exportMetrics(metricsLog, latency);
+            }
+        });
+
         TextView urlView = (TextView) dialogContent.findViewById(R.id.txt_about_url);
         urlView.setMovementMethod(LinkMovementMethod.getInstance());
         urlView.setText(Utils.fromHtml(context.getString(R.string.app_url)));
@@ -207,6 +228,73 @@ public class AboutDialog extends BottomSheetDialogFragment
         return context.getString(R.string.app_provider_version, versionString);
     }
 
+    /**
+     * @param json a run (see RunMetricsLog.lastRun), or null
+     * @return a summary of the run (elapsed time, time per phase, counts)
+     */
+    protected String metricsString(@NonNull Context context, @Nullable String json)
+    {
+        String summary = context.getString(R.string.app_metrics_none);
+        if (json != null)
+        {
+            try {
+                JSONObject run = new JSONObject(json);
+                JSONObject phases = run.getJSONObject("phasesMs");
+                JSONObject counts = run.getJSONObject("counts");
+                summary = context.getString(R.string.app_metrics_summary, Math.round(run.optDouble("elapsedMs", -1)),
+                        Math.round(phases.optDouble(RunMetrics.PHASES[RunMetrics.QUERY])), Math.round(phases.optDouble(RunMetrics.PHASES[RunMetrics.CURSOR])),
+                        Math.round(phases.optDouble(RunMetrics.PHASES[RunMetrics.BUILD])), Math.round(phases.optDouble(RunMetrics.PHASES[RunMetrics.INSERT])),
+                        Math.round(phases.optDouble(RunMetrics.PHASES[RunMetrics.DELETE])), Math.round(phases.optDouble(RunMetrics.PHASES[RunMetrics.PROGRESS])),
+                        counts.optLong(RunMetrics.COUNTS[RunMetrics.ROWS]), counts.optLong(RunMetrics.COUNTS[RunMetrics.EVENTS]),
+                        counts.optLong(RunMetrics.COUNTS[RunMetrics.BATCHES]), counts.optLong("bytesPerBatch"), counts.optLong(RunMetrics.COUNTS[RunMetrics.RETRIES]));
+                summary = smallText(summary) + "<br/><u>" + context.getString(R.string.app_metrics_export) + "</u>";
+
+            } catch (JSONException e) {
+                Log.w("AboutDialog", "metricsString: failed to parse run: " + e);
+            }
+        }
+        return context.getString(R.string.app_metrics, summary);
+    }
+
+    /**
+     * @return percentiles (p50, p90, p99, max) of each provider call (accumulated over runs)
+     */
+    protected String latencyString(@NonNull Context context, @NonNull ProviderLatency latency)
+    {
+        StringBuilder lines = new StringBuilder();
+        for (int i=0; i<ProviderLatency.OPERATIONS.length; i++)
+        {
+            LatencyHistogram histogram = latency.histogram(i);
+            if (histogram.count() > 0)
+            {
+                lines.append("<br/>").append(smallText(context.getString(R.string.app_latency_summary, ProviderLatency.OPERATIONS[i],
+                        millisString(histogram.percentile(50)), millisString(histogram.percentile(90)), millisString(histogram.percentile(99)),
+                        millisString(histogram.max()), histogram.count())));
+            }
+        }
+        return context.getString(R.string.app_latency, (lines.length() > 0 ? lines.toString() : context.getString(R.string.app_metrics_none)));
+    }
+
+    protected static String millisString(long nanos) {
+        return Double.toString(Math.round(nanos / 10000d) / 100d);
+    }
+
+    /**
+     * Shares the RunMetricsLog and ProviderLatency (as a JSON object; {"runs": [..], "latency": {..}}).
+     */
+    protected void exportMetrics(@NonNull RunMetricsLog metricsLog, @NonNull ProviderLatency latency)
+    {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("application/json");
+        intent.putExtra(Intent.EXTRA_SUBJECT, "run_metrics.json");
+        intent.putExtra(Intent.EXTRA_TEXT, "{\"runs\":" + metricsLog.toJson() + ",\n\"latency\":" + latency.toJson() + "}");
+
+        Activity activity = getActivity();
+        if (activity != null && intent.resolveActivity(activity.getPackageManager()) != null) {
+            startActivity(Intent.createChooser(intent, getString(R.string.app_metrics_export)));
+        }
+    }
+
     public static String anchor(String url, String text)
     {
         return "<a href=\"" + url + "\">" + text + "</a>";
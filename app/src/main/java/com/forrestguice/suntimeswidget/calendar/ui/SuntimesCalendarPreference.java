@@ -28,6 +28,8 @@ import android.util.TypedValue;
 import android.view.View;
 import android.widget.ImageView;
 
+import com.forrestguice.suntimescalendars.R;
+
 public class SuntimesCalendarPreference extends CheckBoxPreference
 {
     private ImageView icon;
@@ -85,6 +87,17 @@ public class SuntimesCalendarPreference extends CheckBoxPreference
 
     private CharSequence summary0 = null;
     private CharSequence makeSummary(Context context)
+    {
+        CharSequence summary = makeSummary0(context);
+        if (health != null) {
+            return (summary == null || summary.toString().isEmpty())
+                    ? health : context.getString(R.string.summarylist_format, summary, health);
+        } else {
+            return summary;
+        }
+    }
+
+    private CharSequence makeSummary0(Context context)
     {
         if (resID_noteFormat != -1)
         {
@@ -106,6 +119,13 @@ public class SuntimesCalendarPreference extends CheckBoxPreference
         setSummary(makeSummary(getContext()));
     }
 
+    private CharSequence health = null;
+    public void setHealth(CharSequence value)
+    {
+        health = value;
+        setSummary(makeSummary(getContext()));
+    }
+
     private int resID_noteFormat = -1;
     public void setNoteFormat( int stringFormatResourceID ) {
         resID_noteFormat = stringFormatResourceID;
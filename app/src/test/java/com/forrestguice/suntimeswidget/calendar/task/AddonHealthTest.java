@@ -0,0 +1,136 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task;
+
+import org.junit.Test;
+
+import static com.forrestguice.suntimeswidget.calendar.task.AddonHealth.COOLDOWN_MILLIS;
+import static com.forrestguice.suntimeswidget.calendar.task.AddonHealth.FAILURE_THRESHOLD;
+import static com.forrestguice.suntimeswidget.calendar.task.AddonHealth.MAX_COOLDOWN_MILLIS;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class AddonHealthTest
+{
+    public static final long T0 = 1609459200000L;    // 2021-01-01T00:00Z
+
+    @Test
+    public void test_initial()
+    {
+        AddonHealth health = new AddonHealth("calendar");
+        assertFalse(health.isDegraded());
+        assertTrue(health.allowRun(T0));
+        assertEquals(0, health.failures());
+        assertEquals(-1f, health.latencyMillis());
+    }
+
+    @Test
+    public void test_failures_belowThreshold()
+    {
+        AddonHealth health = new AddonHealth("calendar");
+        for (int i=1; i<FAILURE_THRESHOLD; i++)
+        {
+            health.onFailure(T0);
+            assertFalse(health.isDegraded());
+            assertTrue(health.allowRun(T0));
+            assertEquals(0, health.retryAt());
+        }
+    }
+
+    @Test
+    public void test_failures_degraded()
+    {
+        AddonHealth health = new AddonHealth("calendar");
+        for (int i=0; i<FAILURE_THRESHOLD; i++) {
+            health.onFailure(T0);
+        }
+        assertTrue(health.isDegraded());
+        assertEquals(T0 + COOLDOWN_MILLIS, health.retryAt());
+        assertFalse(health.allowRun(T0));
+        assertFalse(health.allowRun(T0 + COOLDOWN_MILLIS - 1));
+        assertTrue(health.allowRun(T0 + COOLDOWN_MILLIS));    // trial run
+    }
+
+    @Test
+    public void test_failures_cooldownDoubles()
+    {
+        AddonHealth health = new AddonHealth("calendar");
+        for (int i=0; i<FAILURE_THRESHOLD; i++) {
+            health.onFailure(T0);
+        }
+
+        long now = T0;
+        long[] expected = new long[] { 2, 4, 8, 16, 24, 24 };    // hours
+        for (long hours : expected)
+        {
+            now = health.retryAt();
+            assertTrue(health.allowRun(now));
+            health.onFailure(now);    // failed trial
+            assertTrue(health.isDegraded());
+            assertEquals(now + hours * COOLDOWN_MILLIS, health.retryAt());
+            assertFalse(health.allowRun(now));
+        }
+
+        for (int i=0; i<100; i++) {
+            health.onFailure(now);
+        }
+        assertEquals(now + MAX_COOLDOWN_MILLIS, health.retryAt());
+        assertEquals(FAILURE_THRESHOLD + expected.length + 100, health.totalFailures());
+    }
+
+    @Test
+    public void test_success_recovers()
+    {
+        AddonHealth health = new AddonHealth("calendar");
+        for (int i=0; i<FAILURE_THRESHOLD + 1; i++) {
+            health.onFailure(T0);
+        }
+        assertTrue(health.isDegraded());
+
+        health.onSuccess(12.5);    // successful trial
+        assertFalse(health.isDegraded());
+        assertTrue(health.allowRun(T0));
+        assertEquals(0, health.failures());
+        assertEquals(0, health.retryAt());
+        assertEquals(FAILURE_THRESHOLD + 1, health.totalFailures());
+        assertEquals(12.5f, health.latencyMillis());
+
+        health.onFailure(T0);    // consecutive failures start over
+        assertFalse(health.isDegraded());
+        assertEquals(1, health.failures());
+    }
+
+    @Test
+    public void test_success_resetsConsecutive()
+    {
+        AddonHealth health = new AddonHealth("calendar");
+        for (int run=0; run<3; run++)
+        {
+            for (int i=1; i<FAILURE_THRESHOLD; i++)
+            {
+                health.onFailure(T0);
+                assertFalse(health.isDegraded());
+            }
+            health.onSuccess(1);
+        }
+        assertTrue(health.allowRun(T0));
+        assertEquals(3 * (FAILURE_THRESHOLD - 1), health.totalFailures());
+    }
+}
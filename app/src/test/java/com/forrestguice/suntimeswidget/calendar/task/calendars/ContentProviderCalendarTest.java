@@ -0,0 +1,112 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.task.calendars;
+
+import org.junit.Test;
+
+import static com.forrestguice.suntimeswidget.calendar.task.calendars.ContentProviderCalendar.CHUNK_MILLIS;
+import static com.forrestguice.suntimeswidget.calendar.task.calendars.ContentProviderCalendar.DAY_MILLIS;
+import static com.forrestguice.suntimeswidget.calendar.task.calendars.ContentProviderCalendar.planChunks;
+import static junit.framework.Assert.assertEquals;
+
+public class ContentProviderCalendarTest
+{
+    public static final long T0 = 1609459200000L;    // 2021-01-01T00:00Z
+
+    /**
+     * Asserts the chunks are consecutive, cover the window, and are at most chunkMillis long.
+     */
+    protected static void assertCovers(long[] window, long chunkMillis, long[][] chunks)
+    {
+        long t = window[0];
+        for (long[] chunk : chunks)
+        {
+            assertEquals(t, chunk[0]);
+            assertEquals(true, chunk[1] > chunk[0]);
+            assertEquals(true, (chunk[1] - chunk[0]) <= chunkMillis);
+            t = chunk[1];
+        }
+        assertEquals(window[1], t);
+    }
+
+    @Test
+    public void test_planChunks_emptyWindow()
+    {
+        assertEquals(0, planChunks(new long[] { T0, T0 }, CHUNK_MILLIS).length);
+        assertEquals(0, planChunks(new long[] { T0, T0 - 1 }, CHUNK_MILLIS).length);
+    }
+
+    @Test
+    public void test_planChunks_shortWindow()
+    {
+        long[] window = new long[] { T0, T0 + 1 };
+        long[][] chunks = planChunks(window, CHUNK_MILLIS);
+        assertEquals(1, chunks.length);
+        assertCovers(window, CHUNK_MILLIS, chunks);
+    }
+
+    @Test
+    public void test_planChunks_exactMultiple()
+    {
+        long[] window = new long[] { T0, T0 + 4 * CHUNK_MILLIS };
+        long[][] chunks = planChunks(window, CHUNK_MILLIS);
+        assertEquals(4, chunks.length);
+        assertCovers(window, CHUNK_MILLIS, chunks);
+        assertEquals(CHUNK_MILLIS, chunks[3][1] - chunks[3][0]);
+    }
+
+    @Test
+    public void test_planChunks_remainder()
+    {
+        long[] window = new long[] { T0, T0 + CHUNK_MILLIS + 1 };
+        long[][] chunks = planChunks(window, CHUNK_MILLIS);
+        assertEquals(2, chunks.length);
+        assertCovers(window, CHUNK_MILLIS, chunks);
+        assertEquals(1, chunks[1][1] - chunks[1][0]);
+
+        window = new long[] { T0, T0 + 365 * DAY_MILLIS };
+        chunks = planChunks(window, CHUNK_MILLIS);
+        assertEquals(53, chunks.length);
+        assertCovers(window, CHUNK_MILLIS, chunks);
+        assertEquals(DAY_MILLIS, chunks[52][1] - chunks[52][0]);
+    }
+
+    @Test
+    public void test_planChunks_minSpan()
+    {
+        long[] window = new long[] { T0, T0 + 2 * DAY_MILLIS };
+        assertEquals(2, planChunks(window, 0).length);
+        assertEquals(2, planChunks(window, -1).length);
+        assertEquals(2, planChunks(window, DAY_MILLIS / 2).length);
+        assertCovers(window, DAY_MILLIS, planChunks(window, 1));
+    }
+
+    @Test
+    public void test_planChunks_longSpan()
+    {
+        long[] window = new long[] { T0, T0 + 3 * 365 * DAY_MILLIS };
+        long[][] chunks = planChunks(window, Long.MAX_VALUE / 2);
+        assertEquals(1, chunks.length);
+        assertCovers(window, Long.MAX_VALUE / 2, chunks);
+
+        chunks = planChunks(window, Long.MAX_VALUE);    // chunk span is declared by the add-on
+        assertEquals(1, chunks.length);
+        assertCovers(window, Long.MAX_VALUE, chunks);
+    }
+}
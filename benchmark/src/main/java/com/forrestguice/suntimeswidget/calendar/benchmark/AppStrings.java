@@ -0,0 +1,104 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.benchmark;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * AppStrings
+ * String resources of the app (app/src/main/res/values/strings.xml, copied into the benchmark's resources at build time),
+ * so benchmarks use the same format strings as the calendars.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class AppStrings
+{
+    public static final String RESOURCE = "/strings.xml";
+
+    private static HashMap<String, String> strings = null;
+
+    /**
+     * @param name string resource name (e.g. "event_at_format")
+     * @return the string (unescaped), as returned by Context.getString
+     * @throws IllegalArgumentException if there is no such string
+     */
+    public static synchronized String get(String name)
+    {
+        if (strings == null) {
+            strings = load();
+        }
+        String value = strings.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing string resource: " + name);
+        }
+        return value;
+    }
+
+    private static HashMap<String, String> load()
+    {
+        HashMap<String, String> retValue = new HashMap<String, String>();
+        InputStream in = AppStrings.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IllegalStateException("Missing " + RESOURCE + " (see benchmark/build.gradle)");
+        }
+        try {
+            NodeList nodes = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in).getElementsByTagName("string");
+            for (int i=0; i<nodes.getLength(); i++)
+            {
+                Element element = (Element) nodes.item(i);
+                retValue.put(element.getAttribute("name"), unescape(element.getTextContent()));
+            }
+            return retValue;
+
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to read " + RESOURCE + ": " + e, e);
+
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) { /* EMPTY */ }
+        }
+    }
+
+    /**
+     * @return the value with resource escapes (\n, \t, \', \", \\) replaced, and surrounding quotes removed
+     */
+    protected static String unescape(String value)
+    {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        StringBuilder retValue = new StringBuilder(value.length());
+        for (int i=0; i<value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length())
+            {
+                char next = value.charAt(++i);
+                retValue.append(next == 'n' ? '\n' : next == 't' ? '\t' : next);
+            } else retValue.append(c);
+        }
+        return retValue.toString();
+    }
+}
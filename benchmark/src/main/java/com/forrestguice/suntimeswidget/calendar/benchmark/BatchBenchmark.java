@@ -0,0 +1,108 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.benchmark;
+
+import com.forrestguice.suntimeswidget.calendar.core.EventBatch;
+import com.forrestguice.suntimeswidget.calendar.core.EventGenerator;
+import com.forrestguice.suntimeswidget.calendar.core.TwilightEvents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchBenchmark
+ * Batch assembly; events are added to EventBatches (the buffer used by EventWriter) of `batchSize`, and each full
+ * batch is drained (its events read back, as when a batch is written).
+ *
+ * ContentValues construction (SuntimesCalendarAdapter.createEventContentValues) can't be measured here; ContentValues is
+ * part of the Android framework (it isn't available off-device). On-device it is included in RunMetrics.BUILD.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark
+{
+    @Param({"1", "5", "20"})
+    public int years;
+
+    @Param({"32", "128", "512"})
+    public int batchSize;
+
+    protected EventBatch events;    // a calendar's worth of events (civil twilight; mid-latitude)
+
+    @Setup
+    public void setup()
+    {
+        events = new EventBatch();
+        TwilightEvents civil = new TwilightEvents("Civil Twilight", "Location", "Sunrise @ Location", "Polar Twilight @ Location", "Sunset @ Location", "White Night @ Location", "Civil Twilight @ Location");
+        civil.generate(SyntheticRows.twilight(SyntheticRows.Site.MIDLATITUDE, years, -6, -0.833), events, EventGenerator.NONE);
+    }
+
+    /**
+     * @return the number of batches
+     */
+    @Benchmark
+    public int assembleBatches(Blackhole blackhole)
+    {
+        int numBatches = 0;
+        EventBatch batch = new EventBatch(batchSize);
+        for (int i=0; i<events.size(); i++)
+        {
+            batch.add(events.title(i), events.description(i), events.location(i), events.start(i), events.end(i));
+            if (batch.size() >= batchSize)
+            {
+                drain(batch, blackhole);
+                batch = new EventBatch(batchSize);
+                numBatches++;
+            }
+        }
+        if (!batch.isEmpty()) {
+            drain(batch, blackhole);
+            numBatches++;
+        }
+        return numBatches;
+    }
+
+    protected static void drain(EventBatch batch, Blackhole blackhole)
+    {
+        blackhole.consume(batch.bytes());
+        for (int i=0; i<batch.size(); i++)
+        {
+            blackhole.consume(batch.title(i));
+            blackhole.consume(batch.description(i));
+            blackhole.consume(batch.location(i));
+            blackhole.consume(batch.start(i));
+            blackhole.consume(batch.end(i));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.benchmark;
+
+import com.forrestguice.suntimeswidget.calendar.core.EventSink;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * BlackholeSink
+ * Consumes events without storing them (isolates generation from batch assembly).
+ */
+public class BlackholeSink implements EventSink
+{
+    protected final Blackhole blackhole;
+
+    public BlackholeSink(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void add(String title, String description, String location, long start, long end)
+    {
+        blackhole.consume(title);
+        blackhole.consume(description);
+        blackhole.consume(location);
+        blackhole.consume(start);
+        blackhole.consume(end);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.benchmark;
+
+import com.forrestguice.suntimeswidget.calendar.core.EventGenerator;
+import com.forrestguice.suntimeswidget.calendar.core.MoonriseEvents;
+import com.forrestguice.suntimeswidget.calendar.core.TwilightEvents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DailyEventsBenchmark
+ * Event generation for the calendars with one row per day (twilight, moonrise); polar sites have runs of null
+ * columns, so they exercise the twilight edge cases (polar twilight, white nights, start-only events).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DailyEventsBenchmark
+{
+    @Param({"POLAR", "MIDLATITUDE", "EQUATORIAL"})
+    public SyntheticRows.Site site;
+
+    @Param({"1", "5", "20"})
+    public int years;
+
+    protected SyntheticRows civilRows, nauticalRows, astroRows, moonRows;
+    protected TwilightEvents civil, nautical, astro;
+    protected MoonriseEvents moonrise;
+
+    @Setup
+    public void setup()
+    {
+        civilRows = SyntheticRows.twilight(site, years, -6, -0.833);
+        nauticalRows = SyntheticRows.twilight(site, years, -12, -6);
+        astroRows = SyntheticRows.twilight(site, years, -18, -12);
+        moonRows = SyntheticRows.moonrise(site, years);
+
+        String location = "Location";
+        civil = new TwilightEvents("Civil Twilight", location, "Sunrise @ Location", "Polar Twilight @ Location", "Sunset @ Location", "White Night @ Location", "Civil Twilight @ Location");
+        nautical = new TwilightEvents("Nautical Twilight", location, "Dawn @ Location", "Civil Night @ Location", "Dusk @ Location", "Nautical Twilight @ Location", "Nautical Twilight @ Location");
+        astro = new TwilightEvents("Astronomical Twilight", location, "Dawn @ Location", "Nautical Night @ Location", "Dusk @ Location", "Astronomical Twilight @ Location", "Astronomical Twilight @ Location");
+        moonrise = new MoonriseEvents(new String[] { "Moonrise", "Moonset" }, new String[] { "Moonrise @ Location", "Moonset @ Location" }, location);
+    }
+
+    @Benchmark
+    public boolean twilightCivil(Blackhole blackhole) {
+        return civil.generate(civilRows.reset(), new BlackholeSink(blackhole), EventGenerator.NONE);
+    }
+
+    @Benchmark
+    public boolean twilightNautical(Blackhole blackhole) {
+        return nautical.generate(nauticalRows.reset(), new BlackholeSink(blackhole), EventGenerator.NONE);
+    }
+
+    @Benchmark
+    public boolean twilightAstro(Blackhole blackhole) {
+        return astro.generate(astroRows.reset(), new BlackholeSink(blackhole), EventGenerator.NONE);
+    }
+
+    @Benchmark
+    public boolean moonrise(Blackhole blackhole) {
+        return moonrise.generate(moonRows.reset(), new BlackholeSink(blackhole), EventGenerator.NONE);
+    }
+}
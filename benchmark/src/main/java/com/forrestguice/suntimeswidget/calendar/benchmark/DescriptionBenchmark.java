@@ -0,0 +1,116 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.benchmark;
+
+import com.forrestguice.suntimeswidget.calendar.core.DescriptionTemplate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DescriptionBenchmark
+ * Event description formatting; DescriptionTemplate (as used by the calendars) vs String.format (as done
+ * by Context.getString(resID, args) for every event).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptionBenchmark
+{
+    public static final String EVENT_AT_FORMAT = AppStrings.get("event_at_format");                // R.string.event_at_format
+    public static final String EVENT_DISTANCE_FORMAT = AppStrings.get("event_distance_format");    // R.string.event_distance_format
+
+    /**
+     * @return a distance template (EVENT_DISTANCE_FORMAT) for each title
+     */
+    public static DescriptionTemplate[][] distanceTemplates(String[][] titles)
+    {
+        DescriptionTemplate[][] retValue = new DescriptionTemplate[titles.length][];
+        for (int i=0; i<titles.length; i++)
+        {
+            retValue[i] = new DescriptionTemplate[titles[i].length];
+            for (int j=0; j<titles[i].length; j++) {
+                retValue[i][j] = new DescriptionTemplate(String.format(EVENT_DISTANCE_FORMAT, titles[i][j], DescriptionTemplate.VALUE));
+            }
+        }
+        return retValue;
+    }
+
+    protected static final String LABEL = "Full Moon", LOCATION = "Location";
+
+    protected DescriptionTemplate atTemplate, distanceTemplate;
+    protected DecimalFormat distanceFormat;
+    protected double[] distances;
+    protected int i = 0;
+
+    @Setup
+    public void setup()
+    {
+        atTemplate = new DescriptionTemplate(String.format(EVENT_AT_FORMAT, LABEL, DescriptionTemplate.VALUE));
+        distanceTemplate = new DescriptionTemplate(String.format(EVENT_DISTANCE_FORMAT, LABEL, DescriptionTemplate.VALUE));
+
+        distanceFormat = new DecimalFormat();
+        distanceFormat.setMinimumFractionDigits(0);
+        distanceFormat.setMaximumFractionDigits(2);
+
+        distances = new double[256];
+        for (int j=0; j<distances.length; j++) {
+            distances[j] = SyntheticRows.distance(SyntheticRows.NEW_MOON + j * SyntheticRows.DAY_MILLIS) + (j / 100d);
+        }
+    }
+
+    protected double nextDistance()
+    {
+        i = (i + 1) & (distances.length - 1);
+        return distances[i];
+    }
+
+    @Benchmark
+    public String locationStringFormat() {
+        return String.format(EVENT_AT_FORMAT, LABEL, LOCATION);
+    }
+
+    @Benchmark
+    public String locationTemplate() {
+        return atTemplate.resolve(LOCATION);
+    }
+
+    @Benchmark
+    public String distanceStringFormat() {
+        return String.format(EVENT_DISTANCE_FORMAT, LABEL, distanceFormat.format(nextDistance()));
+    }
+
+    @Benchmark
+    public String distanceTemplate() {
+        return distanceTemplate.format(distanceFormat.format(nextDistance()));
+    }
+}
@@ -0,0 +1,103 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.benchmark;
+
+import com.forrestguice.suntimeswidget.calendar.core.EventGenerator;
+import com.forrestguice.suntimeswidget.calendar.core.MoonApsisEvents;
+import com.forrestguice.suntimeswidget.calendar.core.MoonPhaseEvents;
+import com.forrestguice.suntimeswidget.calendar.core.SeasonEvents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PeriodicEventsBenchmark
+ * Event generation for the calendars that don't depend on location (moon phases, apsides, seasons).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PeriodicEventsBenchmark
+{
+    @Param({"1", "5", "20"})
+    public int years;
+
+    protected SyntheticRows phaseRows, seasonRows;
+    protected TreeSet<Long> apogees, perigees;
+    protected MoonPhaseEvents phases;
+    protected MoonApsisEvents apsides;
+    protected SeasonEvents seasons;
+
+    protected static final MoonApsisEvents.Distances distances = new MoonApsisEvents.Distances()
+    {
+        @Override
+        public double distance(long time) {
+            return SyntheticRows.distance(time);
+        }
+    };
+
+    @Setup
+    public void setup()
+    {
+        phaseRows = SyntheticRows.moonPhases(years);
+        seasonRows = SyntheticRows.seasons(years);
+        apogees = SyntheticRows.apsides(years, true);
+        perigees = SyntheticRows.apsides(years, false);
+
+        String[][] phaseTitles = new String[][] {
+                { "New Moon", "First Quarter", "Full Moon", "Third Quarter" },
+                { "Super New Moon", "First Quarter", "Super Full Moon", "Third Quarter" },
+                { "Micro New Moon", "First Quarter", "Micro Full Moon", "Third Quarter" } };
+        phases = new MoonPhaseEvents(phaseTitles, DescriptionBenchmark.distanceTemplates(phaseTitles));
+
+        String[] apsisTitles = new String[] { "Apogee", "Perigee" };
+        apsides = new MoonApsisEvents(apsisTitles, DescriptionBenchmark.distanceTemplates(new String[][] { apsisTitles })[0]);
+        seasons = new SeasonEvents(new String[] { "Spring Equinox", "Summer Solstice", "Autumn Equinox", "Winter Solstice" });
+    }
+
+    @Benchmark
+    public boolean moonPhases(Blackhole blackhole) {
+        return phases.generate(phaseRows.reset(), new BlackholeSink(blackhole), EventGenerator.NONE);
+    }
+
+    @Benchmark
+    public boolean moonApsides(Blackhole blackhole) {
+        return apsides.generate(apogees, perigees, distances, new BlackholeSink(blackhole), EventGenerator.NONE);
+    }
+
+    @Benchmark
+    public boolean seasons(Blackhole blackhole) {
+        return seasons.generate(seasonRows.reset(), new BlackholeSink(blackhole), EventGenerator.NONE);
+    }
+}
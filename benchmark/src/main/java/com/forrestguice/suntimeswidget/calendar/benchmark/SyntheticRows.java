@@ -0,0 +1,254 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.benchmark;
+
+import com.forrestguice.suntimeswidget.calendar.core.RowSource;
+
+import java.util.TreeSet;
+
+/**
+ * SyntheticRows
+ * Provider-like rows for the benchmarks. Times follow simple models (a sinusoidal declination, fixed
+ * lunar periods) rather than the calculator; they are close enough to produce the same shape of data,
+ * including the null columns of polar days and nights (which drive the twilight edge cases).
+ */
+public class SyntheticRows implements RowSource
+{
+    public static final long NULL = Long.MIN_VALUE;
+    public static final long START = 1609459200000L;    // 2021-01-01T00:00Z
+    public static final long HOUR_MILLIS = 60 * 60 * 1000;
+    public static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    public static final double SYNODIC_MONTH_DAYS = 29.530589;
+    public static final double ANOMALISTIC_MONTH_DAYS = 27.554551;
+    public static final double TROPICAL_YEAR_DAYS = 365.2422;
+    public static final long NEW_MOON = 1610514000000L;    // 2021-01-13T05:00Z
+
+    /**
+     * Site
+     */
+    public enum Site
+    {
+        POLAR(78.2), MIDLATITUDE(45.0), EQUATORIAL(0.0);
+
+        public final double latitude;
+        Site(double latitude) {
+            this.latitude = latitude;
+        }
+    }
+
+    protected final int numColumns, numRows;
+    protected final long[] values;    // [row * numColumns + column]; NULL for null
+    protected int position = 0;
+
+    public SyntheticRows(int numColumns, int numRows)
+    {
+        this.numColumns = numColumns;
+        this.numRows = numRows;
+        this.values = new long[numColumns * numRows];
+    }
+
+    protected void set(int row, int column, long value) {
+        values[row * numColumns + column] = value;
+    }
+
+    /**
+     * @param site location
+     * @param years window length
+     * @param outer twilight angle (e.g. -6 for civil twilight)
+     * @param inner twilight angle (e.g. -0.833 for sunrise/sunset)
+     * @return rows of [rise-start, rise-end, set-start, set-end]; one row per day
+     */
+    public static SyntheticRows twilight(Site site, int years, double outer, double inner)
+    {
+        int numDays = days(years);
+        SyntheticRows rows = new SyntheticRows(4, numDays);
+        for (int d=0; d<numDays; d++)
+        {
+            double declination = -23.44 * Math.cos(2 * Math.PI * (d + 10) / 365.25);
+            long noon = START + d * DAY_MILLIS + 12 * HOUR_MILLIS;
+            long h0 = hourAngleMillis(site.latitude, declination, outer);
+            long h1 = hourAngleMillis(site.latitude, declination, inner);
+            rows.set(d, 0, (h0 != NULL ? noon - h0 : NULL));
+            rows.set(d, 1, (h1 != NULL ? noon - h1 : NULL));
+            rows.set(d, 2, (h1 != NULL ? noon + h1 : NULL));
+            rows.set(d, 3, (h0 != NULL ? noon + h0 : NULL));
+        }
+        return rows;
+    }
+
+    /**
+     * @return rows of [moonrise, moonset]; one row per day (events falling outside the day are null)
+     */
+    public static SyntheticRows moonrise(Site site, int years)
+    {
+        long lunarDay = (long)(DAY_MILLIS * SYNODIC_MONTH_DAYS / (SYNODIC_MONTH_DAYS - 1));
+        int numDays = days(years);
+        SyntheticRows rows = new SyntheticRows(2, numDays);
+        for (int d=0; d<numDays; d++)
+        {
+            long dayStart = START + d * DAY_MILLIS;
+            long transit = dayStart + ((12 * HOUR_MILLIS + d * (lunarDay - DAY_MILLIS)) % DAY_MILLIS);
+            double declination = 28.5 * Math.sin(2 * Math.PI * d / 27.321582);
+            long h = hourAngleMillis(site.latitude, declination, 0.125);
+            long rise = (h != NULL ? transit - h : NULL);
+            if (rise != NULL && rise < dayStart) {
+                rise += lunarDay;    // next moonrise
+            }
+            long set = (h != NULL ? transit + h : NULL);
+            if (set != NULL && set >= dayStart + DAY_MILLIS) {
+                set -= lunarDay;     // previous moonset
+            }
+            rows.set(d, 0, (rise != NULL && rise < dayStart + DAY_MILLIS ? rise : NULL));    // one day each month has no moonrise (or moonset)
+            rows.set(d, 1, (set != NULL && set >= dayStart ? set : NULL));
+        }
+        return rows;
+    }
+
+    /**
+     * @return rows of [new, first, full, third, new-distance, full-distance]; one row per lunar cycle
+     */
+    public static SyntheticRows moonPhases(int years)
+    {
+        int numRows = (int) Math.ceil(days(years) / SYNODIC_MONTH_DAYS);
+        SyntheticRows rows = new SyntheticRows(6, numRows);
+        for (int i=0; i<numRows; i++)
+        {
+            for (int j=0; j<4; j++) {
+                rows.set(i, j, NEW_MOON + (long)((i + j / 4d) * SYNODIC_MONTH_DAYS * DAY_MILLIS));
+            }
+            rows.set(i, 4, distance(rows.values[i * 6]));
+            rows.set(i, 5, distance(rows.values[i * 6 + 2]));
+        }
+        return rows;
+    }
+
+    /**
+     * @return rows of [vernal, summer, autumn, winter]; one row per year
+     */
+    public static SyntheticRows seasons(int years)
+    {
+        long vernal = 1616219820000L;    // 2021-03-20T09:37Z
+        SyntheticRows rows = new SyntheticRows(4, years);
+        for (int i=0; i<years; i++) {
+            for (int j=0; j<4; j++) {
+                rows.set(i, j, vernal + (long)((i + j / 4d) * TROPICAL_YEAR_DAYS * DAY_MILLIS));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @param apogee true apogees, false perigees
+     * @return apsis times (ms)
+     */
+    public static TreeSet<Long> apsides(int years, boolean apogee)
+    {
+        TreeSet<Long> times = new TreeSet<>();
+        long first = NEW_MOON + (apogee ? 0 : (long)(ANOMALISTIC_MONTH_DAYS * DAY_MILLIS / 2));
+        int n = (int) Math.ceil(days(years) / ANOMALISTIC_MONTH_DAYS);
+        for (int i=0; i<n; i++) {
+            times.add(first + (long)(i * ANOMALISTIC_MONTH_DAYS * DAY_MILLIS));
+        }
+        return times;
+    }
+
+    /**
+     * @return moon distance (km) at time
+     */
+    public static long distance(long time) {
+        return Math.round(384400 + 21000 * Math.cos(2 * Math.PI * (time - NEW_MOON) / (ANOMALISTIC_MONTH_DAYS * DAY_MILLIS)));
+    }
+
+    protected static int days(int years) {
+        return (int) Math.round(years * 365.25);
+    }
+
+    /**
+     * @return half the time above the given altitude (ms), or NULL if it is always above (or below)
+     */
+    protected static long hourAngleMillis(double latitude, double declination, double altitude)
+    {
+        double phi = Math.toRadians(latitude), delta = Math.toRadians(declination);
+        double cosH = (Math.sin(Math.toRadians(altitude)) - Math.sin(phi) * Math.sin(delta)) / (Math.cos(phi) * Math.cos(delta));
+        if (cosH < -1 || cosH > 1) {
+            return NULL;
+        }
+        return (long)(Math.toDegrees(Math.acos(cosH)) / 360d * DAY_MILLIS);
+    }
+
+    /**
+     * Moves back to the first row (so the same rows can be read again).
+     */
+    public SyntheticRows reset()
+    {
+        position = 0;
+        return this;
+    }
+
+    @Override
+    public int getCount() {
+        return numRows;
+    }
+
+    @Override
+    public boolean moveToFirst()
+    {
+        position = 0;
+        return (numRows > 0);
+    }
+
+    @Override
+    public boolean moveToNext()
+    {
+        position = Math.min(position + 1, numRows);
+        return (position < numRows);
+    }
+
+    @Override
+    public boolean moveToPrevious()
+    {
+        position = Math.max(position - 1, -1);
+        return (position >= 0);
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return (position >= numRows);
+    }
+
+    @Override
+    public boolean isLast() {
+        return (position == numRows - 1);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return (values[position * numColumns + column] == NULL);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return values[position * numColumns + column];
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return values[position * numColumns + column];
+    }
+}
@@ -0,0 +1,144 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calculator.local;
+
+/**
+ * AstroTime
+ * Time scales and angle helpers shared by the local calculator (see Meeus, "Astronomical Algorithms" 2nd ed.).
+ */
+public class AstroTime
+{
+    public static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000d;
+    public static final double JD_UNIX_EPOCH = 2440587.5;    // 1970-01-01T00:00Z
+    public static final double JD_J2000 = 2451545.0;         // 2000-01-01T12:00 TT
+
+    public static final double DEG = Math.PI / 180d;
+
+    /**
+     * @param millis timestamp (UT)
+     * @return julian day (UT)
+     */
+    public static double julianDay(long millis) {
+        return JD_UNIX_EPOCH + (millis / MILLIS_PER_DAY);
+    }
+
+    /**
+     * @param jd julian day (UT)
+     * @return timestamp (ms)
+     */
+    public static long millis(double jd) {
+        return Math.round((jd - JD_UNIX_EPOCH) * MILLIS_PER_DAY);
+    }
+
+    /**
+     * @param jd julian day (UT)
+     * @return julian ephemeris day (TT)
+     */
+    public static double julianEphemerisDay(double jd) {
+        return jd + (deltaT(jd) / 86400d);
+    }
+
+    /**
+     * @param jde julian ephemeris day (TT)
+     * @return julian centuries since J2000
+     */
+    public static double centuries(double jde) {
+        return (jde - JD_J2000) / 36525d;
+    }
+
+    /**
+     * deltaT = TT - UT (seconds); polynomial approximations by Espenak and Meeus (valid 1900-2150, extrapolated beyond).
+     * @param jd julian day (UT)
+     */
+    public static double deltaT(double jd)
+    {
+        double y = 2000 + (jd - JD_J2000) / 365.25;
+        if (y < 1900) {
+            double u = (y - 1820) / 100d;
+            return -20 + 32 * u * u;
+
+        } else if (y < 1920) {
+            double t = y - 1900;
+            return -2.79 + 1.494119 * t - 0.0598939 * t * t + 0.0061966 * t * t * t - 0.000197 * t * t * t * t;
+
+        } else if (y < 1941) {
+            double t = y - 1920;
+            return 21.20 + 0.84493 * t - 0.076100 * t * t + 0.0020936 * t * t * t;
+
+        } else if (y < 1961) {
+            double t = y - 1950;
+            return 29.07 + 0.407 * t - t * t / 233 + t * t * t / 2547;
+
+        } else if (y < 1986) {
+            double t = y - 1975;
+            return 45.45 + 1.067 * t - t * t / 260 - t * t * t / 718;
+
+        } else if (y < 2005) {
+            double t = y - 2000;
+            return 63.86 + 0.3345 * t - 0.060374 * t * t + 0.0017275 * t * t * t + 0.000651814 * t * t * t * t + 0.00002373599 * t * t * t * t * t;
+
+        } else if (y < 2050) {
+            double t = y - 2000;
+            return 62.92 + 0.32217 * t + 0.005589 * t * t;
+
+        } else if (y < 2150) {
+            double u = (y - 1820) / 100d;
+            return -20 + 32 * u * u - 0.5628 * (2150 - y);
+
+        } else {
+            double u = (y - 1820) / 100d;
+            return -20 + 32 * u * u;
+        }
+    }
+
+    /**
+     * @param jd julian day (UT)
+     * @return greenwich mean sidereal time (degrees)
+     */
+    public static double siderealTime(double jd)
+    {
+        double t = (jd - JD_J2000) / 36525d;
+        return normalize(280.46061837 + 360.98564736629 * (jd - JD_J2000) + 0.000387933 * t * t - (t * t * t / 38710000d));
+    }
+
+    /**
+     * @param t julian centuries since J2000
+     * @return mean obliquity of the ecliptic (degrees)
+     */
+    public static double obliquity(double t) {
+        return 23.439291111 - (46.8150 * t + 0.00059 * t * t - 0.001813 * t * t * t) / 3600d;
+    }
+
+    /**
+     * @return angle in [0, 360)
+     */
+    public static double normalize(double degrees)
+    {
+        double d = degrees % 360d;
+        return (d < 0 ? d + 360d : d);
+    }
+
+    /**
+     * @return angle in [-180, 180)
+     */
+    public static double normalize180(double degrees)
+    {
+        double d = normalize(degrees);
+        return (d >= 180d ? d - 360d : d);
+    }
+}
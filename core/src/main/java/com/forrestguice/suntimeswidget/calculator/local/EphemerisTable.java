@@ -0,0 +1,271 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * EphemerisTable
+ * Precomputed major moon phases (with distances) and equinox/solstice times; these are the same for every location,
+ * so a table covering a large span (e.g. 1900-2100) can answer QUERY_MOONPHASE and QUERY_SEASONS without calculation.
+ *
+ * The table is read in place from a (memory-mapped) ByteBuffer; lookups are binary searches over fixed-size records.
+ * Format (big-endian): header [magic, format, startYear, endYear, numPhases, firstPhase, seasonsOffset, phasesOffset],
+ * seasons [(endYear - startYear + 1) * 4 longs], phases [numPhases * (long time, float distance)]. Phases are consecutive
+ * (new, first quarter, full, third quarter, new, ..), starting with `firstPhase`.
+ */
+public class EphemerisTable
+{
+    public static final int MAGIC = 0x53434550;    // "SCEP"
+    public static final int FORMAT = 1;
+    public static final int HEADER_BYTES = 8 * 4;
+    public static final int SEASON_BYTES = 4 * 8;
+    public static final int PHASE_BYTES = 8 + 4;
+
+    public static final int NEW = 0, FIRST_QUARTER = 1, FULL = 2, THIRD_QUARTER = 3;
+
+    protected final ByteBuffer buffer;
+    protected final int startYear, endYear;
+    protected final int numPhases, firstPhase;
+    protected final int seasonsOffset, phasesOffset;
+
+    /**
+     * @param buffer table contents (e.g. see `map`); read-only access, the buffer's position is not used
+     * @throws IOException if the buffer doesn't contain a valid table
+     */
+    public EphemerisTable(ByteBuffer buffer) throws IOException
+    {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an ephemeris table");
+        }
+        if (buffer.getInt(4) != FORMAT) {
+            throw new IOException("Unsupported ephemeris table format: " + buffer.getInt(4));
+        }
+        startYear = buffer.getInt(8);
+        endYear = buffer.getInt(12);
+        numPhases = buffer.getInt(16);
+        firstPhase = buffer.getInt(20);
+        seasonsOffset = buffer.getInt(24);
+        phasesOffset = buffer.getInt(28);
+
+        long size = phasesOffset + (long) numPhases * PHASE_BYTES;
+        if (endYear < startYear || numPhases <= 0 || seasonsOffset + (long) (endYear - startYear + 1) * SEASON_BYTES > buffer.capacity() || size > buffer.capacity()) {
+            throw new IOException("Truncated ephemeris table");
+        }
+    }
+
+    /**
+     * Maps a table file (read-only).
+     */
+    public static EphemerisTable map(File file) throws IOException
+    {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return new EphemerisTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            in.close();    // the mapping remains valid after the channel is closed
+        }
+    }
+
+    public int startYear() {
+        return startYear;
+    }
+
+    public int endYear() {
+        return endYear;
+    }
+
+    public int numPhases() {
+        return numPhases;
+    }
+
+    /**
+     * @param year startYear..endYear
+     * @param season SeasonCalculator.VERNAL, SUMMER, AUTUMN, WINTER
+     * @return timestamp (ms)
+     */
+    public long season(int year, int season) {
+        return buffer.getLong(seasonsOffset + (year - startYear) * SEASON_BYTES + season * 8);
+    }
+
+    public boolean hasSeasons(int fromYear, int toYear) {
+        return fromYear >= startYear && toYear <= endYear;
+    }
+
+    /**
+     * @param i phase index [0, numPhases)
+     * @return timestamp (ms)
+     */
+    public long phaseTime(int i) {
+        return buffer.getLong(phasesOffset + i * PHASE_BYTES);
+    }
+
+    /**
+     * @param i phase index [0, numPhases)
+     * @return moon distance (km)
+     */
+    public double phaseDistance(int i) {
+        return buffer.getFloat(phasesOffset + i * PHASE_BYTES + 8);
+    }
+
+    /**
+     * @param i phase index [0, numPhases)
+     * @return NEW, FIRST_QUARTER, FULL, THIRD_QUARTER
+     */
+    public int phaseKind(int i) {
+        return (firstPhase + i) % 4;
+    }
+
+    /**
+     * @param time timestamp (ms)
+     * @return index of the first phase after time (numPhases if none)
+     */
+    public int nextPhase(long time)
+    {
+        int lo = 0, hi = numPhases;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (phaseTime(mid) <= time) {
+                lo = mid + 1;
+            } else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @return true if every phase following start (until end) is in the table
+     */
+    public boolean hasPhases(long start, long end) {
+        return numPhases >= 4 && start >= phaseTime(0) && end + PHASES_MARGIN_MILLIS < phaseTime(numPhases - 1);
+    }
+    protected static final long PHASES_MARGIN_MILLIS = 32 * 24 * 60 * 60 * 1000L;    // a row starting before `end` extends up to a month past it
+
+    /**
+     * QUERY_MOONPHASE rows (as returned by the provider) read from the table; each row contains the next four phases
+     * (following the previous row), and rows continue until the last phase of a row is at (or after) `end`.
+     * @param first index of the first phase (see `nextPhase`)
+     * @param end timestamp (ms); see `hasPhases`
+     * @return number of rows
+     */
+    public int phaseRows(int first, long end)
+    {
+        int n = 1;
+        while (phaseTime(first + (4 * n) - 1) + 60 * 1000 < end) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * @param first index of the first phase (see `phaseRows`)
+     * @param row row [0, phaseRows)
+     * @param kind NEW, FIRST_QUARTER, FULL, THIRD_QUARTER
+     * @return index of the row's phase of the given kind
+     */
+    public int rowPhase(int first, int row, int kind)
+    {
+        int i = first + (4 * row);
+        return i + ((kind - phaseKind(i) + 4) % 4);
+    }
+
+    /**
+     * Computes a table (see LunarCalculator, SeasonCalculator).
+     * @param out output stream (not closed)
+     * @param startYear first year (UTC)
+     * @param endYear last year (inclusive)
+     */
+    public static void generate(OutputStream out, int startYear, int endYear) throws IOException
+    {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(startYear, Calendar.JANUARY, 1);
+        long start = calendar.getTimeInMillis();
+        calendar.set(endYear + 1, Calendar.JANUARY, 1);
+        long end = calendar.getTimeInMillis();
+
+        int firstPhase = NEW;
+        long first = Long.MAX_VALUE;
+        for (int kind=0; kind<4; kind++)
+        {
+            long t = LunarCalculator.nextPhase(kind * 90, start);
+            if (t < first) {
+                first = t;
+                firstPhase = kind;
+            }
+        }
+
+        ArrayList<Long> phases = new ArrayList<>();
+        int kind = firstPhase;
+        long t = start;
+        while (t < end)
+        {
+            t = LunarCalculator.nextPhase(kind * 90, t);
+            phases.add(t);
+            kind = (kind + 1) % 4;
+        }
+
+        int numYears = endYear - startYear + 1;
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT);
+        data.writeInt(startYear);
+        data.writeInt(endYear);
+        data.writeInt(phases.size());
+        data.writeInt(firstPhase);
+        data.writeInt(HEADER_BYTES);
+        data.writeInt(HEADER_BYTES + numYears * SEASON_BYTES);
+
+        for (int year = startYear; year <= endYear; year++) {
+            for (int season = 0; season < 4; season++) {
+                data.writeLong(SeasonCalculator.season(year, season));
+            }
+        }
+        for (Long time : phases) {
+            data.writeLong(time);
+            data.writeFloat((float) LunarCalculator.distance(time));
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes a table to a file; e.g. `EphemerisTable.generate(new File("ephemeris.bin"), 1900, 2100)`.
+     */
+    public static void generate(File file, int startYear, int endYear) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            generate(out, startYear, endYear);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,440 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static com.forrestguice.suntimeswidget.calculator.local.AstroTime.DEG;
+
+/**
+ * LocalCalculator
+ * An in-process alternative to the Suntimes calculator provider; answers the same queries (QUERY_SUN, QUERY_SUNPOS,
+ * QUERY_MOON, QUERY_MOONPOS, QUERY_MOONPHASE, QUERY_SEASONS) with the same columns (see CalculatorProviderContract),
+ * so results can be read by the same code. Plain Java (no Android dependencies).
+ *
+ * Ranges follow the provider's URIs: null (now), "[millis]", or "[millis]-[millis]" ("[year]-[year]" for QUERY_SEASONS).
+ * QUERY_SUN and QUERY_MOON return one row per day (days starting within the range; in the calculator's timezone);
+ * QUERY_SUN is computed for all days at once (see SolarKernel), and is also available as columns (see `querySunColumns`).
+ */
+public class LocalCalculator
+{
+    public static final String NAME = "local";
+
+    protected final double latitude, longitude, altitude;
+    protected final TimeZone timezone;
+    protected final SolarCalculator sun;
+    protected final SolarKernel kernel;
+    protected final LunarCalculator moon;
+
+    /**
+     * @param latitude degrees (north positive)
+     * @param longitude degrees (east positive)
+     * @param altitude meters
+     * @param timezone used to divide the range into days
+     */
+    public LocalCalculator(double latitude, double longitude, double altitude, TimeZone timezone)
+    {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        this.timezone = timezone;
+        this.sun = new SolarCalculator(latitude, longitude, altitude);
+        this.kernel = new SolarKernel(latitude, longitude);
+        this.moon = new LunarCalculator(latitude, longitude);
+    }
+
+    /**
+     * @param latitude COLUMN_CONFIG_LATITUDE
+     * @param longitude COLUMN_CONFIG_LONGITUDE
+     * @param altitude COLUMN_CONFIG_ALTITUDE (may be empty)
+     * @param timezone COLUMN_CONFIG_TIMEZONE (may be empty; defaults to the system timezone)
+     * @throws NumberFormatException if latitude or longitude are invalid
+     */
+    public static LocalCalculator fromConfig(String latitude, String longitude, String altitude, String timezone)
+    {
+        double alt = 0;
+        try {
+            alt = (altitude != null && !altitude.isEmpty()) ? Double.parseDouble(altitude) : 0;
+        } catch (NumberFormatException e) { /* EMPTY */ }
+        TimeZone tz = (timezone != null && !timezone.isEmpty()) ? TimeZone.getTimeZone(timezone) : TimeZone.getDefault();
+        return new LocalCalculator(Double.parseDouble(latitude), Double.parseDouble(longitude), alt, tz);
+    }
+
+    public TimeZone getTimeZone() {
+        return timezone;
+    }
+
+    /**
+     * @param query e.g. CalculatorProviderContract.QUERY_SUN
+     * @return true if the query is answered by this calculator
+     */
+    public static boolean supports(String query)
+    {
+        return CalculatorProviderContract.QUERY_SUN.equals(query) || CalculatorProviderContract.QUERY_SUNPOS.equals(query)
+                || CalculatorProviderContract.QUERY_MOON.equals(query) || CalculatorProviderContract.QUERY_MOONPOS.equals(query)
+                || CalculatorProviderContract.QUERY_MOONPHASE.equals(query) || CalculatorProviderContract.QUERY_SEASONS.equals(query);
+    }
+
+    /**
+     * @param query e.g. CalculatorProviderContract.QUERY_SUN
+     * @param range null, "[millis]", or "[millis]-[millis]"
+     * @param projection columns (null for the query's default projection)
+     * @return rows of values (Long, Double, Integer, or null) in projection order
+     * @throws IllegalArgumentException if the query isn't supported or the range is malformed
+     */
+    public Object[][] query(String query, String range, String[] projection)
+    {
+        if (!supports(query)) {
+            throw new IllegalArgumentException("Unsupported query: " + query);
+        }
+        if (projection == null) {
+            projection = defaultProjection(query);
+        }
+
+        boolean seasons = CalculatorProviderContract.QUERY_SEASONS.equals(query);
+        long[] r = parseRange(range, seasons);
+        ArrayList<Object[]> rows = new ArrayList<>();
+
+        if (CalculatorProviderContract.QUERY_SUN.equals(query)) {
+            querySun(r, projection, rows);
+
+        } else if (CalculatorProviderContract.QUERY_MOON.equals(query)) {
+            queryMoon(r, projection, rows);
+
+        } else if (CalculatorProviderContract.QUERY_MOONPHASE.equals(query)) {
+            queryMoonPhases(r, projection, rows);
+
+        } else if (seasons) {
+            for (int year = (int) r[0]; year <= r[1]; year++) {
+                rows.add(seasonRow(year, projection));
+            }
+
+        } else if (CalculatorProviderContract.QUERY_MOONPOS.equals(query)) {
+            rows.add(moonPositionRow(r[0], projection));
+
+        } else {
+            rows.add(sunPositionRow(r[0], projection));
+        }
+        return rows.toArray(new Object[0][]);
+    }
+
+    public static String[] defaultProjection(String query)
+    {
+        switch (query)
+        {
+            case CalculatorProviderContract.QUERY_SUN: return CalculatorProviderContract.QUERY_SUN_PROJECTION;
+            case CalculatorProviderContract.QUERY_SUNPOS: return CalculatorProviderContract.QUERY_SUNPOS_PROJECTION;
+            case CalculatorProviderContract.QUERY_MOON: return CalculatorProviderContract.QUERY_MOON_PROJECTION;
+            case CalculatorProviderContract.QUERY_MOONPOS: return CalculatorProviderContract.QUERY_MOONPOS_PROJECTION;
+            case CalculatorProviderContract.QUERY_MOONPHASE: return CalculatorProviderContract.QUERY_MOONPHASE_PROJECTION;
+            case CalculatorProviderContract.QUERY_SEASONS: return CalculatorProviderContract.QUERY_SEASONS_PROJECTION;
+            default: return new String[0];
+        }
+    }
+
+    /**
+     * @return [start, end]; timestamps (or years if `years`)
+     */
+    protected long[] parseRange(String range, boolean years)
+    {
+        long now = System.currentTimeMillis();
+        if (range == null || range.isEmpty())
+        {
+            if (years) {
+                Calendar calendar = Calendar.getInstance(timezone);
+                calendar.setTimeInMillis(now);
+                return new long[] { calendar.get(Calendar.YEAR), calendar.get(Calendar.YEAR) };
+            } else return new long[] { now, now };
+        }
+
+        try {
+            int i = range.indexOf('-', 1);
+            long start = Long.parseLong(i > 0 ? range.substring(0, i) : range);
+            long end = (i > 0 ? Long.parseLong(range.substring(i + 1)) : start);
+            return new long[] { start, Math.max(start, end) };
+
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid range: " + range);
+        }
+    }
+
+    /**
+     * @return local midnight at or before the given time
+     */
+    protected Calendar startOfDay(long millis)
+    {
+        Calendar day = Calendar.getInstance(timezone);
+        day.setTimeInMillis(millis);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        return day;
+    }
+
+    protected static Long timestamp(long millis) {
+        return (millis != SolarCalculator.NONE ? millis : null);
+    }
+
+    protected void querySun(long[] range, String[] projection, ArrayList<Object[]> rows)
+    {
+        long[][] columns = querySunColumns(range, projection);
+        int numDays = (columns.length > 0 ? columns[0].length : 0);
+        for (int i=0; i<numDays; i++)
+        {
+            Object[] row = new Object[projection.length];
+            for (int j=0; j<projection.length; j++) {
+                row[j] = timestamp(columns[j][i]);
+            }
+            rows.add(row);
+        }
+    }
+
+    /**
+     * Columnar QUERY_SUN; computed in one pass by SolarKernel.
+     * @param range null, "[millis]", or "[millis]-[millis]"
+     * @param projection QUERY_SUN columns
+     * @return one long[] per projection column (by day); SolarKernel.NONE where the event doesn't occur (or the column is unknown)
+     */
+    public long[][] querySunColumns(String range, String[] projection) {
+        return querySunColumns(parseRange(range, false), projection);
+    }
+
+    protected long[][] querySunColumns(long[] range, String[] projection)
+    {
+        Calendar day = startOfDay(range[0]);
+        day.set(Calendar.HOUR_OF_DAY, 12);
+        long firstNoon = day.getTimeInMillis();
+        int numDays = 0;
+        do {
+            numDays++;
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        } while (day.getTimeInMillis() - 12 * 60 * 60 * 1000L < range[1]);
+
+        double[] angles = new double[projection.length];
+        int[] angleIndex = new int[projection.length];
+        boolean[] rising = new boolean[projection.length];
+        int numAngles = 0;
+        for (int j=0; j<projection.length; j++)
+        {
+            angleIndex[j] = -1;
+            double angle = sunAngle(projection[j]);
+            if (!Double.isNaN(angle))
+            {
+                rising[j] = sunRising(projection[j]);
+                for (int a=0; a<numAngles; a++) {
+                    if (angles[a] == angle) {
+                        angleIndex[j] = a;
+                    }
+                }
+                if (angleIndex[j] < 0) {
+                    angles[numAngles] = angle;
+                    angleIndex[j] = numAngles++;
+                }
+            }
+        }
+
+        double[] blockAngles = new double[numAngles];
+        System.arraycopy(angles, 0, blockAngles, 0, numAngles);
+        SolarKernel.Block block = kernel.compute(firstNoon, numDays, blockAngles);
+
+        long[][] columns = new long[projection.length][];
+        for (int j=0; j<projection.length; j++)
+        {
+            if (CalculatorProviderContract.COLUMN_SUN_NOON.equals(projection[j])) {
+                columns[j] = block.noon;
+
+            } else if (angleIndex[j] >= 0) {
+                columns[j] = (rising[j] ? block.rising[angleIndex[j]] : block.setting[angleIndex[j]]);
+
+            } else {
+                columns[j] = new long[numDays];
+                Arrays.fill(columns[j], SolarKernel.NONE);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return the altitude angle of a QUERY_SUN column (degrees), or NaN
+     */
+    protected double sunAngle(String column)
+    {
+        switch (column)
+        {
+            case CalculatorProviderContract.COLUMN_SUN_ACTUAL_RISE: case CalculatorProviderContract.COLUMN_SUN_ACTUAL_SET: return sun.actualAngle();
+            case CalculatorProviderContract.COLUMN_SUN_CIVIL_RISE: case CalculatorProviderContract.COLUMN_SUN_CIVIL_SET: return SolarCalculator.ANGLE_CIVIL;
+            case CalculatorProviderContract.COLUMN_SUN_NAUTICAL_RISE: case CalculatorProviderContract.COLUMN_SUN_NAUTICAL_SET: return SolarCalculator.ANGLE_NAUTICAL;
+            case CalculatorProviderContract.COLUMN_SUN_ASTRO_RISE: case CalculatorProviderContract.COLUMN_SUN_ASTRO_SET: return SolarCalculator.ANGLE_ASTRONOMICAL;
+            case CalculatorProviderContract.COLUMN_SUN_GOLDEN_MORNING: case CalculatorProviderContract.COLUMN_SUN_GOLDEN_EVENING: return SolarCalculator.ANGLE_GOLDEN;
+            case CalculatorProviderContract.COLUMN_SUN_BLUE8_RISE: case CalculatorProviderContract.COLUMN_SUN_BLUE8_SET: return SolarCalculator.ANGLE_BLUE8;
+            case CalculatorProviderContract.COLUMN_SUN_BLUE4_RISE: case CalculatorProviderContract.COLUMN_SUN_BLUE4_SET: return SolarCalculator.ANGLE_BLUE4;
+            default: return Double.NaN;
+        }
+    }
+
+    protected static boolean sunRising(String column)
+    {
+        switch (column)
+        {
+            case CalculatorProviderContract.COLUMN_SUN_ACTUAL_RISE: case CalculatorProviderContract.COLUMN_SUN_CIVIL_RISE:
+            case CalculatorProviderContract.COLUMN_SUN_NAUTICAL_RISE: case CalculatorProviderContract.COLUMN_SUN_ASTRO_RISE:
+            case CalculatorProviderContract.COLUMN_SUN_GOLDEN_MORNING: case CalculatorProviderContract.COLUMN_SUN_BLUE8_RISE:
+            case CalculatorProviderContract.COLUMN_SUN_BLUE4_RISE:
+                return true;
+            default: return false;
+        }
+    }
+
+    protected void queryMoon(long[] range, String[] projection, ArrayList<Object[]> rows)
+    {
+        Calendar day = startOfDay(range[0]);
+        do {
+            long dayStart = day.getTimeInMillis();
+            day.add(Calendar.DAY_OF_YEAR, 1);
+            long[] riseSet = moon.riseSet(dayStart, day.getTimeInMillis());
+
+            Object[] row = new Object[projection.length];
+            for (int i=0; i<projection.length; i++)
+            {
+                switch (projection[i])
+                {
+                    case CalculatorProviderContract.COLUMN_MOON_RISE: row[i] = timestamp(riseSet[0]); break;
+                    case CalculatorProviderContract.COLUMN_MOON_SET: row[i] = timestamp(riseSet[1]); break;
+                }
+            }
+            rows.add(row);
+        } while (day.getTimeInMillis() < range[1]);
+    }
+
+    /**
+     * Each row contains the next four major phases (after the previous row).
+     */
+    protected void queryMoonPhases(long[] range, String[] projection, ArrayList<Object[]> rows)
+    {
+        long t = range[0];
+        do {
+            long[] phases = new long[4];
+            long last = t;
+            for (int j=0; j<4; j++) {
+                phases[j] = LunarCalculator.nextPhase(j * 90, t);
+                last = Math.max(last, phases[j]);
+            }
+
+            Object[] row = new Object[projection.length];
+            for (int i=0; i<projection.length; i++)
+            {
+                switch (projection[i])
+                {
+                    case CalculatorProviderContract.COLUMN_MOON_NEW: row[i] = phases[0]; break;
+                    case CalculatorProviderContract.COLUMN_MOON_FIRST: row[i] = phases[1]; break;
+                    case CalculatorProviderContract.COLUMN_MOON_FULL: row[i] = phases[2]; break;
+                    case CalculatorProviderContract.COLUMN_MOON_THIRD: row[i] = phases[3]; break;
+                    case CalculatorProviderContract.COLUMN_MOON_NEW_DISTANCE: row[i] = LunarCalculator.distance(phases[0]); break;
+                    case CalculatorProviderContract.COLUMN_MOON_FIRST_DISTANCE: row[i] = LunarCalculator.distance(phases[1]); break;
+                    case CalculatorProviderContract.COLUMN_MOON_FULL_DISTANCE: row[i] = LunarCalculator.distance(phases[2]); break;
+                    case CalculatorProviderContract.COLUMN_MOON_THIRD_DISTANCE: row[i] = LunarCalculator.distance(phases[3]); break;
+                }
+            }
+            rows.add(row);
+            t = last + 60 * 1000;
+        } while (t < range[1]);
+    }
+
+    protected Object[] seasonRow(int year, String[] projection)
+    {
+        Object[] row = new Object[projection.length];
+        for (int i=0; i<projection.length; i++)
+        {
+            switch (projection[i])
+            {
+                case CalculatorProviderContract.COLUMN_SEASON_YEAR: row[i] = year; break;
+                case CalculatorProviderContract.COLUMN_SEASON_VERNAL: row[i] = SeasonCalculator.season(year, SeasonCalculator.VERNAL); break;
+                case CalculatorProviderContract.COLUMN_SEASON_SUMMER: row[i] = SeasonCalculator.season(year, SeasonCalculator.SUMMER); break;
+                case CalculatorProviderContract.COLUMN_SEASON_AUTUMN: row[i] = SeasonCalculator.season(year, SeasonCalculator.AUTUMN); break;
+                case CalculatorProviderContract.COLUMN_SEASON_WINTER: row[i] = SeasonCalculator.season(year, SeasonCalculator.WINTER); break;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * @return [azimuth (degrees from north), altitude (degrees)]
+     */
+    protected double[] horizontal(double jd, double rightAscension, double declination)
+    {
+        double h = (AstroTime.siderealTime(jd) + longitude - rightAscension) * DEG;
+        double phi = latitude * DEG;
+        double delta = declination * DEG;
+        double azimuth = Math.atan2(Math.sin(h), Math.cos(h) * Math.sin(phi) - Math.tan(delta) * Math.cos(phi)) / DEG + 180;
+        double alt = Math.asin(Math.sin(phi) * Math.sin(delta) + Math.cos(phi) * Math.cos(delta) * Math.cos(h)) / DEG;
+        return new double[] { AstroTime.normalize(azimuth), alt };
+    }
+
+    protected Object[] moonPositionRow(long time, String[] projection)
+    {
+        double jd = AstroTime.julianDay(time);
+        LunarCalculator.Position p = LunarCalculator.position(jd, new LunarCalculator.Position());
+        double[] horizontal = horizontal(jd, p.rightAscension, p.declination);
+
+        Object[] row = new Object[projection.length];
+        for (int i=0; i<projection.length; i++)
+        {
+            switch (projection[i])
+            {
+                case CalculatorProviderContract.COLUMN_MOONPOS_AZ: row[i] = horizontal[0]; break;
+                case CalculatorProviderContract.COLUMN_MOONPOS_ALT: row[i] = horizontal[1]; break;
+                case CalculatorProviderContract.COLUMN_MOONPOS_RA: row[i] = p.rightAscension; break;
+                case CalculatorProviderContract.COLUMN_MOONPOS_DEC: row[i] = p.declination; break;
+                case CalculatorProviderContract.COLUMN_MOONPOS_DISTANCE: row[i] = p.distance; break;
+                case CalculatorProviderContract.COLUMN_MOONPOS_ILLUMINATION: row[i] = LunarCalculator.illumination(time); break;
+                case CalculatorProviderContract.COLUMN_MOONPOS_DATE: row[i] = time; break;
+                case CalculatorProviderContract.COLUMN_MOONPOS_APOGEE: row[i] = timestamp(LunarCalculator.nextApsis(time, true)); break;
+                case CalculatorProviderContract.COLUMN_MOONPOS_PERIGEE: row[i] = timestamp(LunarCalculator.nextApsis(time, false)); break;
+            }
+        }
+        return row;
+    }
+
+    protected Object[] sunPositionRow(long time, String[] projection)
+    {
+        double jd = AstroTime.julianDay(time);
+        SolarCalculator.Position p = SolarCalculator.position(jd, new SolarCalculator.Position());
+        double[] horizontal = horizontal(jd, p.rightAscension, p.declination);
+
+        Object[] row = new Object[projection.length];
+        for (int i=0; i<projection.length; i++)
+        {
+            switch (projection[i])
+            {
+                case CalculatorProviderContract.COLUMN_SUNPOS_AZ: row[i] = horizontal[0]; break;
+                case CalculatorProviderContract.COLUMN_SUNPOS_ALT: row[i] = horizontal[1]; break;
+                case CalculatorProviderContract.COLUMN_SUNPOS_RA: row[i] = p.rightAscension; break;
+                case CalculatorProviderContract.COLUMN_SUNPOS_DEC: row[i] = p.declination; break;
+                case CalculatorProviderContract.COLUMN_SUNPOS_ISDAY: row[i] = (horizontal[1] > sun.actualAngle() ? 1 : 0); break;
+                case CalculatorProviderContract.COLUMN_SUNPOS_DATE: row[i] = time; break;
+            }
+        }
+        return row;
+    }
+}
@@ -0,0 +1,299 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import static com.forrestguice.suntimeswidget.calculator.local.AstroTime.DEG;
+
+/**
+ * LunarCalculator
+ * Lunar position (Meeus ch.47; the distance and longitude series in full, the latitude series truncated), and
+ * the times derived from it: rise/set, major phases, and apsides (perigee, apogee).
+ */
+public class LunarCalculator
+{
+    public static final double SYNODIC_MONTH_DAYS = 29.530588853;
+    public static final double EARTH_RADIUS_KM = 6378.14;
+
+    public static final long NONE = -1;
+    protected static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    protected static final long SECOND_MILLIS = 1000L;
+
+    /* Meeus table 47.A; D, M, M', F, sum l (1e-6 degrees), sum r (1e-3 km) */
+    protected static final int[][] TERMS_LR = {
+            {0, 0, 1, 0, 6288774, -20905355}, {2, 0, -1, 0, 1274027, -3699111}, {2, 0, 0, 0, 658314, -2955968}, {0, 0, 2, 0, 213618, -569925},
+            {0, 1, 0, 0, -185116, 48888}, {0, 0, 0, 2, -114332, -3149}, {2, 0, -2, 0, 58793, 246158}, {2, -1, -1, 0, 57066, -152138},
+            {2, 0, 1, 0, 53322, -170733}, {2, -1, 0, 0, 45758, -204586}, {0, 1, -1, 0, -40923, -129620}, {1, 0, 0, 0, -34720, 108743},
+            {0, 1, 1, 0, -30383, 104755}, {2, 0, 0, -2, 15327, 10321}, {0, 0, 1, 2, -12528, 0}, {0, 0, 1, -2, 10980, 79661},
+            {4, 0, -1, 0, 10675, -34782}, {0, 0, 3, 0, 10034, -23210}, {4, 0, -2, 0, 8548, -21636}, {2, 1, -1, 0, -7888, 24208},
+            {2, 1, 0, 0, -6766, 30824}, {1, 0, -1, 0, -5163, -8379}, {1, 1, 0, 0, 4987, -16675}, {2, -1, 1, 0, 4036, -12831},
+            {2, 0, 2, 0, 3994, -10445}, {4, 0, 0, 0, 3861, -11650}, {2, 0, -3, 0, 3665, 14403}, {0, 1, -2, 0, -2689, -7003},
+            {2, 0, -1, 2, -2602, 0}, {2, -1, -2, 0, 2390, 10056}, {1, 0, 1, 0, -2348, 6322}, {2, -2, 0, 0, 2236, -9884},
+            {0, 1, 2, 0, -2120, 5751}, {0, 2, 0, 0, -2069, 0}, {2, -2, -1, 0, 2048, -4950}, {2, 0, 1, -2, -1773, 4130},
+            {2, 0, 0, 2, -1595, 0}, {4, -1, -1, 0, 1215, -3958}, {0, 0, 2, 2, -1110, 0}, {3, 0, -1, 0, -892, 3258},
+            {2, 1, 1, 0, -810, 2616}, {4, -1, -2, 0, 759, -1897}, {0, 2, -1, 0, -713, -2117}, {2, 2, -1, 0, -700, 2354},
+            {2, 1, -2, 0, 691, 0}, {2, -1, 0, -2, 596, 0}, {4, 0, 1, 0, 549, -1423}, {0, 0, 4, 0, 537, -1117},
+            {4, -1, 0, 0, 520, -1571}, {1, 0, -2, 0, -487, -1739}, {2, 1, 0, -2, -399, 0}, {0, 0, 2, -2, -381, -4421},
+            {1, 1, 1, 0, 351, 0}, {3, 0, -2, 0, -340, 0}, {4, 0, -3, 0, 330, 0}, {2, -1, 2, 0, 327, 0},
+            {0, 2, 1, 0, -323, 1165}, {1, 1, -1, 0, 299, 0}, {2, 0, 3, 0, 294, 0}, {2, 0, -1, -2, 0, 8752}
+    };
+
+    /* Meeus table 47.B (largest terms); D, M, M', F, sum b (1e-6 degrees) */
+    protected static final int[][] TERMS_B = {
+            {0, 0, 0, 1, 5128122}, {0, 0, 1, 1, 280602}, {0, 0, 1, -1, 277693}, {2, 0, 0, -1, 173237},
+            {2, 0, -1, 1, 55413}, {2, 0, -1, -1, 46271}, {2, 0, 0, 1, 32573}, {0, 0, 2, 1, 17198},
+            {2, 0, 1, -1, 9266}, {0, 0, 2, -1, 8822}, {2, -1, 0, -1, 8216}, {2, 0, -2, -1, 4324},
+            {2, 0, 1, 1, 4200}, {2, 1, 0, -1, -3359}, {2, -1, -1, 1, 2463}, {2, -1, 0, 1, 2211},
+            {2, -1, -1, -1, 2065}, {0, 1, -1, -1, -1870}, {4, 0, -1, -1, 1828}, {0, 1, 0, 1, -1794},
+            {0, 0, 0, 3, -1749}, {0, 1, -1, 1, -1565}, {1, 0, 0, 1, -1491}, {0, 1, 1, 1, -1475},
+            {0, 1, 1, -1, -1410}, {0, 1, 0, -1, -1344}, {1, 0, 0, -1, -1335}, {0, 0, 3, 1, 1107},
+            {4, 0, 0, -1, 1021}, {4, 0, -1, 1, 833}
+    };
+
+    protected final double latitude, longitude;
+
+    /**
+     * @param latitude degrees (north positive)
+     * @param longitude degrees (east positive)
+     */
+    public LunarCalculator(double latitude, double longitude)
+    {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Position
+     */
+    public static class Position
+    {
+        public double longitude;         // ecliptic longitude (degrees)
+        public double latitude;          // ecliptic latitude (degrees)
+        public double distance;          // km
+        public double rightAscension;    // degrees
+        public double declination;       // degrees
+    }
+
+    /**
+     * @param jd julian day (UT)
+     * @param p result (reused)
+     * @return p
+     */
+    public static Position position(double jd, Position p)
+    {
+        double t = AstroTime.centuries(AstroTime.julianEphemerisDay(jd));
+        double t2 = t * t, t3 = t2 * t, t4 = t3 * t;
+
+        double lp = AstroTime.normalize(218.3164477 + 481267.88123421 * t - 0.0015786 * t2 + t3 / 538841d - t4 / 65194000d);
+        double d = AstroTime.normalize(297.8501921 + 445267.1114034 * t - 0.0018819 * t2 + t3 / 545868d - t4 / 113065000d) * DEG;
+        double m = AstroTime.normalize(357.5291092 + 35999.0502909 * t - 0.0001536 * t2 + t3 / 24490000d) * DEG;
+        double mp = AstroTime.normalize(134.9633964 + 477198.8675055 * t + 0.0087414 * t2 + t3 / 69699d - t4 / 14712000d) * DEG;
+        double f = AstroTime.normalize(93.2720950 + 483202.0175233 * t - 0.0036539 * t2 - t3 / 3526000d + t4 / 863310000d) * DEG;
+        double e = 1 - 0.002516 * t - 0.0000074 * t2;
+
+        double a1 = (119.75 + 131.849 * t) * DEG;
+        double a2 = (53.09 + 479264.290 * t) * DEG;
+        double a3 = (313.45 + 481266.484 * t) * DEG;
+
+        double sl = 0, sr = 0, sb = 0;
+        for (int[] term : TERMS_LR)
+        {
+            double arg = term[0] * d + term[1] * m + term[2] * mp + term[3] * f;
+            double ef = (term[1] == 0 ? 1 : (Math.abs(term[1]) == 1 ? e : e * e));
+            sl += term[4] * ef * Math.sin(arg);
+            sr += term[5] * ef * Math.cos(arg);
+        }
+        for (int[] term : TERMS_B)
+        {
+            double arg = term[0] * d + term[1] * m + term[2] * mp + term[3] * f;
+            double ef = (term[1] == 0 ? 1 : (Math.abs(term[1]) == 1 ? e : e * e));
+            sb += term[4] * ef * Math.sin(arg);
+        }
+
+        double lpr = lp * DEG;
+        sl += 3958 * Math.sin(a1) + 1962 * Math.sin(lpr - f) + 318 * Math.sin(a2);
+        sb += -2235 * Math.sin(lpr) + 382 * Math.sin(a3) + 175 * Math.sin(a1 - f) + 175 * Math.sin(a1 + f) + 127 * Math.sin(lpr - mp) - 115 * Math.sin(lpr + mp);
+
+        p.longitude = AstroTime.normalize(lp + sl / 1000000d);
+        p.latitude = sb / 1000000d;
+        p.distance = 385000.56 + sr / 1000d;
+
+        double lambda = p.longitude * DEG;
+        double beta = p.latitude * DEG;
+        double epsilon = AstroTime.obliquity(t) * DEG;
+        p.rightAscension = AstroTime.normalize(Math.atan2(Math.sin(lambda) * Math.cos(epsilon) - Math.tan(beta) * Math.sin(epsilon), Math.cos(lambda)) / DEG);
+        p.declination = Math.asin(Math.sin(beta) * Math.cos(epsilon) + Math.cos(beta) * Math.sin(epsilon) * Math.sin(lambda)) / DEG;
+        return p;
+    }
+
+    /**
+     * @param millis timestamp
+     * @return distance (km)
+     */
+    public static double distance(long millis) {
+        return position(AstroTime.julianDay(millis), new Position()).distance;
+    }
+
+    /**
+     * @param millis timestamp
+     * @return phase angle; elongation of the moon from the sun along the ecliptic (degrees, [0, 360); 0 new, 180 full)
+     */
+    public static double phaseAngle(long millis)
+    {
+        double jd = AstroTime.julianDay(millis);
+        double moon = position(jd, new Position()).longitude;
+        double sun = SolarCalculator.position(jd, new SolarCalculator.Position()).longitude;
+        return AstroTime.normalize(moon - sun);
+    }
+
+    /**
+     * @param millis timestamp
+     * @return illuminated fraction [0, 1] (approximate)
+     */
+    public static double illumination(long millis) {
+        return (1 - Math.cos(phaseAngle(millis) * DEG)) / 2d;
+    }
+
+    /**
+     * @param angle 0 (new), 90 (first quarter), 180 (full), 270 (third quarter)
+     * @param after timestamp
+     * @return time of the next phase after the given time
+     */
+    public static long nextPhase(double angle, long after)
+    {
+        double rate = 360d / SYNODIC_MONTH_DAYS;    // degrees per day (mean)
+        long t = after + Math.round(AstroTime.normalize(angle - phaseAngle(after)) / rate * AstroTime.MILLIS_PER_DAY);
+        for (int i=0; i<8; i++)
+        {
+            long dt = Math.round(AstroTime.normalize180(angle - phaseAngle(t)) / rate * AstroTime.MILLIS_PER_DAY);
+            t += dt;
+            if (Math.abs(dt) < SECOND_MILLIS) {
+                break;
+            }
+        }
+        return (t > after ? t : nextPhase(angle, after + Math.round(SYNODIC_MONTH_DAYS / 2 * AstroTime.MILLIS_PER_DAY)));
+    }
+
+    /**
+     * @param after timestamp
+     * @param apogee true apogee (greatest distance), false perigee (least distance)
+     * @return time of the next apsis after the given time
+     */
+    public static long nextApsis(long after, boolean apogee)
+    {
+        long step = 6 * HOUR_MILLIS;
+        double sign = (apogee ? -1 : 1);    // minimize sign * distance
+        long t0 = after - step;
+        double d0 = sign * distance(t0);
+        long t1 = after;
+        double d1 = sign * distance(t1);
+        for (int i=0; i<4 * 40; i++)
+        {
+            long t2 = t1 + step;
+            double d2 = sign * distance(t2);
+            if (d1 <= d0 && d1 <= d2)
+            {
+                long t = refineApsis(t0, t2, sign);
+                if (t > after) {
+                    return t;
+                }
+            }
+            t0 = t1; d0 = d1;
+            t1 = t2; d1 = d2;
+        }
+        return NONE;
+    }
+
+    /**
+     * Golden-section search for the least value of (sign * distance) within [a, b].
+     */
+    protected static long refineApsis(long a, long b, double sign)
+    {
+        double r = (Math.sqrt(5) - 1) / 2d;
+        double x1 = b - r * (b - a), x2 = a + r * (b - a);
+        double f1 = sign * distance((long) x1), f2 = sign * distance((long) x2);
+        double lo = a, hi = b;
+        while (hi - lo > SECOND_MILLIS)
+        {
+            if (f1 < f2) {
+                hi = x2; x2 = x1; f2 = f1;
+                x1 = hi - r * (hi - lo);
+                f1 = sign * distance((long) x1);
+            } else {
+                lo = x1; x1 = x2; f1 = f2;
+                x2 = lo + r * (hi - lo);
+                f2 = sign * distance((long) x2);
+            }
+        }
+        return Math.round((lo + hi) / 2d);
+    }
+
+    /**
+     * @param millis timestamp
+     * @return altitude of the moon's center minus the altitude of its rise/set (degrees; positive above the horizon)
+     */
+    public double horizonAltitude(long millis, Position p)
+    {
+        double jd = AstroTime.julianDay(millis);
+        position(jd, p);
+        double h = (AstroTime.siderealTime(jd) + longitude - p.rightAscension) * DEG;
+        double phi = latitude * DEG;
+        double delta = p.declination * DEG;
+        double alt = Math.asin(Math.sin(phi) * Math.sin(delta) + Math.cos(phi) * Math.cos(delta) * Math.cos(h)) / DEG;
+        double parallax = Math.asin(EARTH_RADIUS_KM / p.distance) / DEG;
+        return alt - (0.7275 * parallax - 0.5667);
+    }
+
+    /**
+     * @param dayStart local midnight (ms)
+     * @param dayEnd next local midnight (ms)
+     * @return [rise, set] within the day; NONE if the moon doesn't rise (or set) that day
+     */
+    public long[] riseSet(long dayStart, long dayEnd)
+    {
+        long[] retValue = new long[] { NONE, NONE };
+        Position p = new Position();
+        long t0 = dayStart;
+        double h0 = horizonAltitude(t0, p);
+        while (t0 < dayEnd && (retValue[0] == NONE || retValue[1] == NONE))
+        {
+            long t1 = Math.min(t0 + HOUR_MILLIS, dayEnd);
+            double h1 = horizonAltitude(t1, p);
+            if (h0 < 0 && h1 >= 0 && retValue[0] == NONE) {
+                retValue[0] = crossing(t0, t1, true, p);
+            } else if (h0 >= 0 && h1 < 0 && retValue[1] == NONE) {
+                retValue[1] = crossing(t0, t1, false, p);
+            }
+            t0 = t1;
+            h0 = h1;
+        }
+        return retValue;
+    }
+
+    protected long crossing(long t0, long t1, boolean rising, Position p)
+    {
+        while (t1 - t0 > SECOND_MILLIS)
+        {
+            long t = (t0 + t1) / 2;
+            boolean above = horizonAltitude(t, p) >= 0;
+            if (above == rising) {
+                t1 = t;
+            } else t0 = t;
+        }
+        return (t0 + t1) / 2;
+    }
+}
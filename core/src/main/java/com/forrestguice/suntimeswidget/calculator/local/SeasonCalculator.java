@@ -0,0 +1,71 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import static com.forrestguice.suntimeswidget.calculator.local.AstroTime.DEG;
+
+/**
+ * SeasonCalculator
+ * Equinox and solstice times (Meeus ch.27; accurate to about a minute for years 1000-3000).
+ */
+public class SeasonCalculator
+{
+    public static final int VERNAL = 0, SUMMER = 1, AUTUMN = 2, WINTER = 3;
+
+    /* mean equinox/solstice (JDE) polynomials in Y = (year - 2000) / 1000 */
+    protected static final double[][] MEAN = {
+            {2451623.80984, 365242.37404, 0.05169, -0.00411, -0.00057},
+            {2451716.56767, 365241.62603, 0.00325, 0.00888, -0.00030},
+            {2451810.21715, 365242.01767, -0.11575, 0.00337, 0.00078},
+            {2451900.05952, 365242.74049, -0.06223, -0.00823, 0.00032}
+    };
+
+    /* periodic terms; A, B (degrees), C (degrees per century) */
+    protected static final double[][] TERMS = {
+            {485, 324.96, 1934.136}, {203, 337.23, 32964.467}, {199, 342.08, 20.186}, {182, 27.85, 445267.112},
+            {156, 73.14, 45036.886}, {136, 171.52, 22518.443}, {77, 222.54, 65928.934}, {74, 296.72, 3034.906},
+            {70, 243.58, 9037.513}, {58, 119.81, 33718.147}, {52, 297.17, 150.678}, {50, 21.02, 2281.226},
+            {45, 247.54, 29929.562}, {44, 325.15, 31555.956}, {29, 60.93, 4443.417}, {18, 155.12, 67555.328},
+            {17, 288.79, 4562.452}, {16, 198.04, 62894.029}, {14, 199.76, 31436.921}, {12, 95.39, 14577.848},
+            {12, 287.11, 31931.756}, {12, 320.81, 34777.259}, {9, 227.73, 1222.114}, {8, 15.45, 16859.074}
+    };
+
+    /**
+     * @param year e.g. 2021
+     * @param season VERNAL, SUMMER, AUTUMN, WINTER (northern hemisphere names)
+     * @return timestamp (ms)
+     */
+    public static long season(int year, int season)
+    {
+        double y = (year - 2000) / 1000d;
+        double[] c = MEAN[season];
+        double jde0 = c[0] + y * (c[1] + y * (c[2] + y * (c[3] + y * c[4])));
+
+        double t = (jde0 - AstroTime.JD_J2000) / 36525d;
+        double w = (35999.373 * t - 2.47) * DEG;
+        double dl = 1 + 0.0334 * Math.cos(w) + 0.0007 * Math.cos(2 * w);
+
+        double s = 0;
+        for (double[] term : TERMS) {
+            s += term[0] * Math.cos((term[1] + term[2] * t) * DEG);
+        }
+
+        double jde = jde0 + (0.00001 * s) / dl;
+        return AstroTime.millis(jde - AstroTime.deltaT(jde) / 86400d);
+    }
+}
@@ -0,0 +1,165 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import static com.forrestguice.suntimeswidget.calculator.local.AstroTime.DEG;
+
+/**
+ * SolarCalculator
+ * Solar position (Meeus ch.25, low precision; ~0.01 degrees) and rise/set/transit times for an observer.
+ */
+public class SolarCalculator
+{
+    public static final double SIDEREAL_RATE = 360.98564736629;    // degrees per day
+
+    public static final double ANGLE_ACTUAL = -0.833;    // refraction + semi-diameter
+    public static final double ANGLE_CIVIL = -6;
+    public static final double ANGLE_NAUTICAL = -12;
+    public static final double ANGLE_ASTRONOMICAL = -18;
+    public static final double ANGLE_GOLDEN = 6;
+    public static final double ANGLE_BLUE8 = -8;
+    public static final double ANGLE_BLUE4 = -4;
+
+    public static final long NONE = -1;
+    protected static final int ITERATIONS = 3;
+
+    protected final double latitude, longitude, altitude;
+
+    /**
+     * @param latitude degrees (north positive)
+     * @param longitude degrees (east positive)
+     * @param altitude meters
+     */
+    public SolarCalculator(double latitude, double longitude, double altitude)
+    {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = Math.max(0, altitude);
+    }
+
+    /**
+     * Position
+     */
+    public static class Position
+    {
+        public double longitude;         // apparent ecliptic longitude (degrees)
+        public double rightAscension;    // degrees
+        public double declination;       // degrees
+        public double distance;          // AU
+    }
+
+    /**
+     * @param jd julian day (UT)
+     * @param p result (reused)
+     * @return p
+     */
+    public static Position position(double jd, Position p)
+    {
+        double t = AstroTime.centuries(AstroTime.julianEphemerisDay(jd));
+        double l0 = 280.46646 + 36000.76983 * t + 0.0003032 * t * t;
+        double m = (357.52911 + 35999.05029 * t - 0.0001537 * t * t) * DEG;
+        double e = 0.016708634 - 0.000042037 * t - 0.0000001267 * t * t;
+        double c = (1.914602 - 0.004817 * t - 0.000014 * t * t) * Math.sin(m)
+                 + (0.019993 - 0.000101 * t) * Math.sin(2 * m)
+                 + 0.000289 * Math.sin(3 * m);
+
+        double trueLongitude = l0 + c;
+        double v = m + c * DEG;
+        double omega = (125.04 - 1934.136 * t) * DEG;
+        double lambda = (trueLongitude - 0.00569 - 0.00478 * Math.sin(omega)) * DEG;
+        double epsilon = (AstroTime.obliquity(t) + 0.00256 * Math.cos(omega)) * DEG;
+
+        p.longitude = AstroTime.normalize(lambda / DEG);
+        p.rightAscension = AstroTime.normalize(Math.atan2(Math.cos(epsilon) * Math.sin(lambda), Math.cos(lambda)) / DEG);
+        p.declination = Math.asin(Math.sin(epsilon) * Math.sin(lambda)) / DEG;
+        p.distance = (1.000001018 * (1 - e * e)) / (1 + e * Math.cos(v));
+        return p;
+    }
+
+    /**
+     * @param millis timestamp
+     * @return local hour angle of the sun (degrees, [-180, 180))
+     */
+    public double hourAngle(long millis, Position p)
+    {
+        double jd = AstroTime.julianDay(millis);
+        position(jd, p);
+        return AstroTime.normalize180(AstroTime.siderealTime(jd) + longitude - p.rightAscension);
+    }
+
+    /**
+     * @param millis timestamp
+     * @return altitude of the sun (degrees; geometric, without refraction)
+     */
+    public double altitude(long millis)
+    {
+        Position p = new Position();
+        double h = hourAngle(millis, p) * DEG;
+        double phi = latitude * DEG;
+        double delta = p.declination * DEG;
+        return Math.asin(Math.sin(phi) * Math.sin(delta) + Math.cos(phi) * Math.cos(delta) * Math.cos(h)) / DEG;
+    }
+
+    /**
+     * @param dayStart local midnight (ms)
+     * @return time of solar noon (transit) nearest local noon
+     */
+    public long transit(long dayStart)
+    {
+        Position p = new Position();
+        long t = dayStart + 12 * 60 * 60 * 1000L;
+        for (int i=0; i<ITERATIONS; i++) {
+            t -= Math.round(hourAngle(t, p) / SIDEREAL_RATE * AstroTime.MILLIS_PER_DAY);
+        }
+        return t;
+    }
+
+    /**
+     * @param transit time of solar noon (see `transit`)
+     * @param angle altitude of the sun's center (degrees), e.g. ANGLE_CIVIL
+     * @param rising true morning (rising through angle), false evening (setting through angle)
+     * @return time the sun crosses angle, or NONE if it doesn't (that day)
+     */
+    public long riseSet(long transit, double angle, boolean rising)
+    {
+        Position p = new Position();
+        double phi = latitude * DEG;
+        double sinH0 = Math.sin(angle * DEG);
+
+        long t = transit;
+        for (int i=0; i<=ITERATIONS; i++)
+        {
+            double ha = hourAngle(t, p);
+            double delta = p.declination * DEG;
+            double cosH = (sinH0 - Math.sin(phi) * Math.sin(delta)) / (Math.cos(phi) * Math.cos(delta));
+            if (cosH < -1 || cosH > 1) {
+                return NONE;
+            }
+            double target = Math.acos(cosH) / DEG * (rising ? -1 : 1);
+            t += Math.round(AstroTime.normalize180(target - ha) / SIDEREAL_RATE * AstroTime.MILLIS_PER_DAY);
+        }
+        return t;
+    }
+
+    /**
+     * @return rise/set angle (degrees) adjusted for the observer's altitude (horizon dip)
+     */
+    public double actualAngle() {
+        return ANGLE_ACTUAL - 0.0293 * Math.sqrt(altitude);
+    }
+}
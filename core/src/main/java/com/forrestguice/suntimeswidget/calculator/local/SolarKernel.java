@@ -0,0 +1,208 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import static com.forrestguice.suntimeswidget.calculator.local.AstroTime.DEG;
+
+/**
+ * SolarKernel
+ * Computes solar noon and rise/set times for a whole window of days at once (rather than day by day).
+ *
+ * The sun's position is computed once per day (near local noon) into primitive arrays (julian day,
+ * right ascension, declination, equation of time, sidereal time). Event times are then found from those
+ * samples by interpolation (Meeus ch.15), so the per-day terms are shared by every angle (rise/set, civil,
+ * nautical, astronomical, golden, blue). Each loop runs over flat arrays without allocation; the result is
+ * a columnar Block (one long[] per event, NONE where the sun doesn't reach the angle that day).
+ */
+public class SolarKernel
+{
+    public static final long NONE = SolarCalculator.NONE;
+    public static final int CORRECTIONS = 2;
+
+    protected static final double SIDEREAL_RATE = SolarCalculator.SIDEREAL_RATE;
+
+    /**
+     * Block
+     * Event times (columns) by day (rows).
+     */
+    public static class Block
+    {
+        public final int numDays;
+        public final long[] noon;         // [day]
+        public final double[] angles;     // altitude angles (degrees)
+        public final long[][] rising;     // [angle][day]
+        public final long[][] setting;    // [angle][day]
+        public final double[] equationOfTime;    // [day] (minutes)
+
+        protected Block(int numDays, double[] angles)
+        {
+            this.numDays = numDays;
+            this.angles = angles;
+            this.noon = new long[numDays];
+            this.equationOfTime = new double[numDays];
+            this.rising = new long[angles.length][numDays];
+            this.setting = new long[angles.length][numDays];
+        }
+    }
+
+    protected final double latitude, longitude;
+
+    /**
+     * @param latitude degrees (north positive)
+     * @param longitude degrees (east positive)
+     */
+    public SolarKernel(double latitude, double longitude)
+    {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * @param firstNoon local noon of the first day (ms)
+     * @param numDays number of days
+     * @param angles altitude angles (degrees) to find rise/set times for
+     * @return a Block
+     */
+    public Block compute(long firstNoon, int numDays, double[] angles)
+    {
+        Block block = new Block(numDays, angles);
+        int n = numDays + 2;    // one extra sample on either side (for interpolation)
+
+        double[] jd = new double[n];
+        double[] ra = new double[n];
+        double[] dec = new double[n];
+        double[] theta0 = new double[n];
+
+        double jd0 = AstroTime.julianDay(firstNoon) - 1;
+        double dt = AstroTime.deltaT(jd0 + n / 2d) / 86400d;    // varies by < 1s/year
+
+        for (int k=0; k<n; k++)
+        {
+            jd[k] = jd0 + k;
+            double t = (jd[k] + dt - AstroTime.JD_J2000) / 36525d;
+            double l0 = 280.46646 + 36000.76983 * t + 0.0003032 * t * t;
+            double m = (357.52911 + 35999.05029 * t - 0.0001537 * t * t) * DEG;
+            double c = (1.914602 - 0.004817 * t - 0.000014 * t * t) * Math.sin(m)
+                     + (0.019993 - 0.000101 * t) * Math.sin(2 * m)
+                     + 0.000289 * Math.sin(3 * m);
+            double omega = (125.04 - 1934.136 * t) * DEG;
+            double lambda = (l0 + c - 0.00569 - 0.00478 * Math.sin(omega)) * DEG;
+            double epsilon = (AstroTime.obliquity(t) + 0.00256 * Math.cos(omega)) * DEG;
+
+            ra[k] = Math.atan2(Math.cos(epsilon) * Math.sin(lambda), Math.cos(lambda)) / DEG;
+            dec[k] = Math.asin(Math.sin(epsilon) * Math.sin(lambda)) / DEG;
+            theta0[k] = AstroTime.siderealTime(jd[k]);
+            if (k > 0 && k < n - 1) {
+                block.equationOfTime[k - 1] = 4 * AstroTime.normalize180(l0 - 0.0057183 - ra[k]);
+            }
+        }
+
+        // transit (m0; days from the sample)
+        double[] m0 = new double[numDays];
+        for (int i=0; i<numDays; i++)
+        {
+            int k = i + 1;
+            double m = AstroTime.normalize180(ra[k] - longitude - theta0[k]) / SIDEREAL_RATE;
+            for (int j=0; j<CORRECTIONS; j++)
+            {
+                double alpha = interpolateAngle(ra[k - 1], ra[k], ra[k + 1], m);
+                double h = AstroTime.normalize180(theta0[k] + SIDEREAL_RATE * m + longitude - alpha);
+                m -= h / SIDEREAL_RATE;
+            }
+            m0[i] = m;
+            block.noon[i] = AstroTime.millis(jd[k] + m);
+        }
+
+        // rise/set (per angle; sharing the per-day terms)
+        double phi = latitude * DEG;
+        double sinPhi = Math.sin(phi), cosPhi = Math.cos(phi);
+        double[] sinDec = new double[numDays];
+        double[] cosDec = new double[numDays];
+        for (int i=0; i<numDays; i++) {
+            double delta = dec[i + 1] * DEG;
+            sinDec[i] = Math.sin(delta);
+            cosDec[i] = Math.cos(delta);
+        }
+
+        for (int a=0; a<angles.length; a++)
+        {
+            double h0 = angles[a];
+            double sinH0 = Math.sin(h0 * DEG);
+            long[] rising = block.rising[a];
+            long[] setting = block.setting[a];
+            for (int i=0; i<numDays; i++)
+            {
+                double cosH0 = (sinH0 - sinPhi * sinDec[i]) / (cosPhi * cosDec[i]);
+                if (cosH0 < -1 || cosH0 > 1) {
+                    rising[i] = setting[i] = NONE;
+                    continue;
+                }
+                double hourAngle = Math.acos(cosH0) / DEG / SIDEREAL_RATE;
+                rising[i] = event(i + 1, m0[i] - hourAngle, h0, jd, ra, dec, theta0, sinPhi, cosPhi);
+                setting[i] = event(i + 1, m0[i] + hourAngle, h0, jd, ra, dec, theta0, sinPhi, cosPhi);
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Refines an approximate event time (Meeus ch.15).
+     * @param k sample index
+     * @param m approximate event time (days from sample k)
+     * @param h0 altitude angle (degrees)
+     * @return timestamp (ms)
+     */
+    protected long event(int k, double m, double h0, double[] jd, double[] ra, double[] dec, double[] theta0, double sinPhi, double cosPhi)
+    {
+        for (int j=0; j<CORRECTIONS; j++)
+        {
+            double alpha = interpolateAngle(ra[k - 1], ra[k], ra[k + 1], m);
+            double delta = interpolate(dec[k - 1], dec[k], dec[k + 1], m) * DEG;
+            double hourAngle = AstroTime.normalize180(theta0[k] + SIDEREAL_RATE * m + longitude - alpha) * DEG;
+            double cosDelta = Math.cos(delta);
+            double h = Math.asin(sinPhi * Math.sin(delta) + cosPhi * cosDelta * Math.cos(hourAngle)) / DEG;
+            double denominator = 360 * cosDelta * cosPhi * Math.sin(hourAngle);
+            if (denominator == 0) {
+                break;
+            }
+            m += (h - h0) / denominator;
+        }
+        return AstroTime.millis(jd[k] + m);
+    }
+
+    /**
+     * Quadratic interpolation through three equally spaced values (Meeus 3.3).
+     * @param n interpolation factor (-1, 0, 1 are y1, y2, y3)
+     */
+    protected static double interpolate(double y1, double y2, double y3, double n)
+    {
+        double a = y2 - y1;
+        double b = y3 - y2;
+        return y2 + (n / 2d) * (a + b + n * (b - a));
+    }
+
+    /**
+     * As `interpolate` for angles (degrees); differences are taken across the 360 boundary.
+     */
+    protected static double interpolateAngle(double y1, double y2, double y3, double n)
+    {
+        double a = AstroTime.normalize180(y2 - y1);
+        double b = AstroTime.normalize180(y3 - y2);
+        return y2 + (n / 2d) * (a + b + n * (b - a));
+    }
+}
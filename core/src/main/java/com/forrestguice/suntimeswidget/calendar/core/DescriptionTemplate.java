@@ -0,0 +1,61 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+import java.util.HashMap;
+
+/**
+ * DescriptionTemplate
+ * A format string (e.g. R.string.event_at_format) with its label already applied; split into the
+ * text before and after the remaining value (e.g. location, distance).
+ */
+@SuppressWarnings("Convert2Diamond")
+public class DescriptionTemplate
+{
+    /**
+     * Placeholder for the remaining value; the format string is applied with (label, VALUE) and then split on it.
+     */
+    public static final String VALUE = "\u0000";
+
+    public final String prefix, suffix;
+    protected final HashMap<String, String> resolved = new HashMap<>();
+
+    public DescriptionTemplate(String formatted)
+    {
+        int i = formatted.indexOf(VALUE);
+        prefix = (i >= 0 ? formatted.substring(0, i) : formatted);
+        suffix = (i >= 0 ? formatted.substring(i + VALUE.length()) : "");
+    }
+
+    public String format(String value) {
+        return prefix + value + suffix;
+    }
+
+    /**
+     * Formats a description where the value is constant for the run (e.g. the location label); the result is
+     * resolved once and the same instance returned for every event.
+     */
+    public String resolve(String value)
+    {
+        String description = resolved.get(value);
+        if (description == null) {
+            resolved.put(value, description = format(value).intern());
+        }
+        return description;
+    }
+}
@@ -0,0 +1,168 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * EventBatch
+ * A batch of events stored as parallel arrays; start/end times are kept as primitives, and title,
+ * description, and location are kept as indices into a table of (interned) strings.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class EventBatch implements EventSink
+{
+    public static final int DEF_CAPACITY = 128;
+    public static final int EVENT_BYTES = 480;    // estimated size of the fixed columns (keys, ids, times, flags)
+    protected static final int NONE = -1;
+
+    protected long[] start, end;
+    protected int[] title, description, location;
+
+    protected final ArrayList<String> strings = new ArrayList<>();
+    protected final HashMap<String, Integer> stringIndex = new HashMap<>();
+
+    protected int size = 0;
+    protected int bytes = 0;
+
+    public EventBatch() {
+        this(DEF_CAPACITY);
+    }
+
+    public EventBatch(int capacity)
+    {
+        capacity = Math.max(1, capacity);
+        start = new long[capacity];
+        end = new long[capacity];
+        title = new int[capacity];
+        description = new int[capacity];
+        location = new int[capacity];
+    }
+
+    /**
+     * @return the number of events in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    /**
+     * @return estimated size of the batch when written to a parcel (bytes)
+     */
+    public int bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return estimated size of an event with the given strings (bytes)
+     */
+    public static int estimateSize(String title, String description, String location) {
+        return EVENT_BYTES + estimateSize(title) + estimateSize(description) + (location != null ? estimateSize(location) : 0);
+    }
+
+    /**
+     * @return estimated size of a string when written to a parcel (bytes)
+     */
+    public static int estimateSize(String value) {
+        return 4 + 2 * (value.length() + 1);   // length + utf-16 chars + terminator
+    }
+
+    /**
+     * @param start event start (ms)
+     * @param end event end (ms)
+     */
+    @Override
+    public void add(String title, String description, String location, long start, long end)
+    {
+        ensureCapacity(size + 1);
+        this.start[size] = start;
+        this.end[size] = end;
+        this.title[size] = intern(title);
+        this.description[size] = intern(description);
+        this.location[size] = intern(location);
+        bytes += estimateSize(title, description, location);
+        size++;
+    }
+
+    public long start(int i) {
+        return start[i];
+    }
+
+    public long end(int i) {
+        return end[i];
+    }
+
+    public String title(int i) {
+        return string(title[i]);
+    }
+
+    public String description(int i) {
+        return string(description[i]);
+    }
+
+    /**
+     * @return location, or null
+     */
+    public String location(int i) {
+        return string(location[i]);
+    }
+
+    protected int intern(String value)
+    {
+        if (value == null) {
+            return NONE;
+        }
+        Integer i = stringIndex.get(value);
+        if (i == null)
+        {
+            i = strings.size();
+            strings.add(value);
+            stringIndex.put(value, i);
+        }
+        return i;
+    }
+
+    protected String string(int i) {
+        return (i == NONE ? null : strings.get(i));
+    }
+
+    protected void ensureCapacity(int capacity)
+    {
+        if (capacity > start.length)
+        {
+            int n = Math.max(capacity, start.length * 2);
+            long[] start0 = new long[n], end0 = new long[n];
+            int[] title0 = new int[n], description0 = new int[n], location0 = new int[n];
+            System.arraycopy(start, 0, start0, 0, size);
+            System.arraycopy(end, 0, end0, 0, size);
+            System.arraycopy(title, 0, title0, 0, size);
+            System.arraycopy(description, 0, description0, 0, size);
+            System.arraycopy(location, 0, location0, 0, size);
+            start = start0;
+            end = end0;
+            title = title0;
+            description = description0;
+            location = location0;
+        }
+    }
+}
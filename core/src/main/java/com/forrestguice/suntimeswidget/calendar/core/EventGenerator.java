@@ -0,0 +1,79 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+
+/**
+ * EventGenerator
+ * Creates the events of one calendar from provider data (usually a RowSource) and passes them to an EventSink.
+ * Generators hold only resolved strings (titles, descriptions, templates); the app's calendars resolve these
+ * from resources, run the query, and adapt the result (Cursor) and writer (EventWriter).
+ *
+ * Subclasses provide `generate`; rows are read from the first, and are left open.
+ */
+public abstract class EventGenerator
+{
+    public static final double UNKNOWN_DISTANCE = -1;
+
+    /**
+     * Listener
+     */
+    public interface Listener
+    {
+        /**
+         * @return true if generating should stop early
+         */
+        boolean isCancelled();
+
+        /**
+         * @param progress rows read (so far)
+         * @param total total rows
+         */
+        void onProgress(int progress, int total);
+    }
+
+    /**
+     * A listener that never cancels and ignores progress.
+     */
+    public static final Listener NONE = new Listener()
+    {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void onProgress(int progress, int total) {
+            /* EMPTY */
+        }
+    };
+
+    protected NumberFormat distanceFormatter = null;
+    protected String formatDistance(double distance)
+    {
+        if (distanceFormatter == null)
+        {
+            distanceFormatter = new DecimalFormat();
+            distanceFormatter.setMinimumFractionDigits(0);
+            distanceFormatter.setMaximumFractionDigits(2);
+        }
+        return distanceFormatter.format(distance);
+    }
+}
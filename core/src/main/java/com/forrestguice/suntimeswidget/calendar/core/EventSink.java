@@ -0,0 +1,34 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+/**
+ * EventSink
+ * Receives the events created by an EventGenerator (e.g. an EventWriter in the app).
+ */
+public interface EventSink
+{
+    /**
+     * @param title event title
+     * @param description event description
+     * @param location event location (or null)
+     * @param start event start (ms)
+     * @param end event end (ms); same as start for events without a duration
+     */
+    void add(String title, String description, String location, long start, long end);
+}
@@ -0,0 +1,159 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+/**
+ * GenerationTimer
+ * Records the phases of a single `generate` call to RunMetrics; the RowSource, EventSink, and Listener
+ * passed to the generator are wrapped (see `rows`, `sink`, `listener`) so that time spent moving between
+ * rows (CURSOR), adding events (the sink records its own phases), and publishing progress (PROGRESS) is
+ * measured separately. Whatever remains of the elapsed time (between construction and `stop`) is BUILD.
+ *
+ * A timer is used by one thread (the calendar's); the wrapped sink may hand events to other threads.
+ */
+public class GenerationTimer
+{
+    protected final RunMetrics metrics;
+    protected final long startNanos;
+    protected long cursorNanos = 0, sinkNanos = 0, progressNanos = 0;
+    protected int rows = 0;
+
+    public GenerationTimer(RunMetrics metrics)
+    {
+        this.metrics = metrics;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the elapsed time (less cursor, sink, and progress) as BUILD, and the rows read.
+     */
+    public void stop()
+    {
+        long elapsed = System.nanoTime() - startNanos;
+        metrics.addNanos(RunMetrics.CURSOR, cursorNanos);
+        metrics.addNanos(RunMetrics.PROGRESS, progressNanos);
+        metrics.addNanos(RunMetrics.BUILD, Math.max(0, elapsed - cursorNanos - sinkNanos - progressNanos));
+        metrics.addCount(RunMetrics.ROWS, rows);
+    }
+
+    /**
+     * @return a RowSource that times row movement (moveTo*); column reads are not timed
+     */
+    public RowSource rows(final RowSource source)
+    {
+        return new RowSource()
+        {
+            protected boolean moved(long t0, boolean moved)
+            {
+                cursorNanos += System.nanoTime() - t0;
+                if (moved) {
+                    rows++;
+                }
+                return moved;
+            }
+
+            @Override
+            public boolean moveToFirst() {
+                return moved(System.nanoTime(), source.moveToFirst());
+            }
+
+            @Override
+            public boolean moveToNext() {
+                return moved(System.nanoTime(), source.moveToNext());
+            }
+
+            @Override
+            public boolean moveToPrevious()
+            {
+                long t0 = System.nanoTime();
+                boolean moved = source.moveToPrevious();
+                cursorNanos += System.nanoTime() - t0;    // revisited rows aren't counted
+                return moved;
+            }
+
+            @Override
+            public int getCount() {
+                return source.getCount();
+            }
+
+            @Override
+            public boolean isAfterLast() {
+                return source.isAfterLast();
+            }
+
+            @Override
+            public boolean isLast() {
+                return source.isLast();
+            }
+
+            @Override
+            public boolean isNull(int column) {
+                return source.isNull(column);
+            }
+
+            @Override
+            public long getLong(int column) {
+                return source.getLong(column);
+            }
+
+            @Override
+            public double getDouble(int column) {
+                return source.getDouble(column);
+            }
+        };
+    }
+
+    /**
+     * @return an EventSink that excludes time spent adding events from BUILD
+     */
+    public EventSink sink(final EventSink sink)
+    {
+        return new EventSink()
+        {
+            @Override
+            public void add(String title, String description, String location, long start, long end)
+            {
+                long t0 = System.nanoTime();
+                sink.add(title, description, location, start, end);
+                sinkNanos += System.nanoTime() - t0;
+            }
+        };
+    }
+
+    /**
+     * @return a Listener that times progress dispatch (PROGRESS)
+     */
+    public EventGenerator.Listener listener(final EventGenerator.Listener listener)
+    {
+        return new EventGenerator.Listener()
+        {
+            @Override
+            public boolean isCancelled() {
+                return listener.isCancelled();
+            }
+
+            @Override
+            public void onProgress(int progress, int total)
+            {
+                long t0 = System.nanoTime();
+                listener.onProgress(progress, total);
+                progressNanos += System.nanoTime() - t0;
+            }
+        };
+    }
+}
@@ -0,0 +1,229 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram
+ * A fixed-size histogram of latencies (ns) with log-linear buckets; each power of two is split into
+ * 8 sub-buckets, so percentiles are reported to within 12.5% (values below 8 ns are exact).
+ *
+ * Recording is lock-free (atomic increments; no allocation), so a histogram can be shared by every
+ * thread making a given kind of call. Histograms can be added together (e.g. to accumulate runs) and
+ * written to a stream (see `writeTo`, `readFrom`).
+ */
+public class LatencyHistogram
+{
+    public static final int SUB_BUCKET_BITS = 3;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    public static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    protected final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    protected final AtomicLong count = new AtomicLong();
+    protected final AtomicLong total = new AtomicLong();
+    protected final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value a latency (ns); negative values are recorded as 0
+     * @return the bucket containing value
+     */
+    public static int bucket(long value)
+    {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) + sub;
+    }
+
+    /**
+     * @return the smallest value (ns) in the bucket
+     */
+    public static long lowerBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @return the largest value (ns) in the bucket
+     */
+    public static long upperBound(int bucket) {
+        return (bucket + 1 < NUM_BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE);
+    }
+
+    /**
+     * @param nanos latency (ns)
+     */
+    public void record(long nanos)
+    {
+        nanos = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Adds the values recorded by another histogram to this one.
+     */
+    public void add(LatencyHistogram other)
+    {
+        for (int i=0; i<NUM_BUCKETS; i++)
+        {
+            long n = other.counts.get(i);
+            if (n > 0) {
+                counts.addAndGet(i, n);
+            }
+        }
+        count.addAndGet(other.count.get());
+        total.addAndGet(other.total.get());
+
+        long otherMax = other.max.get();
+        long m = max.get();
+        while (otherMax > m && !max.compareAndSet(m, otherMax)) {
+            m = max.get();
+        }
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @return mean latency (ns), or 0 if nothing was recorded
+     */
+    public double mean()
+    {
+        long n = count.get();
+        return (n > 0 ? (double) total.get() / n : 0);
+    }
+
+    /**
+     * @param percentile 0-100 (e.g. 50, 90, 99)
+     * @return the upper bound (ns) of the bucket containing the given percentile (at most max), or 0 if nothing was recorded
+     */
+    public long percentile(double percentile)
+    {
+        long n = count.get();
+        if (n <= 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil((Math.min(100, Math.max(0, percentile)) / 100d) * n));
+        long seen = 0;
+        for (int i=0; i<NUM_BUCKETS; i++)
+        {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Writes the histogram to a stream (see `readFrom`).
+     * Format: count, total, max, numBuckets (non-empty), then for each non-empty bucket: index, count
+     */
+    public void writeTo(DataOutputStream out) throws IOException
+    {
+        int numBuckets = 0;
+        long[] values = new long[NUM_BUCKETS];
+        for (int i=0; i<NUM_BUCKETS; i++)
+        {
+            values[i] = counts.get(i);
+            if (values[i] > 0) {
+                numBuckets++;
+            }
+        }
+
+        out.writeLong(count.get());
+        out.writeLong(total.get());
+        out.writeLong(max.get());
+        out.writeInt(numBuckets);
+        for (int i=0; i<NUM_BUCKETS; i++)
+        {
+            if (values[i] > 0) {
+                out.writeInt(i);
+                out.writeLong(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a histogram from a stream (see `writeTo`).
+     * @throws IOException if the stream is truncated or malformed
+     */
+    public static LatencyHistogram readFrom(DataInputStream in) throws IOException
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.count.set(in.readLong());
+        histogram.total.set(in.readLong());
+        histogram.max.set(in.readLong());
+
+        int numBuckets = in.readInt();
+        if (numBuckets < 0 || numBuckets > NUM_BUCKETS) {
+            throw new IOException("Invalid bucket count: " + numBuckets);
+        }
+        for (int i=0; i<numBuckets; i++)
+        {
+            int bucket = in.readInt();
+            if (bucket < 0 || bucket >= NUM_BUCKETS) {
+                throw new IOException("Invalid bucket: " + bucket);
+            }
+            histogram.counts.set(bucket, in.readLong());
+        }
+        return histogram;
+    }
+
+    /**
+     * @return count, percentiles (p50, p90, p99), and max as a JSON object (latencies in ms)
+     */
+    public String toJson()
+    {
+        return "{\"count\":" + count() + ",\"p50\":" + millis(percentile(50)) + ",\"p90\":" + millis(percentile(90))
+                + ",\"p99\":" + millis(percentile(99)) + ",\"max\":" + millis(max()) + "}";
+    }
+
+    protected static double millis(long nanos) {
+        return Math.round(nanos / 10000d) / 100d;
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + count() + ", p50=" + millis(percentile(50)) + " ms, p90=" + millis(percentile(90)) + " ms, p99=" + millis(percentile(99)) + " ms, max=" + millis(max()) + " ms";
+    }
+}
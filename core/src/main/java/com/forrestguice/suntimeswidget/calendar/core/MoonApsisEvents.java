@@ -0,0 +1,76 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+import java.util.Iterator;
+import java.util.SortedSet;
+
+/**
+ * MoonApsisEvents
+ * Lunar apogee and perigee events, written in order of occurrence.
+ */
+public class MoonApsisEvents extends EventGenerator
+{
+    /**
+     * Distances
+     */
+    public interface Distances
+    {
+        /**
+         * @param time timestamp (ms) of an apsis
+         * @return distance (km), or UNKNOWN_DISTANCE
+         */
+        double distance(long time);
+    }
+
+    protected final String[] titles;                  // {apogee, perigee}
+    protected final DescriptionTemplate[] templates;  // {apogee, perigee}; e.g. "<apsis> at <distance> km"
+
+    public MoonApsisEvents(String[] titles, DescriptionTemplate[] templates)
+    {
+        this.titles = titles;
+        this.templates = templates;
+    }
+
+    /**
+     * @param apogees apogee times (ms)
+     * @param perigees perigee times (ms)
+     * @param distances distance for each apsis
+     * @return true if all apsides were added, false if cancelled
+     */
+    public boolean generate(SortedSet<Long> apogees, SortedSet<Long> perigees, Distances distances, EventSink sink, Listener listener)
+    {
+        Iterator<Long> apogeeIterator = apogees.iterator();
+        Iterator<Long> perigeeIterator = perigees.iterator();
+        Long apogee = (apogeeIterator.hasNext() ? apogeeIterator.next() : null);
+        Long perigee = (perigeeIterator.hasNext() ? perigeeIterator.next() : null);
+        while ((apogee != null || perigee != null) && !listener.isCancelled())
+        {
+            int i = (perigee == null || (apogee != null && apogee < perigee)) ? 0 : 1;    // {apogee, perigee} in order of occurrence
+            long eventTime = (i == 0) ? apogee : perigee;
+            if (i == 0) {
+                apogee = (apogeeIterator.hasNext() ? apogeeIterator.next() : null);
+            } else perigee = (perigeeIterator.hasNext() ? perigeeIterator.next() : null);
+
+            double distance = distances.distance(eventTime);
+            String desc = ((distance != UNKNOWN_DISTANCE) ? templates[i].format(formatDistance(distance)) : titles[i]);
+            sink.add(titles[i], desc, null, eventTime, eventTime);
+        }
+        return !listener.isCancelled();
+    }
+}
@@ -0,0 +1,82 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+/**
+ * MoonPhaseEvents
+ * Major moon phase events (new, first quarter, full, third quarter). New and full moons closer than
+ * THRESHHOLD_SUPERMOON (or further than THRESHHOLD_MICROMOON) are labeled as super (or micro) moons.
+ * Rows contain columns [new, first, full, third, new-distance, full-distance] (indices 0-3 ordered by occurrence).
+ */
+public class MoonPhaseEvents extends EventGenerator
+{
+    public static final double THRESHHOLD_SUPERMOON = 360000;    // km
+    public static final double THRESHHOLD_MICROMOON = 405000;    // km
+
+    public static final int TITLES_MAJOR = 0, TITLES_SUPER = 1, TITLES_MICRO = 2;
+
+    protected final String[][] titles;                  // [major, super, micro][phase]
+    protected final DescriptionTemplate[][] templates;  // [major, super, micro][phase]; e.g. "<phase> at <distance> km"
+
+    /**
+     * @param titles [TITLES_MAJOR, TITLES_SUPER, TITLES_MICRO][phase]
+     * @param templates distance templates for each title (same dimensions as titles)
+     */
+    public MoonPhaseEvents(String[][] titles, DescriptionTemplate[][] templates)
+    {
+        this.titles = titles;
+        this.templates = templates;
+    }
+
+    /**
+     * @param rows rows of [new, first, full, third, new-distance, full-distance]; one row per lunar cycle
+     * @return true if all rows were read, false if cancelled
+     */
+    public boolean generate(RowSource rows, EventSink sink, Listener listener)
+    {
+        int c = 0;
+        int totalProgress = rows.getCount();
+        rows.moveToFirst();
+        while (!rows.isAfterLast() && !listener.isCancelled())
+        {
+            for (int i=0; i<4; i++)
+            {
+                double distance = -1;
+                int k = TITLES_MAJOR;
+                if (i == 0 || i == 2)  // new moon || full moon
+                {
+                    distance = rows.getDouble(i == 0 ? 4 : 5);
+
+                    if (distance < THRESHHOLD_SUPERMOON) {
+                        k = TITLES_SUPER;
+                    } else if (distance > THRESHHOLD_MICROMOON) {
+                        k = TITLES_MICRO;
+                    }
+                }
+
+                String desc = (distance > 0) ? templates[k][i].format(formatDistance(distance)) : titles[k][i];
+                long eventTime = rows.getLong(i);
+                sink.add(titles[k][i], desc, null, eventTime, eventTime);
+            }
+            rows.moveToNext();
+            c++;
+            listener.onProgress(c, totalProgress);
+        }
+        return !listener.isCancelled();
+    }
+}
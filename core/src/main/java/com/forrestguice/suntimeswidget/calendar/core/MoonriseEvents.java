@@ -0,0 +1,64 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+/**
+ * MoonriseEvents
+ * Moonrise and moonset events. Rows contain columns [moonrise, moonset] (either may be null).
+ */
+public class MoonriseEvents extends EventGenerator
+{
+    protected final String[] titles;          // {moonrise, moonset}
+    protected final String[] descriptions;    // {moonrise, moonset}; e.g. "moonrise at <location>"
+    protected final String location;
+
+    public MoonriseEvents(String[] titles, String[] descriptions, String location)
+    {
+        this.titles = titles;
+        this.descriptions = descriptions;
+        this.location = location;
+    }
+
+    /**
+     * @param rows rows of [moonrise, moonset]; one row per day
+     * @return true if all rows were read, false if cancelled
+     */
+    public boolean generate(RowSource rows, EventSink sink, Listener listener)
+    {
+        int c = 0;
+        int totalProgress = rows.getCount();
+        rows.moveToFirst();
+        while (!rows.isAfterLast() && !listener.isCancelled())
+        {
+            for (int i=0; i<titles.length; i++)
+            {
+                if (!rows.isNull(i))
+                {
+                    long eventTime = rows.getLong(i);
+                    sink.add(titles[i], descriptions[i], location, eventTime, eventTime);
+                }
+            }
+            rows.moveToNext();
+            c++;
+            if (c % 8 == 0 || rows.isLast()) {
+                listener.onProgress(c, totalProgress);
+            }
+        }
+        return !listener.isCancelled();
+    }
+}
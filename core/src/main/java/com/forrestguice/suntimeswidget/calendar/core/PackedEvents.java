@@ -0,0 +1,143 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * PackedEvents
+ * A compact binary encoding of an EventBatch; add-on calendars may return their content as one or more BLOB rows
+ * in this format (rather than one cursor row per event). Each blob is self-contained; strings are stored once per
+ * blob (a table of length-prefixed UTF-8 strings), and events refer to them by index.
+ *
+ * Layout (big-endian):
+ *   int magic, byte version,
+ *   int numStrings, numStrings x [int length, length x byte],
+ *   int numEvents, numEvents x [int title, int description, int location (-1 none), long start, long end]
+ *
+ * Packed events carry no timezone; they are written using the calendar's timezone (as generated events are).
+ */
+public class PackedEvents
+{
+    public static final int MAGIC = 0x53435045;    // "SCPE"
+    public static final byte VERSION = 1;
+    protected static final int HEADER_BYTES = 4 + 1 + 4 + 4;
+    protected static final int EVENT_BYTES = (3 * 4) + (2 * 8);
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * @param batch events to encode (added to the batch as strings and times)
+     * @return packed events
+     */
+    public static byte[] encode(EventBatch batch)
+    {
+        int numStrings = batch.strings.size();
+        byte[][] strings = new byte[numStrings][];
+        int size = HEADER_BYTES + (batch.size * EVENT_BYTES);
+        for (int i=0; i<numStrings; i++)
+        {
+            strings[i] = batch.strings.get(i).getBytes(UTF8);
+            size += 4 + strings[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putInt(numStrings);
+        for (byte[] string : strings)
+        {
+            buffer.putInt(string.length);
+            buffer.put(string);
+        }
+        buffer.putInt(batch.size);
+        for (int i=0; i<batch.size; i++)
+        {
+            buffer.putInt(batch.title[i]);
+            buffer.putInt(batch.description[i]);
+            buffer.putInt(batch.location[i]);
+            buffer.putLong(batch.start[i]);
+            buffer.putLong(batch.end[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes packed events, passing each to the sink (in the order they were encoded).
+     * @param blob packed events (see encode)
+     * @param sink receives the events
+     * @return number of events decoded
+     * @throws IllegalArgumentException if the blob is malformed (or an unsupported version)
+     */
+    public static int decode(byte[] blob, EventSink sink) throws IllegalArgumentException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(blob);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("not packed events (bad magic)");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported version " + version);
+            }
+
+            int numStrings = buffer.getInt();
+            if (numStrings < 0 || numStrings > buffer.remaining() / 4) {
+                throw new IllegalArgumentException("bad string count " + numStrings);
+            }
+            String[] strings = new String[numStrings];
+            for (int i=0; i<numStrings; i++)
+            {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IllegalArgumentException("bad string length " + length);
+                }
+                strings[i] = new String(blob, buffer.position(), length, UTF8);
+                buffer.position(buffer.position() + length);
+            }
+
+            int numEvents = buffer.getInt();
+            if (numEvents < 0 || numEvents > buffer.remaining() / EVENT_BYTES) {
+                throw new IllegalArgumentException("bad event count " + numEvents);
+            }
+            for (int i=0; i<numEvents; i++)
+            {
+                String title = string(strings, buffer.getInt(), false);
+                String description = string(strings, buffer.getInt(), false);
+                String location = string(strings, buffer.getInt(), true);
+                long start = buffer.getLong();
+                long end = buffer.getLong();
+                sink.add(title, description, location, start, end);
+            }
+            return numEvents;
+
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated packed events");
+        }
+    }
+
+    private static String string(String[] strings, int i, boolean optional)
+    {
+        if (i == EventBatch.NONE && optional) {
+            return null;
+        } else if (i < 0 || i >= strings.length) {
+            throw new IllegalArgumentException("bad string index " + i);
+        } else return strings[i];
+    }
+}
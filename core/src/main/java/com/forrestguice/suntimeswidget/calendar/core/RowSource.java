@@ -0,0 +1,38 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+/**
+ * RowSource
+ * Rows of provider data (e.g. a calculator provider query result) read by an EventGenerator.
+ * The methods are a subset of android.database.Cursor (same meaning), so a Cursor is adapted by delegation.
+ */
+public interface RowSource
+{
+    int getCount();
+
+    boolean moveToFirst();
+    boolean moveToNext();
+    boolean moveToPrevious();
+    boolean isAfterLast();
+    boolean isLast();
+
+    boolean isNull(int column);
+    long getLong(int column);
+    double getDouble(int column);
+}
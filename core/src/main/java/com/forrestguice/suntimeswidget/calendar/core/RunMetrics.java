@@ -0,0 +1,296 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * RunMetrics
+ * Time spent in each phase of a run (query, cursor, build, insert, delete, progress), and counts of
+ * rows read, events written, batches, batch bytes, and retries.
+ *
+ * A run has one child per calendar (see `child`); anything recorded by a child is also added to its
+ * parent. Phase times are summed over all threads (calendars, writer threads), so when calendars run
+ * concurrently (or writes are pipelined) the phase totals of a run may exceed its elapsed time.
+ *
+ * Recording is thread-safe.
+ */
+@SuppressWarnings("Convert2Diamond")
+public class RunMetrics
+{
+    public static final int QUERY = 0;       // provider (or calculator) queries
+    public static final int CURSOR = 1;      // cursor iteration (moving between rows)
+    public static final int BUILD = 2;       // event building (generators, descriptions, ContentValues)
+    public static final int INSERT = 3;      // calendar provider inserts and updates (IPC)
+    public static final int DELETE = 4;      // calendar provider deletes (IPC)
+    public static final int PROGRESS = 5;    // progress dispatch
+    public static final String[] PHASES = new String[] { "query", "cursor", "build", "insert", "delete", "progress" };
+
+    public static final int ROWS = 0;        // rows read
+    public static final int EVENTS = 1;      // events written
+    public static final int BATCHES = 2;     // batches written
+    public static final int BATCH_BYTES = 3; // estimated bytes written (all batches)
+    public static final int RETRIES = 4;     // retried provider calls
+    public static final String[] COUNTS = new String[] { "rows", "events", "batches", "batchBytes", "retries" };
+
+    protected final String name;
+    protected final RunMetrics parent;
+    protected final AtomicLongArray nanos = new AtomicLongArray(PHASES.length);
+    protected final AtomicLongArray counts = new AtomicLongArray(COUNTS.length);
+    protected final LinkedHashMap<String, RunMetrics> children = new LinkedHashMap<>();
+    protected final LinkedHashMap<String, String> config = new LinkedHashMap<>();
+
+    protected volatile long startTime = -1;       // ms (wall clock)
+    protected volatile long startNanos = -1;
+    protected volatile long elapsedNanos = -1;
+    protected volatile Boolean result = null;
+
+    public RunMetrics(String name) {
+        this(name, null);
+    }
+
+    protected RunMetrics(String name, RunMetrics parent)
+    {
+        this.name = name;
+        this.parent = parent;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @param name child name (e.g. calendar name)
+     * @return the child with this name (created if it doesn't exist)
+     */
+    public RunMetrics child(String name)
+    {
+        synchronized (children)
+        {
+            RunMetrics child = children.get(name);
+            if (child == null) {
+                children.put(name, child = new RunMetrics(name, this));
+            }
+            return child;
+        }
+    }
+
+    public RunMetrics[] children()
+    {
+        synchronized (children) {
+            return children.values().toArray(new RunMetrics[0]);
+        }
+    }
+
+    /**
+     * @param key config name (e.g. a task flag)
+     * @param value config value
+     */
+    public void setConfig(String key, Object value)
+    {
+        synchronized (config) {
+            config.put(key, String.valueOf(value));
+        }
+    }
+
+    /**
+     * Marks the start of the run (elapsed time is measured from here).
+     */
+    public void start()
+    {
+        startTime = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        elapsedNanos = -1;
+        result = null;
+    }
+
+    /**
+     * Marks the end of the run.
+     * @param result true the run succeeded, false it failed (or was cancelled)
+     */
+    public void finish(boolean result)
+    {
+        if (startNanos >= 0) {
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+        this.result = result;
+    }
+
+    /**
+     * @param phase QUERY, CURSOR, BUILD, INSERT, DELETE, PROGRESS
+     * @param nanos time spent (ns)
+     */
+    public void addNanos(int phase, long nanos)
+    {
+        this.nanos.addAndGet(phase, nanos);
+        if (parent != null) {
+            parent.addNanos(phase, nanos);
+        }
+    }
+
+    /**
+     * @param counter ROWS, EVENTS, BATCHES, BATCH_BYTES, RETRIES
+     * @param n amount to add
+     */
+    public void addCount(int counter, long n)
+    {
+        counts.addAndGet(counter, n);
+        if (parent != null) {
+            parent.addCount(counter, n);
+        }
+    }
+
+    public long nanos(int phase) {
+        return nanos.get(phase);
+    }
+
+    public double millis(int phase) {
+        return nanos.get(phase) / 1000000d;
+    }
+
+    public long count(int counter) {
+        return counts.get(counter);
+    }
+
+    /**
+     * @return average bytes per batch (or 0 if there were no batches)
+     */
+    public long bytesPerBatch()
+    {
+        long batches = counts.get(BATCHES);
+        return (batches > 0 ? counts.get(BATCH_BYTES) / batches : 0);
+    }
+
+    public long startTime() {
+        return startTime;
+    }
+
+    /**
+     * @return elapsed time (ms) from `start` to `finish`, or -1 if unfinished
+     */
+    public double elapsedMillis() {
+        return (elapsedNanos >= 0 ? elapsedNanos / 1000000d : -1);
+    }
+
+    public Boolean result() {
+        return result;
+    }
+
+    /**
+     * @return these metrics as a JSON object (phase times in ms); children are listed under "calendars"
+     */
+    public String toJson()
+    {
+        StringBuilder json = new StringBuilder();
+        appendJson(json);
+        return json.toString();
+    }
+
+    protected void appendJson(StringBuilder json)
+    {
+        json.append("{\"name\":").append(quote(name));
+        if (startTime >= 0) {
+            json.append(",\"start\":").append(startTime);
+        }
+        json.append(",\"elapsedMs\":").append(round(elapsedMillis()));
+        if (result != null) {
+            json.append(",\"result\":").append(result);
+        }
+
+        ArrayList<Map.Entry<String, String>> entries;
+        synchronized (config) {
+            entries = new ArrayList<>(config.entrySet());
+        }
+        if (!entries.isEmpty())
+        {
+            json.append(",\"config\":{");
+            for (int i=0; i<entries.size(); i++) {
+                json.append(i > 0 ? "," : "").append(quote(entries.get(i).getKey())).append(":").append(quote(entries.get(i).getValue()));
+            }
+            json.append("}");
+        }
+
+        json.append(",\"phasesMs\":{");
+        for (int i=0; i<PHASES.length; i++) {
+            json.append(i > 0 ? "," : "").append(quote(PHASES[i])).append(":").append(round(millis(i)));
+        }
+        json.append("},\"counts\":{");
+        for (int i=0; i<COUNTS.length; i++) {
+            json.append(i > 0 ? "," : "").append(quote(COUNTS[i])).append(":").append(count(i));
+        }
+        json.append(",\"bytesPerBatch\":").append(bytesPerBatch()).append("}");
+
+        RunMetrics[] children = children();
+        if (children.length > 0)
+        {
+            json.append(",\"calendars\":[");
+            for (int i=0; i<children.length; i++) {
+                json.append(i > 0 ? "," : "");
+                children[i].appendJson(json);
+            }
+            json.append("]");
+        }
+        json.append("}");
+    }
+
+    protected static double round(double millis) {
+        return Math.round(millis * 100) / 100d;
+    }
+
+    protected static String quote(String value)
+    {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder s = new StringBuilder("\"");
+        for (int i=0; i<value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '"': s.append("\\\""); break;
+                case '\\': s.append("\\\\"); break;
+                case '\n': s.append("\\n"); break;
+                case '\r': s.append("\\r"); break;
+                case '\t': s.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        s.append(String.format("\\u%04x", (int) c));
+                    } else s.append(c);
+                    break;
+            }
+        }
+        return s.append("\"").toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder s = new StringBuilder(name).append(": ").append(round(elapsedMillis())).append(" ms");
+        for (int i=0; i<PHASES.length; i++) {
+            s.append(", ").append(PHASES[i]).append(" ").append(round(millis(i)));
+        }
+        s.append("; ").append(count(ROWS)).append(" rows, ").append(count(EVENTS)).append(" events, ")
+                .append(count(BATCHES)).append(" batches (").append(bytesPerBatch()).append(" bytes/batch), ")
+                .append(count(RETRIES)).append(" retries");
+        return s.toString();
+    }
+}
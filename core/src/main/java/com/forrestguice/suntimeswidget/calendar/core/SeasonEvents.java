@@ -0,0 +1,57 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+/**
+ * SeasonEvents
+ * Equinox and solstice events. Rows contain columns [vernal, summer, autumn, winter] (one row per year).
+ */
+public class SeasonEvents extends EventGenerator
+{
+    protected final String[] titles;    // {spring, summer, fall, winter}
+
+    public SeasonEvents(String[] titles) {
+        this.titles = titles;
+    }
+
+    /**
+     * @param rows rows of [vernal, summer, autumn, winter]; one row per year
+     * @return true if all rows were read, false if cancelled
+     */
+    public boolean generate(RowSource rows, EventSink sink, Listener listener)
+    {
+        int c = 0;
+        int totalProgress = rows.getCount();
+        rows.moveToFirst();
+        while (!rows.isAfterLast() && !listener.isCancelled())
+        {
+            for (int i=0; i<titles.length; i++)
+            {
+                if (!rows.isNull(i))
+                {
+                    long eventTime = rows.getLong(i);
+                    sink.add(titles[i], titles[i], null, eventTime, eventTime);
+                }
+            }
+            rows.moveToNext();
+            c++;
+            listener.onProgress(c, totalProgress);
+        }
+        return !listener.isCancelled();
+    }
+}
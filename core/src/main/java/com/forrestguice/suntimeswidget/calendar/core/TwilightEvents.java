@@ -0,0 +1,119 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.forrestguice.suntimeswidget.calendar.core;
+
+/**
+ * TwilightEvents
+ * Twilight events (civil, nautical, astronomical); one event for each half of a day (rising and setting).
+ * Rows contain columns [rise-start, rise-end, set-start, set-end] (e.g. [civil-rise, sunrise, sunset, civil-set]).
+ */
+public class TwilightEvents extends EventGenerator
+{
+    protected final String title, location;
+    protected final String risingDesc, risingEdgeDesc;
+    protected final String settingDesc, settingEdgeDesc, settingFallbackDesc;
+
+    /**
+     * @param title event title (e.g. Civil Twilight)
+     * @param location location label (or null)
+     * @param risingDesc avg case description (e.g. ending in sunrise)
+     * @param risingEdgeDesc edge case description (e.g. polar twilight)
+     * @param settingDesc avg case description (e.g. starting at sunset)
+     * @param settingEdgeDesc edge case description (e.g. white night)
+     * @param settingFallbackDesc description for start-only events (e.g. civil twilight)
+     */
+    public TwilightEvents(String title, String location, String risingDesc, String risingEdgeDesc, String settingDesc, String settingEdgeDesc, String settingFallbackDesc)
+    {
+        this.title = title;
+        this.location = location;
+        this.risingDesc = risingDesc;
+        this.risingEdgeDesc = risingEdgeDesc;
+        this.settingDesc = settingDesc;
+        this.settingEdgeDesc = settingEdgeDesc;
+        this.settingFallbackDesc = settingFallbackDesc;
+    }
+
+    /**
+     * @param rows rows of [rise-start, rise-end, set-start, set-end]; one row per day
+     * @return true if all rows were read, false if cancelled
+     */
+    public boolean generate(RowSource rows, EventSink sink, Listener listener)
+    {
+        int c = 0;
+        int totalProgress = rows.getCount();
+        rows.moveToFirst();
+        while (!rows.isAfterLast() && !listener.isCancelled())
+        {
+            addEvent(rows, sink, 0);
+            addEvent(rows, sink, 2);
+            rows.moveToNext();
+            c++;
+
+            if (c % 8 == 0 || rows.isLast()) {
+                listener.onProgress(c, totalProgress);
+            }
+        }
+        return !listener.isCancelled();
+    }
+
+    /**
+     * Adds the event for one half of a day (rising or setting) to the sink; events are passed as
+     * primitive start/end times (nothing is allocated per row).
+     * @param rows rows containing columns [rise-start, rise-end, set-start, set-end]
+     * @param sink receives the event
+     * @param i index into row columns (expects i = 0 (rising), or i = 2 (setting))
+     */
+    public void addEvent(RowSource rows, EventSink sink, int i)
+    {
+        int j = i + 1;             // [rise-start, rise-end, set-start, set-end]
+        int k = (i == 0) ? 2 : 0;  // rising [i, j, k, l] .. setting [k, l, i, j]
+        int l = k + 1;
+        long eventStart, eventEnd;
+
+        if (!rows.isNull(i) && !rows.isNull(j))                // avg case [i, j]
+        {
+            eventStart = rows.getLong(i);
+            eventEnd = rows.getLong(j);
+            sink.add(title, (i == 0 ? risingDesc : settingDesc), location, eventStart, eventEnd);
+
+        } else if (!rows.isNull(i)) {
+            eventStart = rows.getLong(i);
+            if (i == 0)
+            {
+                if (!rows.isNull(l)) {                          // edge [i, l] of [i, j, k, l]
+                    eventEnd = rows.getLong(l);
+                    sink.add(title, risingEdgeDesc, location, eventStart, eventEnd);
+                }
+
+            } else {
+                if (rows.moveToNext())
+                {                                // peek forward
+                    if (!rows.isNull(l))
+                    {
+                        eventEnd = rows.getLong(l);      // edge [i, +l] of [+k, +l, i, j]
+                        sink.add(title, settingEdgeDesc, location, eventStart, eventEnd);
+
+                    } else {                                              // fallback (start-only; end-only events are ignored)
+                        sink.add(title, settingFallbackDesc, location, eventStart, eventStart);
+                    }
+                    rows.moveToPrevious();
+                }
+            }
+        }
+    }
+}
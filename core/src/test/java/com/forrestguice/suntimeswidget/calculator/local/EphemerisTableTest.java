@@ -0,0 +1,140 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static com.forrestguice.suntimeswidget.calculator.local.SolarCalculatorTest.utc;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class EphemerisTableTest
+{
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static EphemerisTable table;
+
+    @BeforeClass
+    public static void generateTable() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EphemerisTable.generate(out, 2098, 2100);    // ends where the bundled table ends
+        table = new EphemerisTable(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    @Test
+    public void test_seasons()
+    {
+        assertTrue(table.hasSeasons(2098, 2100));
+        assertFalse(table.hasSeasons(2097, 2100));
+        assertFalse(table.hasSeasons(2100, 2101));
+        for (int year = 2098; year <= 2100; year++) {
+            for (int season = 0; season < 4; season++) {
+                assertEquals(year + ":" + season, SeasonCalculator.season(year, season), table.season(year, season));
+            }
+        }
+    }
+
+    @Test
+    public void test_rowPhase()
+    {
+        long start = utc(2098, Calendar.MARCH, 1, 0, 0);
+        long end = utc(2099, Calendar.MARCH, 1, 0, 0);
+        assertTrue(table.hasPhases(start, end));
+
+        int first = table.nextPhase(start);
+        assertTrue(table.phaseTime(first) > start);
+        assertTrue(table.phaseTime(first - 1) <= start);
+
+        long previous = start;
+        int numRows = table.phaseRows(first, end);
+        for (int row = 0; row < numRows; row++)
+        {
+            long last = previous;
+            for (int kind = 0; kind < 4; kind++)
+            {
+                int i = table.rowPhase(first, row, kind);
+                assertTrue("row " + row + " phase " + kind + " is in the row", i >= first + 4 * row && i < first + 4 * (row + 1));
+                assertEquals("row " + row + " phase " + kind + " has the right kind", kind, table.phaseKind(i));
+                assertTrue("row " + row + " phase " + kind + " follows the previous row", table.phaseTime(i) > previous);
+                last = Math.max(last, table.phaseTime(i));
+            }
+            previous = last;
+        }
+        assertTrue("the last row reaches the end", previous + 60 * 1000 >= end);
+    }
+
+    @Test
+    public void test_phaseRows_matchesCalculator()
+    {
+        String[] projection = new String[] { CalculatorProviderContract.COLUMN_MOON_NEW, CalculatorProviderContract.COLUMN_MOON_FIRST, CalculatorProviderContract.COLUMN_MOON_FULL, CalculatorProviderContract.COLUMN_MOON_THIRD };
+        LocalCalculator calculator = new LocalCalculator(0, 0, 0, TimeZone.getTimeZone("UTC"));
+        long[][] windows = new long[][] {
+                { utc(2098, Calendar.JANUARY, 15, 0, 0), utc(2098, Calendar.FEBRUARY, 1, 0, 0) },
+                { utc(2098, Calendar.JUNE, 1, 0, 0), utc(2099, Calendar.JUNE, 1, 0, 0) },
+                { utc(2099, Calendar.JANUARY, 1, 0, 0), utc(2100, Calendar.JANUARY, 1, 0, 0) }
+        };
+        for (long[] window : windows)
+        {
+            Object[][] rows = calculator.query(CalculatorProviderContract.QUERY_MOONPHASE, window[0] + "-" + window[1], projection);
+            int first = table.nextPhase(window[0]);
+            assertEquals("number of rows", rows.length, table.phaseRows(first, window[1]));
+            for (int row = 0; row < rows.length; row++) {
+                for (int kind = 0; kind < 4; kind++) {
+                    long expected = (Long) rows[row][kind];
+                    long actual = table.phaseTime(table.rowPhase(first, row, kind));
+                    assertTrue("row " + row + " phase " + kind + "; expected " + expected + " but was " + actual, Math.abs(expected - actual) < 60 * 1000);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_hasPhases_tableEdge()
+    {
+        assertFalse("before the table", table.hasPhases(table.phaseTime(0) - 1, table.phaseTime(0) + DAY_MILLIS));
+        assertFalse("past the table", table.hasPhases(utc(2100, Calendar.DECEMBER, 1, 0, 0), utc(2100, Calendar.DECEMBER, 31, 0, 0)));
+
+        int numAccepted = 0;
+        for (long end = utc(2100, Calendar.OCTOBER, 1, 0, 0); end < utc(2101, Calendar.FEBRUARY, 1, 0, 0); end += DAY_MILLIS)
+        {
+            long start = end - 60 * DAY_MILLIS;
+            if (table.hasPhases(start, end))
+            {
+                numAccepted++;
+                int first = table.nextPhase(start);
+                int numRows = table.phaseRows(first, end);
+                for (int kind = 0; kind < 4; kind++) {
+                    assertTrue("window ending " + end + " stays within the table", table.rowPhase(first, numRows - 1, kind) < table.numPhases());
+                }
+                assertTrue(table.phaseTime(first + 4 * numRows - 1) + 60 * 1000 >= end);
+            }
+        }
+        assertTrue("some windows near the edge are accepted", numAccepted > 0);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static com.forrestguice.suntimeswidget.calculator.local.SolarCalculatorTest.assertNear;
+import static com.forrestguice.suntimeswidget.calculator.local.SolarCalculatorTest.midnight;
+import static com.forrestguice.suntimeswidget.calculator.local.SolarCalculatorTest.utc;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+public class LocalCalculatorTest
+{
+    private static final String[] SUN_PROJECTION = new String[] { CalculatorProviderContract.COLUMN_SUN_ACTUAL_RISE, CalculatorProviderContract.COLUMN_SUN_ACTUAL_SET,
+                                                                  CalculatorProviderContract.COLUMN_SUN_CIVIL_RISE, CalculatorProviderContract.COLUMN_SUN_NOON };
+
+    @Test
+    public void test_querySun_newYork()
+    {
+        LocalCalculator calculator = new LocalCalculator(40.7128, -74.0060, 0, TimeZone.getTimeZone("America/New_York"));
+        Object[][] rows = calculator.query(CalculatorProviderContract.QUERY_SUN, Long.toString(midnight("America/New_York", 2021, Calendar.JUNE, 21)), SUN_PROJECTION);
+        assertEquals(1, rows.length);
+        assertNear("sunrise", utc(2021, Calendar.JUNE, 21, 9, 25), (Long) rows[0][0]);
+        assertNear("sunset", utc(2021, Calendar.JUNE, 22, 0, 31), (Long) rows[0][1]);
+    }
+
+    @Test
+    public void test_querySun_polar()
+    {
+        LocalCalculator calculator = new LocalCalculator(69.65, 18.96, 0, TimeZone.getTimeZone("Europe/Oslo"));    // Tromso
+        Object[][] rows = calculator.query(CalculatorProviderContract.QUERY_SUN, Long.toString(midnight("Europe/Oslo", 2021, Calendar.JUNE, 21)), SUN_PROJECTION);
+        assertEquals(1, rows.length);
+        assertNull("no sunrise (polar day)", rows[0][0]);
+        assertNull("no sunset (polar day)", rows[0][1]);
+        assertNull("no civil dawn (polar day)", rows[0][2]);
+        assertNotNull("solar noon", rows[0][3]);
+
+        rows = calculator.query(CalculatorProviderContract.QUERY_SUN, Long.toString(midnight("Europe/Oslo", 2021, Calendar.DECEMBER, 21)), SUN_PROJECTION);
+        assertEquals(1, rows.length);
+        assertNull("no sunrise (polar night)", rows[0][0]);
+        assertNull("no sunset (polar night)", rows[0][1]);
+        assertNotNull("civil dawn (polar night)", rows[0][2]);
+    }
+
+    @Test
+    public void test_querySeasons()
+    {
+        LocalCalculator calculator = new LocalCalculator(40.7128, -74.0060, 0, TimeZone.getTimeZone("America/New_York"));
+        Object[][] rows = calculator.query(CalculatorProviderContract.QUERY_SEASONS, "2021-2022", new String[] { CalculatorProviderContract.COLUMN_SEASON_YEAR, CalculatorProviderContract.COLUMN_SEASON_VERNAL });
+        assertEquals(2, rows.length);
+        assertEquals(2021, rows[0][0]);
+        assertNear("vernal equinox", utc(2021, Calendar.MARCH, 20, 9, 37), (Long) rows[0][1]);
+        assertEquals(2022, rows[1][0]);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void test_fromConfig_invalid() {
+        LocalCalculator.fromConfig("north", "-74.0060", "", "America/New_York");
+    }
+
+    @Test
+    public void test_fromConfig()
+    {
+        LocalCalculator calculator = LocalCalculator.fromConfig("40.7128", "-74.0060", "", "");
+        assertEquals(TimeZone.getDefault().getID(), calculator.getTimeZone().getID());
+    }
+}
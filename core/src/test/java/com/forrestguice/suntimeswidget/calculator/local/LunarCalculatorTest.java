@@ -0,0 +1,43 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static com.forrestguice.suntimeswidget.calculator.local.SolarCalculatorTest.assertNear;
+import static com.forrestguice.suntimeswidget.calculator.local.SolarCalculatorTest.utc;
+
+public class LunarCalculatorTest
+{
+    @Test
+    public void test_nextPhase_2021()
+    {
+        long after = utc(2021, Calendar.JANUARY, 1, 0, 0);
+        assertNear("new moon", utc(2021, Calendar.JANUARY, 13, 5, 0), LunarCalculator.nextPhase(0, after));
+        assertNear("first quarter", utc(2021, Calendar.JANUARY, 20, 21, 1), LunarCalculator.nextPhase(90, after));
+        assertNear("full moon", utc(2021, Calendar.JANUARY, 28, 19, 16), LunarCalculator.nextPhase(180, after));
+        assertNear("third quarter", utc(2021, Calendar.JANUARY, 6, 9, 37), LunarCalculator.nextPhase(270, after));
+
+        after = utc(2021, Calendar.DECEMBER, 1, 0, 0);
+        assertNear("new moon", utc(2021, Calendar.DECEMBER, 4, 7, 43), LunarCalculator.nextPhase(0, after));
+        assertNear("full moon", utc(2021, Calendar.DECEMBER, 19, 4, 36), LunarCalculator.nextPhase(180, after));
+    }
+}
@@ -0,0 +1,38 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static com.forrestguice.suntimeswidget.calculator.local.SolarCalculatorTest.assertNear;
+import static com.forrestguice.suntimeswidget.calculator.local.SolarCalculatorTest.utc;
+
+public class SeasonCalculatorTest
+{
+    @Test
+    public void test_season_2021()
+    {
+        assertNear("vernal equinox", utc(2021, Calendar.MARCH, 20, 9, 37), SeasonCalculator.season(2021, SeasonCalculator.VERNAL));
+        assertNear("summer solstice", utc(2021, Calendar.JUNE, 21, 3, 32), SeasonCalculator.season(2021, SeasonCalculator.SUMMER));
+        assertNear("autumnal equinox", utc(2021, Calendar.SEPTEMBER, 22, 19, 21), SeasonCalculator.season(2021, SeasonCalculator.AUTUMN));
+        assertNear("winter solstice", utc(2021, Calendar.DECEMBER, 21, 15, 59), SeasonCalculator.season(2021, SeasonCalculator.WINTER));
+    }
+}
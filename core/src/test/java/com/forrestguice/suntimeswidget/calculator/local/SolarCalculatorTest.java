@@ -0,0 +1,76 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class SolarCalculatorTest
+{
+    public static final long TOLERANCE = 2 * 60 * 1000;    // ms
+
+    public static long utc(int year, int month, int day, int hour, int minute)
+    {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    public static long midnight(String timezone, int year, int month, int day)
+    {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(timezone));
+        calendar.clear();
+        calendar.set(year, month, day, 0, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    public static void assertNear(String message, long expected, long actual) {
+        assertTrue(message + "; expected " + expected + " but was " + actual + " (" + ((actual - expected) / 1000) + "s)", Math.abs(actual - expected) <= TOLERANCE);
+    }
+
+    @Test
+    public void test_riseSet_newYork()
+    {
+        SolarCalculator sun = new SolarCalculator(40.7128, -74.0060, 0);    // New York; 2021-06-21 sunrise 05:25 EDT, sunset 20:31 EDT
+        long noon = sun.transit(midnight("America/New_York", 2021, Calendar.JUNE, 21));
+        assertNear("solar noon", utc(2021, Calendar.JUNE, 21, 16, 58), noon);
+        assertNear("sunrise", utc(2021, Calendar.JUNE, 21, 9, 25), sun.riseSet(noon, sun.actualAngle(), true));
+        assertNear("sunset", utc(2021, Calendar.JUNE, 22, 0, 31), sun.riseSet(noon, sun.actualAngle(), false));
+    }
+
+    @Test
+    public void test_riseSet_polar()
+    {
+        SolarCalculator sun = new SolarCalculator(69.65, 18.96, 0);    // Tromso; polar day (June), polar night (December)
+        long noon = sun.transit(midnight("Europe/Oslo", 2021, Calendar.JUNE, 21));
+        assertEquals("no sunrise (polar day)", SolarCalculator.NONE, sun.riseSet(noon, sun.actualAngle(), true));
+        assertEquals("no sunset (polar day)", SolarCalculator.NONE, sun.riseSet(noon, sun.actualAngle(), false));
+
+        noon = sun.transit(midnight("Europe/Oslo", 2021, Calendar.DECEMBER, 21));
+        assertEquals("no sunrise (polar night)", SolarCalculator.NONE, sun.riseSet(noon, sun.actualAngle(), true));
+        assertEquals("no sunset (polar night)", SolarCalculator.NONE, sun.riseSet(noon, sun.actualAngle(), false));
+        assertTrue("civil twilight (polar night)", sun.riseSet(noon, SolarCalculator.ANGLE_CIVIL, true) != SolarCalculator.NONE);
+    }
+}
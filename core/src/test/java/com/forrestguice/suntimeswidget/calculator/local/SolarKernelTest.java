@@ -0,0 +1,82 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.local;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertTrue;
+
+public class SolarKernelTest
+{
+    private static final double[] ANGLES = new double[] { SolarCalculator.ANGLE_ACTUAL, SolarCalculator.ANGLE_CIVIL, SolarCalculator.ANGLE_NAUTICAL, SolarCalculator.ANGLE_ASTRONOMICAL, SolarCalculator.ANGLE_GOLDEN };
+    private static final long TOLERANCE = 60 * 1000;    // ms
+
+    /**
+     * Compares a year of SolarKernel results with SolarCalculator (day by day).
+     * @return number of days (and angles) where one reports an event and the other doesn't (NONE)
+     */
+    private static int compare(String label, double latitude, double longitude, String timezone)
+    {
+        TimeZone tz = TimeZone.getTimeZone(timezone);
+        Calendar day = Calendar.getInstance(tz);
+        day.clear();
+        day.set(2021, Calendar.JANUARY, 1, 12, 0, 0);
+        SolarKernel.Block block = new SolarKernel(latitude, longitude).compute(day.getTimeInMillis(), 365, ANGLES);
+        SolarCalculator sun = new SolarCalculator(latitude, longitude, 0);
+
+        int numDisagree = 0;
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        for (int i=0; i<365; i++)
+        {
+            long noon = sun.transit(day.getTimeInMillis());
+            assertTrue(label + " noon (day " + i + ")", Math.abs(noon - block.noon[i]) <= TOLERANCE);
+            for (int j=0; j<ANGLES.length; j++)
+            {
+                long[] expected = new long[] { sun.riseSet(noon, ANGLES[j], true), sun.riseSet(noon, ANGLES[j], false) };
+                long[] actual = new long[] { block.rising[j][i], block.setting[j][i] };
+                for (int k=0; k<2; k++)
+                {
+                    if ((expected[k] == SolarCalculator.NONE) != (actual[k] == SolarKernel.NONE)) {
+                        numDisagree++;
+                    } else assertTrue(label + " angle " + ANGLES[j] + " (day " + i + "); expected " + expected[k] + " but was " + actual[k], Math.abs(expected[k] - actual[k]) <= TOLERANCE);
+                }
+            }
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        return numDisagree;
+    }
+
+    @Test
+    public void test_compute_midLatitudes()
+    {
+        assertTrue(compare("New York", 40.7128, -74.0060, "America/New_York") == 0);
+        assertTrue(compare("Sydney", -33.87, 151.21, "Australia/Sydney") == 0);
+        assertTrue(compare("Quito", -0.18, -78.47, "America/Guayaquil") == 0);
+    }
+
+    @Test
+    public void test_compute_polar()
+    {
+        int numDisagree = compare("Tromso", 69.65, 18.96, "Europe/Oslo");    // only days where the sun grazes an angle (the start/end of polar day/night)
+        assertTrue("disagreements: " + numDisagree, numDisagree <= 4);
+    }
+}
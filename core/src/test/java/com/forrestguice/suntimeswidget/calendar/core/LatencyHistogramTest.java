@@ -0,0 +1,152 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void test_bucket_small()
+    {
+        for (int i=0; i<LatencyHistogram.SUB_BUCKETS; i++) {
+            assertEquals(i, LatencyHistogram.bucket(i));
+            assertEquals(i, LatencyHistogram.lowerBound(i));
+            assertEquals(i, LatencyHistogram.upperBound(i));
+        }
+        assertEquals(0, LatencyHistogram.bucket(-1));
+        assertEquals(0, LatencyHistogram.bucket(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void test_bucket_bounds()
+    {
+        assertEquals(LatencyHistogram.SUB_BUCKETS, LatencyHistogram.bucket(8));
+        assertEquals(LatencyHistogram.SUB_BUCKETS + 1, LatencyHistogram.bucket(9));
+        assertEquals(LatencyHistogram.SUB_BUCKETS * 2, LatencyHistogram.bucket(16));
+        assertEquals(LatencyHistogram.SUB_BUCKETS * 2, LatencyHistogram.bucket(17));    // 16-17
+        assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.NUM_BUCKETS - 1));
+
+        for (int i=0; i<LatencyHistogram.NUM_BUCKETS; i++)
+        {
+            long lower = LatencyHistogram.lowerBound(i);
+            long upper = LatencyHistogram.upperBound(i);
+            assertTrue("bucket " + i, lower <= upper);
+            assertEquals("lowerBound " + i, i, LatencyHistogram.bucket(lower));
+            assertEquals("upperBound " + i, i, LatencyHistogram.bucket(upper));
+            if (i + 1 < LatencyHistogram.NUM_BUCKETS) {
+                assertEquals("contiguous " + i, upper + 1, LatencyHistogram.lowerBound(i + 1));
+            }
+            if (i >= LatencyHistogram.SUB_BUCKETS) {
+                assertTrue("width " + i, (upper - lower + 1) * LatencyHistogram.SUB_BUCKETS <= lower);    // within 12.5%
+            }
+        }
+    }
+
+    @Test
+    public void test_percentile_empty()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0d, histogram.mean());
+    }
+
+    @Test
+    public void test_percentile_exact()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i=1; i<=4; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1, histogram.percentile(0));
+        assertEquals(2, histogram.percentile(50));
+        assertEquals(3, histogram.percentile(75));
+        assertEquals(4, histogram.percentile(99));
+        assertEquals(4, histogram.percentile(100));
+        assertEquals(4, histogram.percentile(150));
+        assertEquals(2.5d, histogram.mean());
+    }
+
+    @Test
+    public void test_percentile_error()
+    {
+        long[] values = new long[10000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(1);
+        for (int i=0; i<values.length; i++)
+        {
+            values[i] = 1000 + (long)(Math.abs(random.nextGaussian()) * 5000000L);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        double[] percentiles = new double[] { 50, 90, 99, 100 };
+        for (double p : percentiles)
+        {
+            long expected = values[(int) Math.ceil(p / 100d * values.length) - 1];
+            long actual = histogram.percentile(p);
+            assertTrue("p" + p + " " + actual + " < " + expected, actual >= expected);
+            assertTrue("p" + p + " " + actual + " > " + expected + " + 12.5%", actual <= expected + expected / LatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals(values[values.length - 1], histogram.max());
+        assertEquals(values[values.length - 1], histogram.percentile(100));
+    }
+
+    @Test
+    public void test_add_and_serialize() throws IOException
+    {
+        LatencyHistogram h1 = new LatencyHistogram();
+        LatencyHistogram h2 = new LatencyHistogram();
+        h1.record(100);
+        h1.record(5000);
+        h2.record(1000000);
+        h1.add(h2);
+        assertEquals(3, h1.count());
+        assertEquals(1000000, h1.max());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        h1.writeTo(new DataOutputStream(bytes));
+        LatencyHistogram h3 = LatencyHistogram.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(h1.count(), h3.count());
+        assertEquals(h1.max(), h3.max());
+        assertEquals(h1.mean(), h3.mean());
+        assertEquals(h1.percentile(50), h3.percentile(50));
+        assertEquals(h1.toJson(), h3.toJson());
+
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 4);
+        try {
+            LatencyHistogram.readFrom(new DataInputStream(new ByteArrayInputStream(truncated)));
+            fail("expected IOException");
+        } catch (IOException e) { /* expected */ }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+    Copyright (C) 2021 Forrest Guice
+    This file is part of SuntimesCalendars.
+
+    SuntimesCalendars is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesCalendars is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesCalendars.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calendar.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class PackedEventsTest
+{
+    protected static EventBatch createBatch(int n)
+    {
+        EventBatch batch = new EventBatch();
+        for (int i=0; i<n; i++)
+        {
+            String title = ((i % 4 == 0) ? "New Moon" : (i % 4 == 1) ? "First Quarter" : (i % 4 == 2) ? "Full Moon" : "Third Quarter");
+            String location = ((i % 2 == 0) ? "Sm\u00f6gen" : null);
+            batch.add(title, "description " + (i % 3), location, 1000L * i, 1000L * i + 60000L);
+        }
+        return batch;
+    }
+
+    protected static void assertSameEvents(EventBatch expected, EventBatch actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); i++)
+        {
+            assertEquals(expected.title(i), actual.title(i));
+            assertEquals(expected.description(i), actual.description(i));
+            assertEquals(expected.location(i), actual.location(i));
+            assertEquals(expected.start(i), actual.start(i));
+            assertEquals(expected.end(i), actual.end(i));
+        }
+    }
+
+    protected static void assertMalformed(byte[] blob)
+    {
+        try {
+            PackedEvents.decode(blob, new EventBatch());
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) { /* expected */ }
+    }
+
+    @Test
+    public void test_roundTrip()
+    {
+        EventBatch batch = createBatch(1000);
+        byte[] blob = PackedEvents.encode(batch);
+        EventBatch decoded = new EventBatch();
+        assertEquals(1000, PackedEvents.decode(blob, decoded));
+        assertSameEvents(batch, decoded);
+        assertTrue("" + blob.length, blob.length < 1000 * 29);    // 28 bytes per event + strings
+    }
+
+    @Test
+    public void test_roundTrip_empty()
+    {
+        EventBatch decoded = new EventBatch();
+        assertEquals(0, PackedEvents.decode(PackedEvents.encode(new EventBatch()), decoded));
+        assertEquals(0, decoded.size());
+    }
+
+    @Test
+    public void test_roundTrip_noLocation()
+    {
+        EventBatch batch = new EventBatch();
+        batch.add("title", "description", null, 0, 1);
+        EventBatch decoded = new EventBatch();
+        assertEquals(1, PackedEvents.decode(PackedEvents.encode(batch), decoded));
+        assertNull(decoded.location(0));
+    }
+
+    @Test
+    public void test_decode_truncated()
+    {
+        byte[] blob = PackedEvents.encode(createBatch(10));
+        for (int n=0; n<blob.length; n++) {
+            assertMalformed(Arrays.copyOf(blob, n));
+        }
+    }
+
+    @Test
+    public void test_decode_malformed()
+    {
+        byte[] blob = PackedEvents.encode(createBatch(10));
+
+        byte[] badMagic = blob.clone();
+        badMagic[0] = 0;
+        assertMalformed(badMagic);
+
+        byte[] badVersion = blob.clone();
+        badVersion[4] = PackedEvents.VERSION + 1;
+        assertMalformed(badVersion);
+
+        byte[] badStringCount = blob.clone();
+        ByteBuffer.wrap(badStringCount).putInt(5, Integer.MAX_VALUE);
+        assertMalformed(badStringCount);
+
+        byte[] negativeStringCount = blob.clone();
+        ByteBuffer.wrap(negativeStringCount).putInt(5, -1);
+        assertMalformed(negativeStringCount);
+
+        byte[] badStringLength = blob.clone();
+        ByteBuffer.wrap(badStringLength).putInt(9, Integer.MAX_VALUE);
+        assertMalformed(badStringLength);
+
+        int eventsAt = blob.length - (10 * PackedEvents.EVENT_BYTES) - 4;
+        byte[] badEventCount = blob.clone();
+        ByteBuffer.wrap(badEventCount).putInt(eventsAt, 11);
+        assertMalformed(badEventCount);
+
+        byte[] badTitle = blob.clone();
+        ByteBuffer.wrap(badTitle).putInt(eventsAt + 4, 1000);
+        assertMalformed(badTitle);
+
+        byte[] noTitle = blob.clone();
+        ByteBuffer.wrap(noTitle).putInt(eventsAt + 4, -1);
+        assertMalformed(noTitle);
+
+        byte[] noDescription = blob.clone();
+        ByteBuffer.wrap(noDescription).putInt(eventsAt + 8, -1);
+        assertMalformed(noDescription);
+    }
+}